@@ -0,0 +1,30 @@
+package onethreeseven.roi.benchmark;
+
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoIGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a grid from trajectories.
+ * @author Luke Bermingham
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GridBuildingBenchmark {
+
+    @Benchmark
+    public RoIGrid createGrid(GridState state) {
+        return MiningSpaceFactory.createGrid(state.trajectories, state.cellsPerDimension, 0);
+    }
+
+    @Benchmark
+    public RoIGrid createGridWithRadius(GridState state) {
+        return MiningSpaceFactory.createGrid(state.trajectories, state.cellsPerDimension, 1);
+    }
+
+}
@@ -0,0 +1,78 @@
+package onethreeseven.roi.benchmark;
+
+import onethreeseven.roi.model.MiningCell;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the grid operations mining leans on, which do not depend on the algorithm mining.
+ * @author Luke Bermingham
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GridOperationsBenchmark {
+
+    /**
+     * Removing sparsity makes the cells it fills in, so each call of a batch gets its own grid that has not had them made yet.
+     * The grids are made before each batch, so making them is not measured.
+     */
+    @State(Scope.Thread)
+    public static class SparseRoIState {
+
+        static final int BATCH_SIZE = 4;
+
+        private final RoIGrid[] grids = new RoIGrid[BATCH_SIZE];
+
+        /**
+         * An roi of the two densest cells of each grid, so removing its sparsity fills in the box between them.
+         */
+        private final RoI[] sparseRoIs = new RoI[BATCH_SIZE];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setup(GridState state) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                grids[i] = MiningSpaceFactory.createGrid(state.trajectories, state.cellsPerDimension, 0);
+                Iterator<? extends MiningCell> denseCells = grids[i].getDenseCells().iterator();
+                sparseRoIs[i] = new RoI(denseCells.next(), 0);
+                if (denseCells.hasNext()) {
+                    sparseRoIs[i].add(denseCells.next());
+                }
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public Collection<? extends MiningCell> getDenseCells(GridState state) {
+        return state.grid.getDenseCells();
+    }
+
+    /**
+     * Timed a batch at a time, as each call needs a grid of its own.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(batchSize = SparseRoIState.BATCH_SIZE)
+    @Measurement(batchSize = SparseRoIState.BATCH_SIZE)
+    public RoI removeSparsity(SparseRoIState state) {
+        int i = state.next++;
+        return state.grids[i].removeSparsity(state.sparseRoIs[i]);
+    }
+
+}
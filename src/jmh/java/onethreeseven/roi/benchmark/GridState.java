@@ -0,0 +1,52 @@
+package onethreeseven.roi.benchmark;
+
+import onethreeseven.datastructures.algorithm.TrajectoryDragonCurve;
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoIGrid;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * Synthetic trajectories (and the grid built from them) shared by the benchmarks.
+ * They are made once per trial, so making them is not part of what is measured.
+ * @author Luke Bermingham
+ */
+@State(Scope.Benchmark)
+public class GridState {
+
+    static final double[][] bounds = new double[][]{
+            new double[]{0, 1000}, new double[]{0, 1000}, new double[]{0, 1000}};
+
+    /**
+     * Cells along each of the three dimensions of the grid.
+     */
+    @Param({"32", "64", "128"})
+    public int nCellsPerDimension;
+
+    @Param({"10", "100"})
+    public int nTrajectories;
+
+    @Param({"3"})
+    public int minDensity;
+
+    public Map<String, Trajectory> trajectories;
+    public int[] cellsPerDimension;
+    public RoIGrid grid;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(bounds);
+        trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, nTrajectories);
+        cellsPerDimension = new int[]{nCellsPerDimension, nCellsPerDimension, nCellsPerDimension};
+        grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+    }
+
+}
@@ -0,0 +1,56 @@
+package onethreeseven.roi.benchmark;
+
+import onethreeseven.roi.algorithm.AbstractRoIMining;
+import onethreeseven.roi.algorithm.DisjointRoIs;
+import onethreeseven.roi.algorithm.ExpansiveRoIs;
+import onethreeseven.roi.algorithm.HybridRoIs;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import onethreeseven.roi.algorithm.ThresholdRoIs;
+import onethreeseven.roi.algorithm.UniformRoIs;
+import onethreeseven.roi.model.RoI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mining a grid with each algorithm, see {@link GridOperationsBenchmark} for the grid operations it leans on.
+ * @author Luke Bermingham
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RoIMiningBenchmark {
+
+    @Param({"Uniform", "Hybrid", "Slope", "Disjoint", "Expansive", "Threshold"})
+    public String algorithm;
+
+    private AbstractRoIMining algo;
+
+    @Setup(Level.Trial)
+    public void setup(GridState state) {
+        switch (algorithm) {
+            case "Uniform": algo = new UniformRoIs(); break;
+            case "Hybrid": algo = new HybridRoIs(); break;
+            case "Slope": algo = new SlopeRoIs(); break;
+            case "Disjoint": algo = new DisjointRoIs(); break;
+            case "Expansive": algo = new ExpansiveRoIs(); break;
+            case "Threshold": algo = new ThresholdRoIs(); break;
+            default: throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    @Benchmark
+    public Collection<RoI> mine(GridState state) {
+        return algo.run(state.grid, state.minDensity);
+    }
+
+}
@@ -0,0 +1,47 @@
+package onethreeseven.roi.benchmark;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.roi.algorithm.ExpansiveRoIs;
+import onethreeseven.roi.algorithm.TrajectoryRoIUtil;
+import onethreeseven.roi.model.RoILookup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting trajectories into the RoI sequences used for sequential pattern mining.
+ * @author Luke Bermingham
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SequenceConversionBenchmark {
+
+    private RoILookup lookup;
+
+    @Setup(Level.Trial)
+    public void setup(GridState state) {
+        lookup = new RoILookup(new ExpansiveRoIs().run(state.grid, state.minDensity), state.grid);
+    }
+
+    @Benchmark
+    public void fromTrajToRoISequence(GridState state, Blackhole blackhole) {
+        for (Trajectory trajectory : state.trajectories.values()) {
+            blackhole.consume(TrajectoryRoIUtil.fromTrajToRoISequence(trajectory, lookup, state.grid));
+        }
+    }
+
+    @Benchmark
+    public int[][] fromTrajsToRoISequences(GridState state) {
+        return TrajectoryRoIUtil.fromTrajsToRoISequences(state.trajectories, lookup, state.grid);
+    }
+
+}
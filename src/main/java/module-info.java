@@ -12,6 +12,7 @@ module onethreeseven.roi{
     exports onethreeseven.roi.model;
     exports onethreeseven.roi.graphics;
     exports onethreeseven.roi.algorithm;
+    exports onethreeseven.roi.data;
     exports onethreeseven.roi.view;
     exports onethreeseven.roi.view.controller;
 
@@ -4,8 +4,11 @@ import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIMiningSpace;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
 /**
  * The general mining algorithm that is the base class for all region of interest (RoI) mining algorithms.
@@ -42,66 +45,155 @@ public abstract class AbstractRoIMining {
                                                       MiningCell currentCell,
                                                       int minDensity);
 
-    protected abstract MiningCell pickNextCell(Collection<MiningCell> neighbourCells,
-                                               MiningCell currentCell,
-                                               int minDensity);
+    /**
+     * Picks which neighbour of the current cell to expand to next.
+     * Neighbours are given by index and judged through the space, so no cell is made for those not picked.
+     * @param miningSpace the space used for RoI mining, to read the density and processed state of the neighbours
+     * @param neighbourIndices the indices of the neighbour cells, only the first nNeighbours are used
+     * @param nNeighbours how many neighbours the current cell has
+     * @param currentCell the current cell that is already in the RoI
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     * @return The index of the picked neighbour, or of the current cell if there is none to expand to.
+     */
+    protected abstract int pickNextCell(RoIMiningSpace miningSpace,
+                                        int[] neighbourIndices,
+                                        int nNeighbours,
+                                        MiningCell currentCell,
+                                        int minDensity);
 
     public Collection<RoI> run(RoIMiningSpace roIMiningSpace, int minDensity) {
+        Collection<RoI> rois = mine(roIMiningSpace, roIMiningSpace, minDensity, 0);
+
+        //mark all cells unprocessed, so we can reuse the grid
+        unprocessGrid(roIMiningSpace, rois);
+
+        return rois;
+    }
+
+    /**
+     * Whether RoIs can be found by seeding from only some cells of a space, see {@link IncrementalRoIMining}.
+     * Algorithms that do not mine from seed cells (or that override {@link #run(RoIMiningSpace, int)}) cannot.
+     * @return True if this algorithm finds its RoIs using just {@link #mine(RoIMiningSpace, RoIMiningSpace, int, int)}.
+     */
+    protected boolean supportsIncrementalMining() {
+        return true;
+    }
+
+    /**
+     * Whether separate tiles of a grid can be mined at the same time, see {@link ParallelRoIMining}.
+     * The algorithm must only keep state for the roi it is expanding, and never keep two neighbouring cells
+     * above the min density in separate rois, so that an roi cut by a tile border can be joined back up with its other part.
+     * @return True if this algorithm can be mined a tile at a time.
+     */
+    protected boolean supportsTiledMining() {
+        return false;
+    }
+
+    /**
+     * Finds RoIs seeded from the unprocessed cells of one space, expanding through another.
+     * Cells are left processed, so the caller must unprocess them.
+     * @param roIMiningSpace the space the rois expand through
+     * @param seedSpace where seeds come from, usually the same space, or a view over some of its cells
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     * @param firstId the id of the first roi found, the rest count up from it
+     * @return The rois found, in the order they were found.
+     */
+    Collection<RoI> mine(RoIMiningSpace roIMiningSpace, RoIMiningSpace seedSpace, int minDensity, int firstId) {
+        return mine(roIMiningSpace, seedSpace, minDensity, firstId, false);
+    }
+
+    /**
+     * See {@link #mine(RoIMiningSpace, RoIMiningSpace, int, int)}.
+     * @param roIMiningSpace the space the rois expand through
+     * @param seedSpace where seeds come from, usually the same space, or a view over some of its cells
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     * @param firstId the id of the first roi found, the rest count up from it
+     * @param keepSingleCells whether rois of just one cell are kept, i.e. they may still join another roi
+     * @return The rois found, in the order they were found.
+     */
+    Collection<RoI> mine(RoIMiningSpace roIMiningSpace, RoIMiningSpace seedSpace, int minDensity, int firstId,
+                         boolean keepSingleCells) {
+        return mine(roIMiningSpace, seedSpace, minDensity, firstId, keepSingleCells, null);
+    }
+
+    /**
+     * See {@link #mine(RoIMiningSpace, RoIMiningSpace, int, int)}.
+     * @param roIMiningSpace the space the rois expand through
+     * @param seedSpace where seeds come from, usually the same space, or a view over some of its cells
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     * @param firstId the id of the first roi found, the rest count up from it
+     * @param blocked cells rois must not expand into (i.e. those of rois that are kept), or null if there are none
+     * @return The rois found, in the order they were found.
+     */
+    Collection<RoI> mine(RoIMiningSpace roIMiningSpace, RoIMiningSpace seedSpace, int minDensity, int firstId,
+                         IntPredicate blocked) {
+        return mine(roIMiningSpace, seedSpace, minDensity, firstId, false, blocked);
+    }
+
+    private Collection<RoI> mine(RoIMiningSpace roIMiningSpace, RoIMiningSpace seedSpace, int minDensity, int firstId,
+                                 boolean keepSingleCells, IntPredicate blocked) {
 
         //params/init
-        Collection<? extends MiningCell> denseCells = roIMiningSpace.getDenseCells();
         Collection<RoI> rois = new ArrayList<>();
-        int seedId = 0;
-
-        //RoI mining
-        int i = 0;
-        for (MiningCell seedCell : denseCells) {
-            int seedCellTally = seedCell.getDensity();
-            //this cell has the required density and is not processed
-            if (seedCellTally >= minDensity && !seedCell.isProcessed()) {
-                RoI currentRoI = new RoI(seedCell, seedId);
-                //increment id for next roi
-                seedId++;
-                //we use it in the roi, so mark it as processed
-                seedCell.markProcessed();
-                //expand the current roi, using the current seeding cell
-                expandRoI(roIMiningSpace, currentRoI, seedCell, minDensity);
-                //outside the expansion while loop add the current roi
-                //if it is just one cell we do not call this a region
-                if (currentRoI.size() > 1) {
-                    rois.add(currentRoI);
-                }
-            } else {
-                //mark as processed don't consider it again
-                seedCell.markProcessed();
+        int seedId = firstId;
+
+        //RoI mining, seeds come most dense first, so stop at the first one that is not dense enough
+        MiningCell seedCell = seedSpace.nextDenseCell();
+        int maxDensity = (seedCell == null) ? minDensity : seedCell.getDensity();
+        while (seedCell != null && seedCell.getDensity() >= minDensity) {
+            RoI currentRoI = newRoI(roIMiningSpace, seedCell, seedId);
+            //increment id for next roi
+            seedId++;
+            //we use it in the roi, so mark it as processed
+            seedCell.markProcessed();
+            //expand the current roi, using the current seeding cell
+            expandRoI(roIMiningSpace, currentRoI, seedCell, minDensity, blocked);
+            //outside the expansion while loop add the current roi
+            //if it is just one cell we do not call this a region
+            if (currentRoI.size() > 1 || keepSingleCells) {
+                rois.add(currentRoI);
             }
 
-            i++;
             if(progressReporter != null){
-                double progress = (double)i / denseCells.size();
-                progressReporter.accept(progress);
+                //progress through the densities that can still seed an roi
+                double progress = (double)(maxDensity - seedCell.getDensity() + 1) / (maxDensity - minDensity + 1);
+                progressReporter.accept(Math.min(1, progress));
             }
+            seedCell = seedSpace.nextDenseCell();
         }
 
-        //mark all cells unprocessed, so we can reuse the grid
-        unprocessGrid(roIMiningSpace, rois);
-
         return rois;
     }
 
+    /**
+     * Makes the roi that will be expanded from a seed cell.
+     * @param miningSpace the space being mined
+     * @param seedCell the cell the roi starts from
+     * @param id the id of the roi
+     * @return An roi holding just the seed cell.
+     */
+    protected RoI newRoI(RoIMiningSpace miningSpace, MiningCell seedCell, int id) {
+        return new RoI(seedCell, id);
+    }
+
     protected void unprocessGrid(RoIMiningSpace grid, Collection<RoI> rois){
         grid.unprocessAll();
     }
 
-    private void expandRoI(RoIMiningSpace roIMiningSpace, RoI currentRoI, MiningCell seedCell, int minDensity) {
+    private void expandRoI(RoIMiningSpace roIMiningSpace, RoI currentRoI, MiningCell seedCell, int minDensity,
+                           IntPredicate blocked) {
+        //one buffer of indices is refilled at each step, only the picked neighbour is made into a cell
+        NeighbourIndices neighbours = new NeighbourIndices(blocked);
         boolean keepExpanding = true;
         while (keepExpanding) {
             //get the neighbour cells for expansion
-            Collection<MiningCell> neighbourCells = roIMiningSpace.getNeighbourCells(seedCell);
+            neighbours.size = 0;
+            roIMiningSpace.forEachNeighbour(seedCell.getIndex(), neighbours);
             //pick the neighbour based on algorithm we are using
-            MiningCell picked = pickNextCell(neighbourCells, seedCell, minDensity);
-            if (!picked.equals(seedCell)) {
+            int pickedIdx = pickNextCell(roIMiningSpace, neighbours.indices, neighbours.size, seedCell, minDensity);
+            if (pickedIdx != seedCell.getIndex()) {
                 //handle the neighbour cell using the algorithm
+                MiningCell picked = roIMiningSpace.getCell(pickedIdx);
                 MiningCell nextCell = handleNeighbourCell(roIMiningSpace, currentRoI, picked, seedCell, minDensity);
                 if (nextCell.equals(seedCell)) {
                     keepExpanding = false;
@@ -115,5 +207,30 @@ public abstract class AbstractRoIMining {
         }
     }
 
+    /**
+     * The indices of the neighbours of a cell, grown as needed and reused for each step of an expansion.
+     */
+    private static final class NeighbourIndices implements IntConsumer {
+
+        private final IntPredicate blocked;
+        private int[] indices = new int[8];
+        private int size = 0;
+
+        NeighbourIndices(IntPredicate blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void accept(int idx) {
+            if (blocked != null && blocked.test(idx)) {
+                return;
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = idx;
+        }
+    }
+
 
 }
@@ -29,6 +29,14 @@ public class DisjointRoIs extends UniformRoIs {
         }
     }
 
+    /**
+     * Disjoint rois are not boxes, so they keep each of their cells.
+     */
+    @Override
+    protected RoI newRoI(RoIMiningSpace miningSpace, MiningCell seedCell, int id) {
+        return new RoI(seedCell, id);
+    }
+
     @Override
     public String toString(){
         return "Disjoint";
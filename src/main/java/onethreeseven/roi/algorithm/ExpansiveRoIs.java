@@ -1,48 +1,98 @@
 package onethreeseven.roi.algorithm;
 
 
+import onethreeseven.roi.model.ConnectedComponents;
+import onethreeseven.roi.model.DenseRoIGrid;
 import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIMiningSpace;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 /**
  * The expansive algorithm keeps expanding so long as the neighbours are connected and above the threshold.
  * @author Luke Bermingham
  */
 public class ExpansiveRoIs extends DisjointRoIs {
-    private final Map<Integer, MiningCell> neighbourCandidates = new HashMap<>();
+    private final Set<Integer> neighbourCandidates = new HashSet<>();
+    private final boolean labelComponents;
+
+    public ExpansiveRoIs() {
+        this(false);
+    }
+
+    /**
+     * @param labelComponents if true, a {@link DenseRoIGrid} is mined by labelling its {@link ConnectedComponents}
+     *                        in two linear scans, rather than expanding one cell at a time.
+     *                        The rois (and their ids) are the same either way.
+     */
+    public ExpansiveRoIs(boolean labelComponents) {
+        this.labelComponents = labelComponents;
+    }
+
+    @Override
+    public Collection<RoI> run(RoIMiningSpace roIMiningSpace, int minDensity) {
+        if (!labelComponents || !(roIMiningSpace instanceof DenseRoIGrid)) {
+            return super.run(roIMiningSpace, minDensity);
+        }
+        Collection<RoI> rois = new ConnectedComponents((DenseRoIGrid) roIMiningSpace, minDensity).toRoIs();
+        if (progressReporter != null) {
+            progressReporter.accept(1.0);
+        }
+        return rois;
+    }
+
+    /**
+     * Expansive rois are the connected cells above the min density, so pieces cut by a tile border
+     * can always be joined back up. Slope and Disjoint rois are not, as they may keep neighbours apart.
+     */
+    @Override
+    protected boolean supportsTiledMining() {
+        return true;
+    }
 
     @Override
-    protected MiningCell pickNextCell(Collection<MiningCell> neighbourCells,
-                                      MiningCell currentCell,
-                                      int minDensity)  {
+    protected int pickNextCell(RoIMiningSpace miningSpace,
+                               int[] neighbourIndices,
+                               int nNeighbours,
+                               MiningCell currentCell,
+                               int minDensity)  {
         //find the most dense neighbour that is above the min density
-        MiningCell mostDense = null;
-        for (MiningCell neighbourCell : neighbourCells) {
-            int neighbourDensity = neighbourCell.getDensity();
-            if (!neighbourCell.isProcessed() && neighbourDensity >= minDensity) {
+        int mostDense = -1;
+        int mostDenseDensity = -1;
+        for (int i = 0; i < nNeighbours; i++) {
+            int neighbourIdx = neighbourIndices[i];
+            int neighbourDensity = miningSpace.getDensity(neighbourIdx);
+            if (!miningSpace.isProcessed(neighbourIdx) && neighbourDensity >= minDensity) {
 
-                if (mostDense == null || neighbourCell.getDensity() > mostDense.getDensity()) {
+                if (mostDense == -1 || neighbourDensity > mostDenseDensity) {
+                    //the one it replaces is still connected, so it stays a candidate
+                    if (mostDense != -1) {
+                        neighbourCandidates.add(mostDense);
+                    }
                     //make the current neighbour the most dense
-                    mostDense = neighbourCell;
+                    mostDense = neighbourIdx;
+                    mostDenseDensity = neighbourDensity;
                 } else {
                     //add it as a candidate
-                    neighbourCandidates.put(neighbourCell.getIndex(), neighbourCell);
+                    neighbourCandidates.add(neighbourIdx);
                 }
 
             }
         }
         //there was no good neighbour so use candidates
-        if (mostDense == null) {
+        if (mostDense == -1) {
             if (!neighbourCandidates.isEmpty()) {
                 //remove first candidate
-                return neighbourCandidates.remove(neighbourCandidates.keySet().iterator().next());
+                Iterator<Integer> candidates = neighbourCandidates.iterator();
+                mostDense = candidates.next();
+                candidates.remove();
+            } else {
+                mostDense = currentCell.getIndex();
             }
-            mostDense = currentCell;
         }
         return mostDense;
     }
@@ -1,6 +1,7 @@
 package onethreeseven.roi.algorithm;
 
 
+import onethreeseven.roi.model.MiningSubSpace;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIMiningSpace;
 import java.util.ArrayList;
@@ -19,6 +20,21 @@ import java.util.Collection;
  */
 public class HybridRoIs extends UniformRoIs {
 
+    private final boolean refineLocally;
+
+    public HybridRoIs() {
+        this(false);
+    }
+
+    /**
+     * @param refineLocally if true, Slope only refines each uniform RoI using the cells of that RoI
+     *                      (through a {@link MiningSubSpace}), so each refinement costs time proportional
+     *                      to the size of the RoI rather than the size of the whole mining space.
+     */
+    public HybridRoIs(boolean refineLocally) {
+        this.refineLocally = refineLocally;
+    }
+
     @Override
     public Collection<RoI> run(RoIMiningSpace roIMiningSpace, int minDensity) {
         //do uniform mining
@@ -36,12 +52,19 @@ public class HybridRoIs extends UniformRoIs {
 
         int i = 0;
         for (RoI uniformRoI : uniformRoIs) {
-            //mark cell indices as unprocessed, so slope will refine these cells
-            for (Integer cellIdx : uniformRoI) {
-                roIMiningSpace.getCell(cellIdx).markUnprocessed();
+            if (refineLocally) {
+                //slope only sees the cells of this roi
+                MiningSubSpace subSpace = new MiningSubSpace(roIMiningSpace, uniformRoI.getCells());
+                subSpace.unprocessAll();
+                slopeRoIs.addAll(slopeAlgo.run(subSpace, minDensity));
+            } else {
+                //mark cell indices as unprocessed, so slope will refine these cells
+                for (Integer cellIdx : uniformRoI) {
+                    roIMiningSpace.markUnprocessed(cellIdx);
+                }
+                //add the new rois
+                slopeRoIs.addAll(slopeAlgo.run(roIMiningSpace, minDensity));
             }
-            //add the new rois
-            slopeRoIs.addAll(slopeAlgo.run(roIMiningSpace, minDensity));
 
             i++;
             if(progressReporter != null){
@@ -56,6 +79,11 @@ public class HybridRoIs extends UniformRoIs {
         return slopeRoIs;
     }
 
+    @Override
+    protected boolean supportsIncrementalMining() {
+        return false;
+    }
+
     @Override
     public String toString(){
         return "Hybrid";
@@ -0,0 +1,177 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.roi.model.MiningSubSpace;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the RoIs of a grid up to date as its densities change (i.e. a grid fed from live trajectories),
+ * without mining the whole grid again each time.
+ * The grid tracks which cells changed density since the last round of mining, see {@link RoIGrid#trackDirtyCells()}.
+ * Only the RoIs touching or neighbouring those cells are thrown away, and RoIs are mined again
+ * seeding only from their cells and the changed cells; the other RoIs are kept as they are.
+ * Note: mining is greedy, so in rare cases a full re-run could carve the changed region up differently.
+ * @see RoIDiff
+ * @author Luke Bermingham
+ */
+public class IncrementalRoIMining {
+
+    private final AbstractRoIMining algorithm;
+    private final RoIGrid grid;
+    private final int minDensity;
+
+    //the current rois by id, and the roi each of their cells is in
+    private final Map<Integer, RoI> rois = new LinkedHashMap<>();
+    private final Map<Integer, RoI> roiByCell = new HashMap<>();
+    private int nextId = 0;
+
+    /**
+     * @param algorithm the algorithm to mine with, it must mine from seed cells (i.e. not {@link ThresholdRoIs})
+     * @param grid the grid to mine, changes to its densities are tracked from now on
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     */
+    public IncrementalRoIMining(AbstractRoIMining algorithm, RoIGrid grid, int minDensity) {
+        if (!algorithm.supportsIncrementalMining()) {
+            throw new IllegalArgumentException(algorithm + " RoIs cannot be mined incrementally.");
+        }
+        this.algorithm = algorithm;
+        this.grid = grid;
+        this.minDensity = minDensity;
+        grid.trackDirtyCells();
+    }
+
+    /**
+     * Mines the whole grid, forgetting any rois found before.
+     * @return The rois of the grid.
+     */
+    public Collection<RoI> run() {
+        grid.drainDirtyCells();
+        rois.clear();
+        roiByCell.clear();
+        nextId = 0;
+        for (RoI roi : algorithm.run(grid, minDensity)) {
+            index(roi);
+            nextId = Math.max(nextId, roi.getId() + 1);
+        }
+        return getRoIs();
+    }
+
+    /**
+     * Mines again around the cells that changed density since the last round of mining.
+     * @return How the rois changed.
+     */
+    public RoIDiff update() {
+        int[] dirtyCells = grid.drainDirtyCells();
+        List<RoI> added = new ArrayList<>();
+        List<RoI> removed = new ArrayList<>();
+        List<RoI> changed = new ArrayList<>();
+        if (dirtyCells.length == 0) {
+            return new RoIDiff(added, removed, changed);
+        }
+
+        //the changed cells and their neighbours (as far as the neighbourhood of the grid reaches)
+        Set<Integer> seedCells = new HashSet<>();
+        int reach = grid.getNeighbourhood().getReach();
+        int[] nCellsPerDimension = grid.getNCellsPerDimension();
+        int nDimensions = nCellsPerDimension.length;
+        int[] min = new int[nDimensions];
+        int[] max = new int[nDimensions];
+        for (int dirtyIdx : dirtyCells) {
+            int[] ndIdx = grid.toNdIdx(dirtyIdx);
+            for (int n = 0; n < nDimensions; n++) {
+                min[n] = Math.max(0, ndIdx[n] - reach);
+                max[n] = Math.min(nCellsPerDimension[n] - 1, ndIdx[n] + reach);
+            }
+            grid.forEachIndexInBox(min, max, seedCells::add);
+        }
+
+        //throw away the rois touching them, their cells are mined again too
+        Map<Integer, RoI> invalidated = new LinkedHashMap<>();
+        for (Integer idx : seedCells) {
+            RoI roi = roiByCell.get(idx);
+            if (roi != null) {
+                invalidated.put(roi.getId(), roi);
+            }
+        }
+        Map<Integer, RoI> invalidatedByCell = new HashMap<>();
+        for (RoI roi : invalidated.values()) {
+            unindex(roi);
+            for (Integer idx : roi) {
+                invalidatedByCell.put(idx, roi);
+                seedCells.add(idx);
+            }
+        }
+
+        //the rois that are kept must not be expanded into, which is only ever asked of the neighbours of new rois
+        MiningSubSpace seedSpace = new MiningSubSpace(grid, seedCells);
+        Collection<RoI> mined = algorithm.mine(grid, seedSpace, minDensity, nextId, roiByCell::containsKey);
+        //only the seeds and the cells of the new rois were processed
+        seedSpace.unprocessAll();
+        for (RoI roi : mined) {
+            for (Integer idx : roi) {
+                grid.markUnprocessed(idx);
+            }
+        }
+
+        //a new roi overlapping an old one takes its place (and id)
+        Set<Integer> replacedIds = new HashSet<>();
+        for (RoI roi : mined) {
+            RoI replaced = null;
+            for (Integer idx : roi) {
+                RoI old = invalidatedByCell.get(idx);
+                if (old != null && !replacedIds.contains(old.getId())) {
+                    replaced = old;
+                    break;
+                }
+            }
+            if (replaced == null) {
+                roi.setId(nextId++);
+                added.add(roi);
+            } else {
+                replacedIds.add(replaced.getId());
+                roi.setId(replaced.getId());
+                if (roi.getDensity() != replaced.getDensity() || !roi.getCells().equals(replaced.getCells())) {
+                    changed.add(roi);
+                }
+            }
+            index(roi);
+        }
+        for (RoI old : invalidated.values()) {
+            if (!replacedIds.contains(old.getId())) {
+                removed.add(old);
+            }
+        }
+        return new RoIDiff(added, removed, changed);
+    }
+
+    /**
+     * @return The current rois of the grid.
+     */
+    public Collection<RoI> getRoIs() {
+        return new ArrayList<>(rois.values());
+    }
+
+    private void index(RoI roi) {
+        rois.put(roi.getId(), roi);
+        for (Integer idx : roi) {
+            roiByCell.put(idx, roi);
+        }
+    }
+
+    private void unindex(RoI roi) {
+        rois.remove(roi.getId());
+        for (Integer idx : roi) {
+            roiByCell.remove(idx);
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.roi.model.BoxRoI;
+import onethreeseven.roi.model.MiningCell;
+import onethreeseven.roi.model.MiningSubSpace;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.RoILookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Mines the RoIs of a grid in parallel, by splitting it into tiles (boxes of cells) that are mined at the same time.
+ * Within a tile RoIs are seeded and expanded just as the sequential algorithm would if the tile was the whole grid.
+ * Tiles share the processed flags of the grid, which are claimed atomically, but never expand outside themselves,
+ * so the RoIs found do not depend on how the tiles happen to be scheduled.
+ * Afterwards RoIs cut by a tile border are joined back up: any two RoIs from different tiles with cells that are
+ * neighbours (in the grid's {@link onethreeseven.roi.model.Neighbourhood}) become one RoI.
+ * Joining is transitive, so it is only right for {@link ExpansiveRoIs}, whose RoIs are the connected cells
+ * above the min density; the RoIs are then the same as mining sequentially.
+ * {@link SlopeRoIs} and {@link DisjointRoIs} may keep neighbouring RoIs apart on purpose, which joining would undo,
+ * so they cannot be mined a tile at a time.
+ * RoIs are given ids in seed order (densest cell first, ties by lowest index), counting up from 0.
+ * Note: only algorithms that support it can be mined a tile at a time, see {@link AbstractRoIMining#supportsTiledMining()},
+ * and only grids that can be read from many threads at once, see {@link RoIGrid#supportsConcurrentMining()}.
+ * @author Luke Bermingham
+ */
+public class ParallelRoIMining {
+
+    private final Supplier<? extends AbstractRoIMining> algorithmFactory;
+    private final int[] cellsPerTile;
+    private final ExecutorService executor;
+
+    /**
+     * @param algorithmFactory makes the algorithm to mine with, one is made for each part mined at the same time
+     * @param cellsPerTile how many cells each tile spans in each dimension
+     * @param executor where the tiles are mined, i.e. {@link ForkJoinPool#commonPool()}
+     */
+    public ParallelRoIMining(Supplier<? extends AbstractRoIMining> algorithmFactory, int[] cellsPerTile,
+                             ExecutorService executor) {
+        AbstractRoIMining algorithm = algorithmFactory.get();
+        if (!algorithm.supportsTiledMining()) {
+            throw new IllegalArgumentException(algorithm + " RoIs cannot be mined a tile at a time.");
+        }
+        for (int nCells : cellsPerTile) {
+            if (nCells < 1) {
+                throw new IllegalArgumentException("Tiles must span at least one cell in each dimension.");
+            }
+        }
+        this.algorithmFactory = algorithmFactory;
+        this.cellsPerTile = cellsPerTile.clone();
+        this.executor = executor;
+    }
+
+    /**
+     * @param grid the grid to mine
+     * @param minDensity the minimum number of time a cell must be visited to be an RoI
+     * @return The rois of the grid, in seed order.
+     */
+    public Collection<RoI> run(RoIGrid grid, int minDensity) {
+        if (!grid.supportsConcurrentMining()) {
+            throw new IllegalArgumentException("This grid cannot be mined from many threads at once.");
+        }
+        int[] nCellsPerDimension = grid.getNCellsPerDimension();
+        if (nCellsPerDimension.length != cellsPerTile.length) {
+            throw new IllegalArgumentException("Tiles have " + cellsPerTile.length +
+                    " dimensions, but the grid has " + nCellsPerDimension.length + ".");
+        }
+        List<Set<Integer>> tiles = makeTiles(grid, nCellsPerDimension);
+
+        //each part writes the rois of its own tiles, so no merging is needed until all are done
+        List<Collection<RoI>> tileRoIs = new ArrayList<>(tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            tileRoIs.add(null);
+        }
+        int parallelism = (executor instanceof ForkJoinPool) ?
+                ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        int nParts = Math.min(tiles.size(), parallelism);
+        try {
+            if (nParts <= 1) {
+                mineTiles(grid, tiles, 0, tiles.size(), minDensity, tileRoIs);
+            } else {
+                List<Future<?>> parts = new ArrayList<>(nParts);
+                for (int i = 0; i < nParts; i++) {
+                    final int partStart = (int) ((long) tiles.size() * i / nParts);
+                    final int partEnd = (int) ((long) tiles.size() * (i + 1) / nParts);
+                    parts.add(executor.submit(() -> mineTiles(grid, tiles, partStart, partEnd, minDensity, tileRoIs)));
+                }
+                for (Future<?> part : parts) {
+                    awaitPart(part);
+                }
+            }
+        } finally {
+            //mark all cells unprocessed, so we can reuse the grid
+            grid.unprocessAll();
+        }
+
+        List<RoI> pieces = new ArrayList<>();
+        for (Collection<RoI> rois : tileRoIs) {
+            pieces.addAll(rois);
+        }
+        int[] pieceTiles = new int[pieces.size()];
+        int piece = 0;
+        for (int tile = 0; tile < tileRoIs.size(); tile++) {
+            for (int i = 0; i < tileRoIs.get(tile).size(); i++) {
+                pieceTiles[piece++] = tile;
+            }
+        }
+        return joinAcrossBorders(grid, pieces, pieceTiles);
+    }
+
+    private static void awaitPart(Future<?> part) {
+        try {
+            part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst mining tiles.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not mine tiles.", e.getCause());
+        }
+    }
+
+    /**
+     * @return The cells of each tile, as boxes so their memory does not grow with the tile size.
+     */
+    private List<Set<Integer>> makeTiles(RoIGrid grid, int[] nCellsPerDimension) {
+        int nDimensions = nCellsPerDimension.length;
+        int[] nTilesPerDimension = new int[nDimensions];
+        int nTiles = 1;
+        for (int n = 0; n < nDimensions; n++) {
+            nTilesPerDimension[n] = (nCellsPerDimension[n] + cellsPerTile[n] - 1) / cellsPerTile[n];
+            nTiles = Math.multiplyExact(nTiles, nTilesPerDimension[n]);
+        }
+        List<Set<Integer>> tiles = new ArrayList<>(nTiles);
+        int[] min = new int[nDimensions];
+        int[] max = new int[nDimensions];
+        for (int tile = 0; tile < nTiles; tile++) {
+            int rest = tile;
+            for (int n = 0; n < nDimensions; n++) {
+                int tileIdx = rest % nTilesPerDimension[n];
+                rest /= nTilesPerDimension[n];
+                min[n] = tileIdx * cellsPerTile[n];
+                max[n] = Math.min(nCellsPerDimension[n], min[n] + cellsPerTile[n]) - 1;
+            }
+            tiles.add(new BoxRoI(tile, min, max, 0, grid).getCells());
+        }
+        return tiles;
+    }
+
+    private void mineTiles(RoIGrid grid, List<Set<Integer>> tiles, int start, int end,
+                           int minDensity, List<Collection<RoI>> tileRoIs) {
+        AbstractRoIMining algorithm = algorithmFactory.get();
+        for (int i = start; i < end; i++) {
+            MiningSubSpace tile = new MiningSubSpace(grid, tiles.get(i));
+            //single cells are kept, they may be part of an roi that carries on in the next tile
+            tileRoIs.set(i, algorithm.mine(tile, tile, minDensity, 0, true));
+        }
+    }
+
+    /**
+     * Joins the rois found in each tile that neighbour each other across a tile border.
+     * @param grid the grid that was mined
+     * @param pieces the rois found in each tile, in tile order
+     * @param pieceTiles the tile each roi was found in
+     * @return The joined rois of more than one cell, in seed order.
+     */
+    private Collection<RoI> joinAcrossBorders(RoIGrid grid, List<RoI> pieces, int[] pieceTiles) {
+        for (int i = 0; i < pieces.size(); i++) {
+            pieces.get(i).setId(i);
+        }
+        RoILookup lookup = new RoILookup(pieces, grid);
+        int[] parents = new int[pieces.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        //neighbours are those of the grid's neighbourhood, so wider neighbourhoods join diagonally too
+        for (RoI piece : pieces) {
+            int pieceId = piece.getId();
+            for (Integer idx : piece) {
+                grid.forEachNeighbour(idx, neighbourIdx -> {
+                    int otherId = lookup.getRoIId(neighbourIdx);
+                    //rois in the same tile were kept apart by the algorithm itself
+                    if (otherId != RoILookup.NO_ROI && pieceTiles[otherId] != pieceTiles[pieceId]) {
+                        union(parents, pieceId, otherId);
+                    }
+                });
+            }
+        }
+
+        //gather each joined roi, remembering its seed (densest cell, then lowest index)
+        List<RoI> joined = new ArrayList<>();
+        List<long[]> seedKeys = new ArrayList<>();
+        int[] joinedByRoot = new int[pieces.size()];
+        Arrays.fill(joinedByRoot, -1);
+        for (RoI piece : pieces) {
+            int root = find(parents, piece.getId());
+            if (joinedByRoot[root] == -1) {
+                joinedByRoot[root] = joined.size();
+                joined.add(new RoI(root));
+                seedKeys.add(new long[]{Long.MAX_VALUE, joinedByRoot[root]});
+            }
+            RoI roi = joined.get(joinedByRoot[root]);
+            long[] seedKey = seedKeys.get(joinedByRoot[root]);
+            for (Integer idx : piece) {
+                MiningCell cell = grid.getCell(idx);
+                roi.add(cell);
+                long key = ((long) (Integer.MAX_VALUE - cell.getDensity()) << 32) | idx;
+                seedKey[0] = Math.min(seedKey[0], key);
+            }
+        }
+
+        seedKeys.sort((o1, o2) -> Long.compare(o1[0], o2[0]));
+        List<RoI> rois = new ArrayList<>();
+        for (long[] seedKey : seedKeys) {
+            RoI roi = joined.get((int) seedKey[1]);
+            //if it is just one cell we do not call this a region
+            if (roi.size() > 1) {
+                roi.setId(rois.size());
+                rois.add(roi);
+            }
+        }
+        return rois;
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            //halve the path as we go
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        //the lower root wins, so the joining does not depend on the order borders are checked
+        if (rootA < rootB) {
+            parents[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parents[rootA] = rootB;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.roi.model.RoI;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How the RoIs of a space changed between two rounds of {@link IncrementalRoIMining}.
+ * An RoI that was re-mined into a different region keeps its id and is reported as changed.
+ * @author Luke Bermingham
+ */
+public class RoIDiff {
+
+    private final List<RoI> added;
+    private final List<RoI> removed;
+    private final List<RoI> changed;
+
+    RoIDiff(List<RoI> added, List<RoI> removed, List<RoI> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * @return The new rois, with ids not used before.
+     */
+    public List<RoI> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return The rois that no longer exist, as they were before.
+     */
+    public List<RoI> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return The new version of each roi whose cells or density changed, it has the same id as before.
+     */
+    public List<RoI> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "RoIDiff {" +
+                " added=" + added.size() +
+                " removed=" + removed.size() +
+                " changed=" + changed.size() +
+                '}';
+    }
+
+}
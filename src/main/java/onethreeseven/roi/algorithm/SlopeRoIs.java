@@ -4,7 +4,6 @@ import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIMiningSpace;
 
-import java.util.Collection;
 
 /**
  * Slope is an RoI mining algorithm designed by Hio et al resolve,
@@ -40,19 +39,23 @@ public class SlopeRoIs extends AbstractRoIMining {
     }
 
     @Override
-    protected MiningCell pickNextCell(Collection<MiningCell> neighbourCells,
-                                      MiningCell currentCell,
-                                      int minDensity) {
-        for (MiningCell neighbourCell : neighbourCells) {
-            if (!neighbourCell.isProcessed()) {
-                int neighbourDensity = neighbourCell.getDensity();
+    protected int pickNextCell(RoIMiningSpace miningSpace,
+                               int[] neighbourIndices,
+                               int nNeighbours,
+                               MiningCell currentCell,
+                               int minDensity) {
+        int currentDensity = currentCell.getDensity();
+        for (int i = 0; i < nNeighbours; i++) {
+            int neighbourIdx = neighbourIndices[i];
+            if (!miningSpace.isProcessed(neighbourIdx)) {
+                int neighbourDensity = miningSpace.getDensity(neighbourIdx);
                 //slope criteria here
-                if (neighbourDensity >= minDensity && neighbourDensity <= currentCell.getDensity()) {
-                    return neighbourCell;
+                if (neighbourDensity >= minDensity && neighbourDensity <= currentDensity) {
+                    return neighbourIdx;
                 }
             }
         }
-        return currentCell;
+        return currentCell.getIndex();
     }
 
     @Override
@@ -26,9 +26,11 @@ public class ThresholdRoIs extends AbstractRoIMining {
     }
 
     @Override
-    protected MiningCell pickNextCell(Collection<MiningCell> neighbourCells,
-                                      MiningCell currentCell,
-                                      int minDensity) {
+    protected int pickNextCell(RoIMiningSpace roIMiningSpace,
+                               int[] neighbourIndices,
+                               int nNeighbours,
+                               MiningCell currentCell,
+                               int minDensity) {
         throw new UnsupportedOperationException("Not used in threshold roi mining");
     }
 
@@ -53,6 +55,11 @@ public class ThresholdRoIs extends AbstractRoIMining {
         return rois;
     }
 
+    @Override
+    protected boolean supportsIncrementalMining() {
+        return false;
+    }
+
     @Override
     public String toString(){
         return "Threshold";
@@ -1,17 +1,30 @@
 package onethreeseven.roi.algorithm;
 
-import onethreeseven.collections.IntArray;
 import onethreeseven.datastructures.model.ITrajectory;
 import onethreeseven.datastructures.model.SpatialTrajectory;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
+import onethreeseven.roi.model.EntityBitmap;
+import onethreeseven.roi.model.EntityInterner;
+import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.RoILookup;
+import onethreeseven.roi.model.RoIMiningSpace;
 import onethreeseven.spm.model.SequentialPattern;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Convert a single trajectory into a series of RoI visitations.
@@ -27,37 +40,122 @@ public final class TrajectoryRoIUtil {
 
     /**
      * Converts a trajectory to a series of RoI id visitations.
+     * Note: this builds a {@link RoILookup} for the rois each call,
+     * when converting many trajectories build it once and use {@link #fromTrajToRoISequence(ITrajectory, RoILookup, RoIGrid)}.
      * @param trajectory trajectory
      * @param rois rois
      * @param roIGrid the roi grid
      * @return An int[] of RoI ids that were visited by this trajectory.
      */
     public static int[] fromTrajToRoISequence(ITrajectory trajectory, Collection<RoI> rois, RoIGrid roIGrid) {
-        //make output map for each roi
+        return fromTrajToRoISequence(trajectory, new RoILookup(rois, roIGrid), roIGrid);
+    }
 
-        IntArray visitedRoIs = new IntArray(trajectory.size(), false);
+    /**
+     * Converts a trajectory to a series of RoI id visitations.
+     * @param trajectory trajectory
+     * @param lookup the cell to roi lookup of the rois
+     * @param roIGrid the roi grid
+     * @return An int[] of RoI ids that were visited by this trajectory.
+     */
+    public static int[] fromTrajToRoISequence(ITrajectory trajectory, RoILookup lookup, RoIGrid roIGrid) {
+        int[] visitedRoIs = new int[trajectory.size()];
+        int nVisited = fillRoISequence(trajectory, lookup, roIGrid, visitedRoIs);
+        return Arrays.copyOf(visitedRoIs, nVisited);
+    }
 
-        int prevId = Integer.MIN_VALUE;
+    /**
+     * Converts each trajectory to a series of RoI id visitations, i.e. the sequence database for SPM.
+     * @param trajectories the trajectories
+     * @param lookup the cell to roi lookup of the rois
+     * @param roIGrid the roi grid
+     * @return The RoI ids visited by each trajectory, in the iteration order of the trajectories.
+     */
+    public static int[][] fromTrajsToRoISequences(Map<String, ? extends ITrajectory> trajectories, RoILookup lookup, RoIGrid roIGrid) {
+        List<ITrajectory> trajs = new ArrayList<>(trajectories.values());
+        int[][] sequences = new int[trajs.size()][];
+        fillRoISequences(trajs, 0, trajs.size(), lookup, roIGrid, sequences);
+        return sequences;
+    }
+
+    /**
+     * Converts each trajectory to a series of RoI id visitations, i.e. the sequence database for SPM.
+     * The trajectories are split into contiguous parts which are converted on the executor,
+     * so the output is the same as {@link #fromTrajsToRoISequences(Map, RoILookup, RoIGrid)}.
+     * @param trajectories the trajectories
+     * @param lookup the cell to roi lookup of the rois
+     * @param roIGrid the roi grid
+     * @param executor where the trajectories are converted, i.e. {@link ForkJoinPool#commonPool()}
+     * @return The RoI ids visited by each trajectory, in the iteration order of the trajectories.
+     */
+    public static int[][] fromTrajsToRoISequences(Map<String, ? extends ITrajectory> trajectories, RoILookup lookup,
+                                                  RoIGrid roIGrid, ExecutorService executor) {
+        List<ITrajectory> trajs = new ArrayList<>(trajectories.values());
+        int[][] sequences = new int[trajs.size()][];
+        int parallelism = (executor instanceof ForkJoinPool) ?
+                ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        int nParts = Math.min(trajs.size(), parallelism);
+        if (nParts <= 1) {
+            fillRoISequences(trajs, 0, trajs.size(), lookup, roIGrid, sequences);
+            return sequences;
+        }
+
+        //each part writes its own slots of the output, so no merging is needed
+        List<Future<?>> parts = new ArrayList<>(nParts);
+        for (int i = 0; i < nParts; i++) {
+            final int partStart = (int) ((long) trajs.size() * i / nParts);
+            final int partEnd = (int) ((long) trajs.size() * (i + 1) / nParts);
+            parts.add(executor.submit(() -> fillRoISequences(trajs, partStart, partEnd, lookup, roIGrid, sequences)));
+        }
+        for (Future<?> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted whilst converting trajectories.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Could not convert trajectories.", e.getCause());
+            }
+        }
+        return sequences;
+    }
+
+    private static void fillRoISequences(List<ITrajectory> trajs, int start, int end, RoILookup lookup,
+                                         RoIGrid roIGrid, int[][] sequences) {
+        //one buffer for the whole part, only grown for longer trajectories
+        int[] buffer = new int[0];
+        for (int i = start; i < end; i++) {
+            ITrajectory trajectory = trajs.get(i);
+            if (buffer.length < trajectory.size()) {
+                buffer = new int[trajectory.size()];
+            }
+            int nVisited = fillRoISequence(trajectory, lookup, roIGrid, buffer);
+            sequences[i] = Arrays.copyOf(buffer, nVisited);
+        }
+    }
+
+    /**
+     * @param visitedRoIs where the visited roi ids are written, must fit one per point of the trajectory
+     * @return How many roi ids were written.
+     */
+    private static int fillRoISequence(ITrajectory trajectory, RoILookup lookup, RoIGrid roIGrid, int[] visitedRoIs) {
+        int nVisited = 0;
+        int prevId = RoILookup.NO_ROI;
 
         //set the status of point to the RoI id (or not)
         Iterator<double[]> iter = trajectory.coordinateIter();
         while(iter.hasNext()){
             double[] trajCoord = iter.next();
-            int cellIdx = roIGrid.getIndex(trajCoord);
-            for (RoI roi : rois) {
-                //set the output to the id of the RoI
-                //this roi contained the point or not
-                if (roi != null && roi.contains(cellIdx)) {
-                    int roiId = roi.getId();
-                    if(roiId != prevId){
-                        visitedRoIs.add(roiId);
-                        prevId = roiId;
-                    }
-                    break;
-                }
+            int roiId = lookup.getRoIId(roIGrid.getIndex(trajCoord));
+            if (roiId != RoILookup.NO_ROI && roiId != prevId) {
+                visitedRoIs[nVisited++] = roiId;
+                prevId = roiId;
             }
         }
-        return visitedRoIs.getArray();
+        return nVisited;
     }
 
     /**
@@ -90,4 +188,60 @@ public final class TrajectoryRoIUtil {
         return out;
     }
 
+    /**
+     * Finds the trajectories that passed through every cell of an RoI, by and-ing the cells' entity bitmaps.
+     * @param roi the roi
+     * @param miningSpace the space the roi was mined from
+     * @return The ordinals of the trajectories that passed through all cells of the roi.
+     * @see RoIGrid#enableEntityBitmaps() to keep the bitmaps rather than making them per query
+     */
+    public static EntityBitmap getEntitiesThroughAllCells(RoI roi, RoIMiningSpace miningSpace) {
+        EntityBitmap entities = null;
+        for (Integer cellIdx : roi) {
+            MiningCell cell = miningSpace.getCell(cellIdx);
+            if (cell == null) {
+                return new EntityBitmap();
+            }
+            if (entities == null) {
+                //copied, the cell's own bitmap must not be handed out
+                entities = new EntityBitmap();
+                entities.addAll(cell.getEntityBitmap());
+            } else {
+                entities = entities.and(cell.getEntityBitmap());
+            }
+            if (entities.isEmpty()) {
+                break;
+            }
+        }
+        return entities == null ? new EntityBitmap() : entities;
+    }
+
+    /**
+     * Finds the trajectories that passed through any cell of an RoI, by or-ing the cells' entity bitmaps.
+     * @param roi the roi
+     * @param miningSpace the space the roi was mined from
+     * @return The ordinals of the trajectories that passed through at least one cell of the roi.
+     */
+    public static EntityBitmap getEntitiesThroughAnyCell(RoI roi, RoIMiningSpace miningSpace) {
+        EntityBitmap entities = new EntityBitmap();
+        for (Integer cellIdx : roi) {
+            MiningCell cell = miningSpace.getCell(cellIdx);
+            if (cell != null) {
+                entities.addAll(cell.getEntityBitmap());
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * @param entities a set of entity ordinals
+     * @param interner the interner of the grid the ordinals came from
+     * @return The trajectory ids of the entities.
+     */
+    public static Set<String> toTrajectoryIds(EntityBitmap entities, EntityInterner interner) {
+        Set<String> ids = new HashSet<>(entities.cardinality());
+        entities.forEach(entity -> ids.add(interner.idOf(entity)));
+        return ids;
+    }
+
 }
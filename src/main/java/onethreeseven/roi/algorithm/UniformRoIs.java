@@ -1,11 +1,15 @@
 package onethreeseven.roi.algorithm;
 
 
+import onethreeseven.roi.model.BoxRoI;
 import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
 import onethreeseven.roi.model.RoIMiningSpace;
+import onethreeseven.roi.model.SummedAreaTable;
 
 import java.util.Collection;
+import java.util.function.IntConsumer;
 
 /**
  * Heuristic RoI algorithm from "Trajectory Pattern Mining" by Giannotti et al.
@@ -17,12 +21,35 @@ import java.util.Collection;
  */
 public class UniformRoIs extends AbstractRoIMining {
 
+    /**
+     * Whether the run has yet to make its table of box densities, which is only done once a box is assessed.
+     */
+    private boolean buildBoxDensities = false;
+    /**
+     * Prefix sums of the densities of the grid being mined, only kept for one run.
+     */
+    private SummedAreaTable boxDensities = null;
+
+    @Override
+    public Collection<RoI> run(RoIMiningSpace roIMiningSpace, int minDensity) {
+        buildBoxDensities = true;
+        try {
+            return super.run(roIMiningSpace, minDensity);
+        } finally {
+            buildBoxDensities = false;
+            boxDensities = null;
+        }
+    }
+
     @Override
     protected MiningCell handleNeighbourCell(RoIMiningSpace roIMiningSpace,
                                              RoI currentRoI,
                                              MiningCell neighbourCell,
                                              MiningCell currentCell,
                                              int minDensity) {
+        if (roIMiningSpace instanceof RoIGrid && currentRoI instanceof BoxRoI) {
+            return expandBox((RoIGrid) roIMiningSpace, (BoxRoI) currentRoI, neighbourCell, currentCell, minDensity);
+        }
         //need to factor the rectangular average density
         int newId = currentRoI.getId() + 1;
         //make a potential roi because we don't want to affect the real one if this one is impossible
@@ -51,23 +78,114 @@ public class UniformRoIs extends AbstractRoIMining {
         }
     }
 
+    /**
+     * On a grid every roi is a box, so just the bounds of the box are kept.
+     */
+    @Override
+    protected RoI newRoI(RoIMiningSpace miningSpace, MiningCell seedCell, int id) {
+        if (miningSpace instanceof RoIGrid) {
+            RoIGrid grid = (RoIGrid) miningSpace;
+            int[] ndIdx = grid.toNdIdx(seedCell.getIndex());
+            return new BoxRoI(id, ndIdx, ndIdx, seedCell.getDensity(), grid);
+        }
+        return super.newRoI(miningSpace, seedCell, id);
+    }
+
+    /**
+     * Same as the general approach, but on a grid the roi is a box,
+     * so the density of a potential box comes from a summed-area table of the grid
+     * and only the cells that are new to the box are ever visited.
+     */
+    private MiningCell expandBox(RoIGrid grid,
+                                 BoxRoI currentRoI,
+                                 MiningCell neighbourCell,
+                                 MiningCell currentCell,
+                                 int minDensity) {
+        int nDimensions = grid.nDimensions();
+        int[] boxMin = currentRoI.getMin();
+        int[] boxMax = currentRoI.getMax();
+
+        //the potential box also covers the neighbour
+        int[] neighbourIdx = grid.toNdIdx(neighbourCell.getIndex());
+        int[] potentialMin = new int[nDimensions];
+        int[] potentialMax = new int[nDimensions];
+        long nCells = 1;
+        for (int n = 0; n < nDimensions; n++) {
+            potentialMin[n] = Math.min(boxMin[n], neighbourIdx[n]);
+            potentialMax[n] = Math.max(boxMax[n], neighbourIdx[n]);
+            nCells *= potentialMax[n] - potentialMin[n] + 1;
+        }
+
+        //assess the density of the potential region
+        if (buildBoxDensities) {
+            //densities do not change while mining, so one table answers every box of this run
+            boxDensities = grid.createSummedAreaTable();
+            buildBoxDensities = false;
+        }
+        long boxDensity = (boxDensities != null) ?
+                boxDensities.sum(potentialMin, potentialMax) : grid.getBoxDensity(potentialMin, potentialMax);
+        double avgDensity = (double) boxDensity / nCells;
+        if (avgDensity >= minDensity) {
+            //mark processed only the cells the box did not already have, empty cells are never seeds anyway
+            forEachNewCell(grid, potentialMin, potentialMax, boxMin, boxMax, cellIdx -> {
+                MiningCell cell = grid.getCell(cellIdx);
+                if (cell != null) {
+                    cell.markProcessed();
+                }
+            });
+            currentRoI.expandTo(potentialMin, potentialMax, boxDensity);
+            //neighbour cell was a successful candidate for expansion, make it the new seed
+            return neighbourCell;
+        } else {
+            //stop expanding
+            return currentCell;
+        }
+    }
+
+    /**
+     * Visit the cells in the new box that are not in the old box, as at most two slabs per dimension.
+     */
+    private static void forEachNewCell(RoIGrid grid, int[] newMin, int[] newMax,
+                                       int[] oldMin, int[] oldMax, IntConsumer visitor) {
+        int[] slabMin = newMin.clone();
+        int[] slabMax = newMax.clone();
+        for (int n = 0; n < newMin.length; n++) {
+            //before the old box in this dimension
+            slabMin[n] = newMin[n];
+            slabMax[n] = oldMin[n] - 1;
+            grid.forEachIndexInBox(slabMin, slabMax, visitor);
+            //after the old box in this dimension
+            slabMin[n] = oldMax[n] + 1;
+            slabMax[n] = newMax[n];
+            grid.forEachIndexInBox(slabMin, slabMax, visitor);
+            //the remaining dimensions only need what is level with the old box in this one
+            slabMin[n] = oldMin[n];
+            slabMax[n] = oldMax[n];
+        }
+    }
+
     @Override
-    protected MiningCell pickNextCell(Collection<MiningCell> neighbourCells,
-                                      MiningCell currentCell,
-                                      int minDensity) {
+    protected int pickNextCell(RoIMiningSpace miningSpace,
+                               int[] neighbourIndices,
+                               int nNeighbours,
+                               MiningCell currentCell,
+                               int minDensity) {
         //find the most dense neighbour that is above the min density
-        MiningCell mostDense = null;
-        for (MiningCell neighbourCell : neighbourCells) {
-            int neighbourDensity = neighbourCell.getDensity();
-            if (!neighbourCell.isProcessed() && neighbourDensity >= minDensity &&
-                    (mostDense == null || neighbourCell.getDensity() > mostDense.getDensity())) {
+        int mostDense = -1;
+        int mostDenseDensity = -1;
+        for (int i = 0; i < nNeighbours; i++) {
+            int neighbourIdx = neighbourIndices[i];
+            int neighbourDensity = miningSpace.getDensity(neighbourIdx);
+            if (!miningSpace.isProcessed(neighbourIdx) && neighbourDensity >= minDensity &&
+                    (mostDense == -1 || neighbourDensity > mostDenseDensity)) {
                 //make the current neighbour the most dense
-                mostDense = neighbourCell;
+                mostDense = neighbourIdx;
+                mostDenseDensity = neighbourDensity;
             }
         }
         //there was no good neighbour so return current cell
-        if (mostDense == null) {
-            mostDense = currentCell;
+        if (mostDense == -1) {
+            mostDense = currentCell.getIndex();
         }
         return mostDense;
     }
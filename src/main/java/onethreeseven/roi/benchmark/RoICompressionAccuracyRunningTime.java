@@ -15,11 +15,13 @@ import onethreeseven.roi.algorithm.UniformRoIs;
 import onethreeseven.roi.model.MiningSpaceFactory;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.RoILookup;
 import onethreeseven.trajsuitePlugin.util.BoundsUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Measures compression, accuracy, and running time of an RoI method.
@@ -153,7 +155,7 @@ public class RoICompressionAccuracyRunningTime {
             double diagonalDist = Maths.dist(bl, tr);
             int nGridCells = (int) Math.round(diagonalDist/gridCellSizeMetres);
             long startTime = System.currentTimeMillis();
-            grid = MiningSpaceFactory.createGrid(rawTrajs, new int[]{nGridCells, nGridCells}, 1);
+            grid = MiningSpaceFactory.createGrid(rawTrajs, new int[]{nGridCells, nGridCells}, 1, ForkJoinPool.commonPool());
             long endTime = System.currentTimeMillis();
             gridSetupTime = endTime - startTime;
         }
@@ -179,9 +181,14 @@ public class RoICompressionAccuracyRunningTime {
 
             int nEntries = 0;
 
+            RoILookup roiLookup = new RoILookup(rois, grid);
+            int[][] rawRoISequences = TrajectoryRoIUtil.fromTrajsToRoISequences(rawTrajs, roiLookup, grid,
+                    ForkJoinPool.commonPool());
+
+            int trajIdx = 0;
             for (Map.Entry<String, SpatioCompositeTrajectory> rawEntry : rawTrajs.entrySet()) {
 
-                int[] rawRoISequence = TrajectoryRoIUtil.fromTrajToRoISequence(rawEntry.getValue(), rois, grid);
+                int[] rawRoISequence = rawRoISequences[trajIdx++];
 
                 if (doAccuracyMeasurement && truthTrajs != null) {
                     STTrajectory truthTraj = truthTrajs.get(rawEntry.getKey());
@@ -189,7 +196,7 @@ public class RoICompressionAccuracyRunningTime {
                         continue;
                     }
 
-                    int[] truthRoISequence = TrajectoryRoIUtil.fromTrajToRoISequence(truthTraj, rois, grid);
+                    int[] truthRoISequence = TrajectoryRoIUtil.fromTrajToRoISequence(truthTraj, roiLookup, grid);
                     double accuracy = computeAccuracy(rawRoISequence, truthRoISequence);
                     accuracies.add(accuracy);
                 }
@@ -0,0 +1,37 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.roi.model.RoI;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The RoIs read back by {@link RoIExport}, along with the centroid each had when it was written.
+ * @author Luke Bermingham
+ */
+public final class ExportedRoIs {
+
+    private final List<RoI> rois;
+    private final double[][] centroids;
+
+    ExportedRoIs(List<RoI> rois, double[][] centroids) {
+        this.rois = Collections.unmodifiableList(rois);
+        this.centroids = centroids;
+    }
+
+    /**
+     * @return The rois, in the order they were written.
+     */
+    public List<RoI> getRoIs() {
+        return rois;
+    }
+
+    /**
+     * @param i the position of the roi in {@link #getRoIs()}
+     * @return The centroid of the roi, see {@link onethreeseven.roi.model.RoIGrid#getCentroid(RoI)}.
+     */
+    public double[] getCentroid(int i) {
+        return centroids[i].clone();
+    }
+
+}
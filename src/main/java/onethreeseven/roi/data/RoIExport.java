@@ -0,0 +1,204 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.roi.model.BoxRoI;
+import onethreeseven.roi.model.Grid;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Saves mined RoIs to a compact binary file and reads them back, so they do not have to be mined again.
+ * The file is columnar, each property of every RoI is written together:
+ * <pre>
+ *     int magic, int version
+ *     varint nDimensions, varint[nDimensions] cells per dimension, varint nRoIs
+ *     zig-zag varint[nRoIs] ids, each the difference from the id before
+ *     double[nRoIs] densities
+ *     double[nRoIs * nDimensions] centroids
+ *     byte[nRoIs] kinds, either cells or box
+ *     for each roi of cells: varint size, varint[size] sorted cell indices, each the difference from the index before
+ *     for each box roi: varint[nDimensions] min indices, varint[nDimensions] max minus min
+ * </pre>
+ * Boxes (i.e. from {@link onethreeseven.roi.algorithm.UniformRoIs}) only store their bounds, so are read back as boxes.
+ * @author Luke Bermingham
+ */
+public final class RoIExport {
+
+    /**
+     * "137C" in ascii.
+     */
+    private static final int MAGIC = 0x31333743;
+    private static final int VERSION = 1;
+    private static final byte CELLS = 0;
+    private static final byte BOX = 1;
+
+    private RoIExport() {
+    }
+
+    /**
+     * @param rois the rois to write
+     * @param grid the grid the rois were mined from
+     * @param file the file to write to, overwritten if it exists
+     * @throws IOException if the file could not be written
+     */
+    public static void write(Collection<? extends RoI> rois, RoIGrid grid, File file) throws IOException {
+        int[] nCellsPerDimension = grid.getNCellsPerDimension();
+        int nDimensions = nCellsPerDimension.length;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            VarInts.write(out, nDimensions);
+            for (int nCells : nCellsPerDimension) {
+                VarInts.write(out, nCells);
+            }
+            VarInts.write(out, rois.size());
+
+            int previousId = 0;
+            for (RoI roi : rois) {
+                VarInts.writeSigned(out, roi.getId() - previousId);
+                previousId = roi.getId();
+            }
+            for (RoI roi : rois) {
+                out.writeDouble(roi.getDensity());
+            }
+            for (RoI roi : rois) {
+                double[] centroid = roi.size() == 0 ? null : grid.getCentroid(roi);
+                for (int n = 0; n < nDimensions; n++) {
+                    out.writeDouble(centroid == null ? Double.NaN : centroid[n]);
+                }
+            }
+            for (RoI roi : rois) {
+                out.writeByte(roi instanceof BoxRoI ? BOX : CELLS);
+            }
+            for (RoI roi : rois) {
+                if (roi instanceof BoxRoI) {
+                    continue;
+                }
+                //sorted so the differences between indices are small
+                int[] cells = new int[roi.size()];
+                int i = 0;
+                for (Integer idx : roi) {
+                    cells[i++] = idx;
+                }
+                Arrays.sort(cells);
+                VarInts.write(out, cells.length);
+                int previous = 0;
+                for (int idx : cells) {
+                    VarInts.write(out, idx - previous);
+                    previous = idx;
+                }
+            }
+            for (RoI roi : rois) {
+                if (!(roi instanceof BoxRoI)) {
+                    continue;
+                }
+                BoxRoI box = (BoxRoI) roi;
+                int[] min = box.getMin();
+                int[] max = box.getMax();
+                for (int n = 0; n < nDimensions; n++) {
+                    VarInts.write(out, min[n]);
+                }
+                for (int n = 0; n < nDimensions; n++) {
+                    VarInts.write(out, max[n] - min[n]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file a file written by {@link #write(Collection, RoIGrid, File)}
+     * @param grid a grid with the same cells per dimension as the one the rois were mined from
+     * @return The rois (and their centroids), in the order they were written.
+     * @throws IOException if the file could not be read, or its rois are not from a grid like this one
+     */
+    public static ExportedRoIs read(File file, Grid grid) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " does not hold exported rois.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " holds version " + version + " rois, only version " +
+                        VERSION + " can be read.");
+            }
+            int nDimensions = VarInts.read(in);
+            int[] nCellsPerDimension = new int[nDimensions];
+            for (int n = 0; n < nDimensions; n++) {
+                nCellsPerDimension[n] = VarInts.read(in);
+            }
+            if (!Arrays.equals(nCellsPerDimension, grid.getNCellsPerDimension())) {
+                throw new IOException("The rois of " + file + " are from a grid of " + Arrays.toString(nCellsPerDimension) +
+                        " cells, not " + Arrays.toString(grid.getNCellsPerDimension()) + ".");
+            }
+            int nRoIs = VarInts.read(in);
+
+            int[] ids = new int[nRoIs];
+            int previousId = 0;
+            for (int i = 0; i < nRoIs; i++) {
+                previousId += VarInts.readSigned(in);
+                ids[i] = previousId;
+            }
+            double[] densities = new double[nRoIs];
+            for (int i = 0; i < nRoIs; i++) {
+                densities[i] = in.readDouble();
+            }
+            double[][] centroids = new double[nRoIs][nDimensions];
+            for (int i = 0; i < nRoIs; i++) {
+                for (int n = 0; n < nDimensions; n++) {
+                    centroids[i][n] = in.readDouble();
+                }
+            }
+            byte[] kinds = new byte[nRoIs];
+            in.readFully(kinds);
+
+            RoI[] rois = new RoI[nRoIs];
+            for (int i = 0; i < nRoIs; i++) {
+                if (kinds[i] != CELLS) {
+                    continue;
+                }
+                int[] cells = new int[VarInts.read(in)];
+                int previous = 0;
+                for (int c = 0; c < cells.length; c++) {
+                    previous += VarInts.read(in);
+                    cells[c] = previous;
+                }
+                rois[i] = new RoI(ids[i], cells, densities[i]);
+            }
+            for (int i = 0; i < nRoIs; i++) {
+                if (kinds[i] != BOX) {
+                    continue;
+                }
+                int[] min = new int[nDimensions];
+                int[] max = new int[nDimensions];
+                for (int n = 0; n < nDimensions; n++) {
+                    min[n] = VarInts.read(in);
+                }
+                for (int n = 0; n < nDimensions; n++) {
+                    max[n] = min[n] + VarInts.read(in);
+                }
+                rois[i] = new BoxRoI(ids[i], min, max, densities[i], grid);
+            }
+            List<RoI> read = new ArrayList<>(nRoIs);
+            for (RoI roi : rois) {
+                if (roi == null) {
+                    throw new IOException(file + " holds an roi of an unknown kind.");
+                }
+                read.add(roi);
+            }
+            return new ExportedRoIs(read, centroids);
+        }
+    }
+
+}
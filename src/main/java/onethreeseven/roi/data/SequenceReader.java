@@ -0,0 +1,113 @@
+package onethreeseven.roi.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams back the RoI visitation sequences written by a {@link SequenceWriter}, one sequence at a time,
+ * so only the block being read has to be in memory.
+ * @author Luke Bermingham
+ */
+public class SequenceReader implements Closeable {
+
+    private final DataInputStream in;
+    private int[] lengths = new int[0];
+    private int nInBlock = 0;
+    private int nextInBlock = 0;
+    private boolean finished = false;
+
+    /**
+     * @param file a file written by {@link SequenceWriter}
+     * @throws IOException if the file could not be opened, or was not written by {@link SequenceWriter}
+     */
+    public SequenceReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * @param stream the sequences written by {@link SequenceWriter}, closed when this is
+     * @throws IOException if the header could not be read, or it was not written by {@link SequenceWriter}
+     */
+    public SequenceReader(InputStream stream) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readInt() != SequenceWriter.MAGIC) {
+            in.close();
+            throw new IOException("These are not RoI visitation sequences.");
+        }
+        int version = in.readInt();
+        if (version != SequenceWriter.VERSION) {
+            in.close();
+            throw new IOException("These are version " + version + " sequences, only version " +
+                    SequenceWriter.VERSION + " can be read.");
+        }
+    }
+
+    /**
+     * Reads every sequence of a file into a sequence database.
+     * @param file a file written by {@link SequenceWriter}
+     * @return The sequences, in the order they were written.
+     * @throws IOException if the file could not be read
+     */
+    public static int[][] readAll(File file) throws IOException {
+        List<int[]> sequences = new ArrayList<>();
+        try (SequenceReader reader = new SequenceReader(file)) {
+            for (int[] sequence = reader.next(); sequence != null; sequence = reader.next()) {
+                sequences.add(sequence);
+            }
+        }
+        return sequences.toArray(new int[sequences.size()][]);
+    }
+
+    /**
+     * @return The next sequence of RoI ids, or null once every sequence has been read.
+     * @throws IOException if the sequence could not be read
+     */
+    public int[] next() throws IOException {
+        if (nextInBlock == nInBlock) {
+            if (finished || !readBlockHeader()) {
+                finished = true;
+                return null;
+            }
+        }
+        int[] sequence = new int[lengths[nextInBlock++]];
+        int previous = 0;
+        for (int i = 0; i < sequence.length; i++) {
+            previous += VarInts.readSigned(in);
+            sequence[i] = previous;
+        }
+        return sequence;
+    }
+
+    /**
+     * @return False if it was the empty block that marks the end.
+     */
+    private boolean readBlockHeader() throws IOException {
+        nInBlock = VarInts.read(in);
+        nextInBlock = 0;
+        if (nInBlock == 0) {
+            return false;
+        }
+        if (lengths.length < nInBlock) {
+            lengths = new int[nInBlock];
+        }
+        for (int i = 0; i < nInBlock; i++) {
+            lengths[i] = VarInts.read(in);
+        }
+        //the size of the ids, only needed to skip the block
+        VarInts.read(in);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
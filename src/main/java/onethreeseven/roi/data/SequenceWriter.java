@@ -0,0 +1,113 @@
+package onethreeseven.roi.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams RoI visitation sequences (i.e. those made by {@link onethreeseven.roi.algorithm.TrajectoryRoIUtil})
+ * to disk in a compact columnar layout, without the whole sequence database having to be in memory.
+ * Sequences are written in blocks. Each block holds the length of each of its sequences, then all their RoI ids,
+ * each id stored as a zig-zag varint of its difference from the id before it in the sequence:
+ * <pre>
+ *     int magic, int version
+ *     for each block: varint nSequences, varint[nSequences] lengths, varint nBytes, byte[nBytes] ids
+ *     varint 0
+ * </pre>
+ * Sequences must be written in the order they should be read back, see {@link SequenceReader}.
+ * @author Luke Bermingham
+ */
+public class SequenceWriter implements Closeable {
+
+    /**
+     * "137S" in ascii.
+     */
+    static final int MAGIC = 0x31333753;
+    static final int VERSION = 1;
+    static final int SEQUENCES_PER_BLOCK = 4096;
+
+    private final DataOutputStream out;
+    private final int[] lengths = new int[SEQUENCES_PER_BLOCK];
+    private final ByteArrayOutputStream ids = new ByteArrayOutputStream();
+    private final DataOutputStream idsOut = new DataOutputStream(ids);
+    private int nBuffered = 0;
+
+    /**
+     * @param file the file to write to, overwritten if it exists
+     * @throws IOException if the file could not be opened
+     */
+    public SequenceWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * @param stream where to write the sequences, closed when this is
+     * @throws IOException if the header could not be written
+     */
+    public SequenceWriter(OutputStream stream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Writes every sequence of a sequence database to a file.
+     * @param sequences the sequences, i.e. from {@link onethreeseven.roi.algorithm.TrajectoryRoIUtil#fromTrajsToRoISequences}
+     * @param file the file to write to, overwritten if it exists
+     * @throws IOException if the file could not be written
+     */
+    public static void writeAll(int[][] sequences, File file) throws IOException {
+        try (SequenceWriter writer = new SequenceWriter(file)) {
+            for (int[] sequence : sequences) {
+                writer.write(sequence);
+            }
+        }
+    }
+
+    /**
+     * @param sequence the RoI ids visited by one trajectory, it is encoded straight away so may be reused
+     * @throws IOException if a full block could not be written
+     */
+    public void write(int[] sequence) throws IOException {
+        lengths[nBuffered++] = sequence.length;
+        int previous = 0;
+        for (int id : sequence) {
+            VarInts.writeSigned(idsOut, id - previous);
+            previous = id;
+        }
+        if (nBuffered == SEQUENCES_PER_BLOCK) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        VarInts.write(out, nBuffered);
+        for (int i = 0; i < nBuffered; i++) {
+            VarInts.write(out, lengths[i]);
+        }
+        //the size of the ids lets readers skip a block without decoding it
+        VarInts.write(out, ids.size());
+        ids.writeTo(out);
+        ids.reset();
+        nBuffered = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (nBuffered > 0) {
+                writeBlock();
+            }
+            //an empty block marks the end
+            VarInts.write(out, 0);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoIGrid;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Builds an RoI grid from trajectory files too large to load, by streaming their points into the grid line by line.
+ * Unlike {@link MiningSpaceFactory#createGrid(java.util.Map, int[], int)} the trajectories are never held in memory,
+ * only a read buffer and the last point of each entity, so memory is set by the size of the grid.
+ * Each line of a file is one point, with an entity id field and a field for each coordinate, i.e. "id,x,y".
+ * The points of an entity are joined in the order they are read (across files too), so the density is the same
+ * as populating the grid with each entity's points as one trajectory, see {@link RoIGrid#addPoint(String, double[])}.
+ * The bounds of the grid are needed before any point is added, so they are either given, or found by
+ * reading the files twice, see {@link #scanBounds(Collection)}.
+ * @author Luke Bermingham
+ */
+public class StreamingGridBuilder {
+
+    private final int idField;
+    private final int[] coordinateFields;
+    private final char delimiter;
+    private final int nHeaderLines;
+    private int bufferSize = 1 << 16;
+
+    /**
+     * @param idField the field of each line holding the entity id
+     * @param coordinateFields the fields of each line holding the coordinates, in dimension order
+     * @param delimiter what separates the fields of a line, i.e. ','
+     * @param nHeaderLines how many lines at the top of each file to skip
+     */
+    public StreamingGridBuilder(int idField, int[] coordinateFields, char delimiter, int nHeaderLines) {
+        if (coordinateFields.length == 0) {
+            throw new IllegalArgumentException("Points must have at least one coordinate field.");
+        }
+        this.idField = idField;
+        this.coordinateFields = coordinateFields.clone();
+        this.delimiter = delimiter;
+        this.nHeaderLines = nHeaderLines;
+    }
+
+    /**
+     * @param bufferSize how many chars are read from a file at once
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer must hold at least one char.");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Reads the files twice, once to find the bounds and then to populate the grid.
+     * @param files the trajectory files
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius each cell the trajectories pass through gets +1 density,
+     *                   and so do its neighbouring cells within this radius
+     * @return A grid with cells tallied indicating where trajectories passed through
+     * @throws IOException if a file could not be read, or has a malformed line
+     */
+    public RoIGrid build(Collection<File> files, int[] cellsPerDimension, int cellRadius) throws IOException {
+        return build(files, scanBounds(files), cellsPerDimension, cellRadius);
+    }
+
+    /**
+     * Reads the files once, populating a grid with the given bounds.
+     * Points outside the bounds count towards the cells on the edge of the grid.
+     * @param files the trajectory files
+     * @param bounds the bounds of the grid, i.e. [[minX, maxX],[minY, maxY]]
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius each cell the trajectories pass through gets +1 density,
+     *                   and so do its neighbouring cells within this radius
+     * @return A grid with cells tallied indicating where trajectories passed through
+     * @throws IOException if a file could not be read, or has a malformed line
+     */
+    public RoIGrid build(Collection<File> files, double[][] bounds, int[] cellsPerDimension, int cellRadius) throws IOException {
+        RoIGrid grid = MiningSpaceFactory.createEmptyGrid(bounds, cellsPerDimension, cellRadius);
+        populate(files, grid);
+        return grid;
+    }
+
+    /**
+     * Reads the files once, adding their points to a grid that was already made,
+     * i.e. a {@link onethreeseven.roi.model.TiledRoIGrid} for grids too big for the heap.
+     * Once the files are read every trajectory is ended, see {@link RoIGrid#endAllTrajectories()}.
+     * @param files the trajectory files
+     * @param grid the grid to add the points to, see {@link RoIGrid#addPoint(String, double[])}
+     * @throws IOException if a file could not be read, or has a malformed line
+     */
+    public void populate(Collection<File> files, RoIGrid grid) throws IOException {
+        try {
+            for (File file : files) {
+                readPoints(file, grid::addPoint);
+            }
+        } finally {
+            grid.endAllTrajectories();
+        }
+    }
+
+    /**
+     * @param files the trajectory files
+     * @return The min and max of each coordinate of every point in the files.
+     * @throws IOException if a file could not be read, has a malformed line, or there are no points
+     */
+    public double[][] scanBounds(Collection<File> files) throws IOException {
+        double[][] bounds = new double[coordinateFields.length][];
+        for (int n = 0; n < bounds.length; n++) {
+            bounds[n] = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        }
+        for (File file : files) {
+            readPoints(file, (entityId, point) -> {
+                for (int n = 0; n < point.length; n++) {
+                    bounds[n][0] = Math.min(bounds[n][0], point[n]);
+                    bounds[n][1] = Math.max(bounds[n][1], point[n]);
+                }
+            });
+        }
+        if (bounds[0][0] > bounds[0][1]) {
+            throw new IOException("There are no points to find the bounds of.");
+        }
+        return bounds;
+    }
+
+    /**
+     * Where the points of a file go.
+     */
+    private interface PointConsumer {
+        /**
+         * @param entityId the entity of the point
+         * @param point the point, it is reused for the next point so must be copied to be kept
+         */
+        void accept(String entityId, double[] point);
+    }
+
+    private void readPoints(File file, PointConsumer consumer) throws IOException {
+        int nFields = idField + 1;
+        for (int field : coordinateFields) {
+            nFields = Math.max(nFields, field + 1);
+        }
+        int[] fieldStarts = new int[nFields];
+        int[] fieldEnds = new int[nFields];
+        double[] point = new double[coordinateFields.length];
+        String entityId = null;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), bufferSize)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (lineNumber <= nHeaderLines || line.isEmpty()) {
+                    continue;
+                }
+                if (!splitFields(line, fieldStarts, fieldEnds)) {
+                    throw new IOException(file + ":" + lineNumber + " has fewer than " + nFields + " fields.");
+                }
+                //consecutive points are usually of the same entity, so only make a new id string when it changes
+                int idLength = fieldEnds[idField] - fieldStarts[idField];
+                if (entityId == null || entityId.length() != idLength ||
+                        !line.regionMatches(fieldStarts[idField], entityId, 0, idLength)) {
+                    entityId = line.substring(fieldStarts[idField], fieldEnds[idField]);
+                }
+                try {
+                    for (int n = 0; n < coordinateFields.length; n++) {
+                        point[n] = Double.parseDouble(line.substring(fieldStarts[coordinateFields[n]],
+                                fieldEnds[coordinateFields[n]]));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + " has a coordinate that is not a number.", e);
+                }
+                consumer.accept(entityId, point);
+            }
+        }
+    }
+
+    /**
+     * Finds where the first fields of a line start and end, without splitting the line into strings.
+     * @return False if the line has too few fields.
+     */
+    private boolean splitFields(String line, int[] fieldStarts, int[] fieldEnds) {
+        int start = 0;
+        for (int field = 0; field < fieldStarts.length; field++) {
+            if (start > line.length()) {
+                return false;
+            }
+            int end = line.indexOf(delimiter, start);
+            if (end == -1) {
+                end = line.length();
+            }
+            fieldStarts[field] = start;
+            fieldEnds[field] = end;
+            start = end + 1;
+        }
+        return true;
+    }
+
+}
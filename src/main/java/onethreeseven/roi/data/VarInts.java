@@ -0,0 +1,67 @@
+package onethreeseven.roi.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reads and writes ints as varints: 7 bits per byte, with the high bit set while more bytes follow.
+ * Small numbers (i.e. the deltas between sorted cell indices) take a single byte instead of four.
+ * Signed numbers are zig-zag encoded first, so small negative numbers are small too.
+ * @author Luke Bermingham
+ */
+final class VarInts {
+
+    private VarInts() {
+    }
+
+    /**
+     * @param out where to write
+     * @param value a value that is not negative (negative values take five bytes)
+     * @throws IOException if it could not be written
+     */
+    static void write(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * @param out where to write
+     * @param value any value, small negative values take few bytes
+     * @throws IOException if it could not be written
+     */
+    static void writeSigned(DataOutput out, int value) throws IOException {
+        write(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * @param in where to read from
+     * @return The value written by {@link #write(DataOutput, int)}.
+     * @throws IOException if it could not be read, or is not a varint
+     */
+    static int read(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint, it is longer than five bytes.");
+    }
+
+    /**
+     * @param in where to read from
+     * @return The value written by {@link #writeSigned(DataOutput, int)}.
+     * @throws IOException if it could not be read, or is not a varint
+     */
+    static int readSigned(DataInput in) throws IOException {
+        int zigZag = read(in);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+}
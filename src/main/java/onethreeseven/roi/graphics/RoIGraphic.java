@@ -109,6 +109,14 @@ public class RoIGraphic extends GraphicsPayload {
 
         DoubleArray vertexData = new DoubleArray(24, false);
 
+        //a box only needs its outer faces, no need to check each cell
+        if (rectangularRoI.getBox() != null) {
+            final double[][][] faceVerts = getFaces(rectangularRoI.getBounds());
+            for (int faceIdx = 0; faceIdx < faceVerts.length; faceIdx++) {
+                addFace(vertexData, faceVerts[faceIdx], normals[faceIdx]);
+            }
+        }
+
         for (Map.Entry<Integer, BoundingCoordinates> cellEntry : rectangularRoI.entrySet()) {
 
             //get all the faces of the given cell, we may remove some if they are shared
@@ -140,44 +148,32 @@ public class RoIGraphic extends GraphicsPayload {
             int cellPosYIdx = (cellPosY == null) ? -1 : cellPosY.getIndex();
 
 
-            if (rectangularRoI.containsKey(cellNegXIdx)) {
+            if (rectangularRoI.contains(cellNegXIdx)) {
                 faceIndices.remove(0);
             }
-            if (rectangularRoI.containsKey(cellPosXIdx)) {
+            if (rectangularRoI.contains(cellPosXIdx)) {
                 faceIndices.remove(1);
             }
 
             //only bother checking z if 3d
             if (nDims > 2) {
-                if (rectangularRoI.containsKey(cellNegZIdx)) {
+                if (rectangularRoI.contains(cellNegZIdx)) {
                     faceIndices.remove(2);
                 }
-                if (rectangularRoI.containsKey(cellPosZIdx)) {
+                if (rectangularRoI.contains(cellPosZIdx)) {
                     faceIndices.remove(3);
                 }
             }
 
-            if (rectangularRoI.containsKey(cellNegYIdx)) {
+            if (rectangularRoI.contains(cellNegYIdx)) {
                 faceIndices.remove(4);
             }
-            if (rectangularRoI.containsKey(cellPosYIdx)) {
+            if (rectangularRoI.contains(cellPosYIdx)) {
                 faceIndices.remove(5);
             }
 
             for (Integer faceIdx : faceIndices) {
-                //verts of a single quad
-                double[][] verts = faceVerts[faceIdx];
-                int[] normal = normals[faceIdx];
-                for (double[] vert : verts) {
-                    //vert coords
-                    for (double coord : vert) {
-                        vertexData.add(coord);
-                    }
-                    //normal coords
-                    for (int coord : normal) {
-                        vertexData.add(coord);
-                    }
-                }
+                addFace(vertexData, faceVerts[faceIdx], normals[faceIdx]);
             }
         }
 
@@ -187,4 +183,18 @@ public class RoIGraphic extends GraphicsPayload {
                         PackedVertexData.Types.VERTEX,
                         PackedVertexData.Types.NORMAL});
     }
+
+    private void addFace(DoubleArray vertexData, double[][] verts, int[] normal) {
+        //verts of a single quad
+        for (double[] vert : verts) {
+            //vert coords
+            for (double coord : vert) {
+                vertexData.add(coord);
+            }
+            //normal coords
+            for (int coord : normal) {
+                vertexData.add(coord);
+            }
+        }
+    }
 }
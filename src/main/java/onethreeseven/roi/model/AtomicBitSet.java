@@ -0,0 +1,67 @@
+package onethreeseven.roi.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size bit set whose bits can be set and cleared from many threads at once.
+ * A {@link java.util.BitSet} packs 64 bits into each word, so two threads setting neighbouring bits
+ * can lose one of the updates; here each word is updated with a compare-and-set instead.
+ * @author Luke Bermingham
+ */
+final class AtomicBitSet {
+
+    private final AtomicLongArray words;
+
+    /**
+     * @param nBits how many bits the set holds
+     */
+    AtomicBitSet(int nBits) {
+        this.words = new AtomicLongArray((nBits + 63) >>> 6);
+    }
+
+    /**
+     * @param idx the bit to set
+     * @return True if this call set the bit, false if it was already set (i.e. another thread claimed it).
+     */
+    boolean set(int idx) {
+        int wordIdx = idx >>> 6;
+        long mask = 1L << idx;
+        while (true) {
+            long word = words.get(wordIdx);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIdx, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param idx the bit to clear
+     */
+    void clear(int idx) {
+        int wordIdx = idx >>> 6;
+        long mask = 1L << idx;
+        while (true) {
+            long word = words.get(wordIdx);
+            if ((word & mask) == 0 || words.compareAndSet(wordIdx, word, word & ~mask)) {
+                return;
+            }
+        }
+    }
+
+    boolean get(int idx) {
+        return (words.get(idx >>> 6) & (1L << idx)) != 0;
+    }
+
+    /**
+     * Clears every bit, this is not atomic as a whole so it should not race with other updates.
+     */
+    void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+package onethreeseven.roi.model;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An RoI that is an axis-aligned box of grid cells (i.e. the rectangular RoIs found by {@link onethreeseven.roi.algorithm.UniformRoIs}).
+ * Only the min and max n-d indices of the box are stored, so its memory does not grow with the number of cells.
+ * Checking whether it contains a cell is O(d), and its cells are only enumerated when iterated.
+ * Note: adding a cell (or another roi) grows the box to the bounding box of the box and what was added,
+ * so the cells the box grows over are in the roi as well, see {@link #add(DensityCell)}.
+ * @author Luke Bermingham
+ */
+public class BoxRoI extends RoI {
+
+    /**
+     * @param id the id of the roi
+     * @param min the min n-d indices of the box (inclusive)
+     * @param max the max n-d indices of the box (inclusive)
+     * @param density the total density of the cells in the box
+     * @param grid the grid the box is in
+     */
+    public BoxRoI(int id, int[] min, int[] max, double density, Grid grid) {
+        super(id, new BoxCells(min, max, grid.nCellsPerDimension));
+        this.density = density;
+    }
+
+    private BoxCells box() {
+        return (BoxCells) getCells();
+    }
+
+    /**
+     * Grow (or shrink) the box.
+     * @param min the new min n-d indices of the box (inclusive)
+     * @param max the new max n-d indices of the box (inclusive)
+     * @param density the total density of the cells in the new box
+     */
+    public void expandTo(int[] min, int[] max, double density) {
+        box().min = min.clone();
+        box().max = max.clone();
+        this.density = density;
+    }
+
+    /**
+     * Grows the box to the bounding box of the box and the cell.
+     * Only the density of the added cell is counted, the densities of the other cells the box grows over
+     * are not known here, use {@link #expandTo(int[], int[], double)} when they are.
+     * @param cell the cell to add
+     */
+    @Override
+    public void add(DensityCell cell) {
+        if (contains(cell.getIndex())) {
+            return;
+        }
+        int[] ndIdx = box().toNdIndices(cell.getIndex());
+        box().grow(ndIdx, ndIdx);
+        this.density += cell.getDensity();
+    }
+
+    /**
+     * Grows the box to the bounding box of the box and the cells of the other roi.
+     * @param roi the roi to add
+     */
+    @Override
+    public void add(RoI roi) {
+        if (roi instanceof BoxRoI) {
+            BoxCells other = ((BoxRoI) roi).box();
+            if (other.min != null) {
+                box().grow(other.min, other.max);
+            }
+        } else {
+            for (int idx : roi) {
+                int[] ndIdx = box().toNdIndices(idx);
+                box().grow(ndIdx, ndIdx);
+            }
+        }
+        this.density = roi.getDensity();
+    }
+
+    /**
+     * Empties the box, it has no cells until one is added or it is expanded.
+     */
+    @Override
+    public void clear() {
+        box().min = null;
+        box().max = null;
+        this.density = 0;
+    }
+
+    /**
+     * @return The min n-d indices of the box (inclusive), or null if the box is empty.
+     */
+    public int[] getMin() {
+        return (box().min == null) ? null : box().min.clone();
+    }
+
+    /**
+     * @return The max n-d indices of the box (inclusive), or null if the box is empty.
+     */
+    public int[] getMax() {
+        return (box().max == null) ? null : box().max.clone();
+    }
+
+    /**
+     * The cells of the box as a read-only set, worked out from the bounds as they are needed.
+     * The bounds are null when the box is empty.
+     */
+    private static final class BoxCells extends AbstractSet<Integer> {
+
+        private final int[] nCellsPerDimension;
+        /**
+         * How far the 1d index moves when stepping one cell in each dimension.
+         */
+        private final int[] strides;
+        private final long nGridCells;
+        private int[] min;
+        private int[] max;
+
+        BoxCells(int[] min, int[] max, int[] nCellsPerDimension) {
+            this.nCellsPerDimension = nCellsPerDimension;
+            this.min = min.clone();
+            this.max = max.clone();
+            int nDimensions = nCellsPerDimension.length;
+            this.strides = Grid.strides(nCellsPerDimension);
+            long nCells = 1;
+            for (int n = 0; n < nDimensions; n++) {
+                nCells *= nCellsPerDimension[n];
+            }
+            this.nGridCells = nCells;
+        }
+
+        int[] toNdIndices(int idx) {
+            int[] ndIdx = new int[strides.length];
+            for (int n = 0; n < strides.length; n++) {
+                ndIdx[n] = (idx / strides[n]) % nCellsPerDimension[n];
+            }
+            return ndIdx;
+        }
+
+        /**
+         * Grow to the bounding box of this box and another.
+         */
+        void grow(int[] otherMin, int[] otherMax) {
+            if (min == null) {
+                min = otherMin.clone();
+                max = otherMax.clone();
+                return;
+            }
+            int[] grownMin = min.clone();
+            int[] grownMax = max.clone();
+            for (int n = 0; n < grownMin.length; n++) {
+                grownMin[n] = Math.min(grownMin[n], otherMin[n]);
+                grownMax[n] = Math.max(grownMax[n], otherMax[n]);
+            }
+            min = grownMin;
+            max = grownMax;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (min == null || !(o instanceof Integer) || (Integer) o < 0 || (Integer) o >= nGridCells) {
+                return false;
+            }
+            int idx = (Integer) o;
+            for (int n = 0; n < strides.length; n++) {
+                int ndIdx = (idx / strides[n]) % nCellsPerDimension[n];
+                if (ndIdx < min[n] || ndIdx > max[n]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int size() {
+            if (min == null) {
+                return 0;
+            }
+            long nCells = 1;
+            for (int n = 0; n < min.length; n++) {
+                nCells *= max[n] - min[n] + 1;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, nCells);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            if (min == null) {
+                return Collections.emptyIterator();
+            }
+            final int[] boxMin = min;
+            final int[] boxMax = max;
+            final int[] cur = boxMin.clone();
+            int start = 0;
+            for (int n = 0; n < boxMin.length; n++) {
+                start += boxMin[n] * strides[n];
+            }
+            final int startIdx = start;
+            return new Iterator<Integer>() {
+                private int idx = startIdx;
+                private boolean done = false;
+
+                @Override
+                public boolean hasNext() {
+                    return !done;
+                }
+
+                @Override
+                public Integer next() {
+                    if (done) {
+                        throw new NoSuchElementException();
+                    }
+                    int next = idx;
+                    //odometer style step to the next cell in the box
+                    int n = 0;
+                    while (n < cur.length && cur[n] == boxMax[n]) {
+                        idx -= (cur[n] - boxMin[n]) * strides[n];
+                        cur[n] = boxMin[n];
+                        n++;
+                    }
+                    if (n == cur.length) {
+                        done = true;
+                    } else {
+                        cur[n]++;
+                        idx += strides[n];
+                    }
+                    return next;
+                }
+            };
+        }
+    }
+
+}
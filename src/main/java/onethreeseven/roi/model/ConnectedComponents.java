@@ -0,0 +1,229 @@
+package onethreeseven.roi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Labels the connected components of a dense grid: the groups of neighbouring cells that are all at least some density,
+ * where neighbours are those of the grid's {@link Neighbourhood}.
+ * The grid is scanned twice in 1d index order. The first scan joins each dense cell with its dense neighbours
+ * before it (a union-find where the lowest index is the root), the second gives each cell the label of its root.
+ * Both scans take time linear in the number of cells and only use one int per cell, nothing is allocated per cell.
+ * Components are numbered in seed order (densest cell first, ties by lowest index), the order
+ * {@link onethreeseven.roi.algorithm.ExpansiveRoIs} seeds its RoIs in, so the RoIs and their ids are the same.
+ * @author Luke Bermingham
+ */
+public final class ConnectedComponents {
+
+    public static final int NO_COMPONENT = -1;
+
+    private final DenseRoIGrid grid;
+    /**
+     * The component of each cell.
+     */
+    private final int[] labels;
+    private int[] sizes;
+    private int nComponents = 0;
+
+    /**
+     * @param grid the grid to label
+     * @param minDensity how dense cells must be to be in a component
+     */
+    public ConnectedComponents(DenseRoIGrid grid, int minDensity) {
+        this.grid = grid;
+        this.labels = new int[grid.nCells()];
+        //first scan, each dense cell points at a lower index cell of its component (or itself if it is the root)
+        joinNeighbours(minDensity);
+        //second scan, the roots are labelled in index order, the rest copy the label of the cell they point at
+        long[] seedKeys = labelRoots();
+        //put the components in seed order
+        relabelBySeed(seedKeys);
+    }
+
+    private void joinNeighbours(int minDensity) {
+        int[] nCellsPerDimension = grid.nCellsPerDimension;
+        int nDimensions = nCellsPerDimension.length;
+        //step through the dimensions from fastest changing (smallest stride) to slowest, as the 1d index counts up
+        int[] strides = Grid.strides(nCellsPerDimension);
+        int[] dims = new int[nDimensions];
+        for (int n = 0; n < nDimensions; n++) {
+            int d = n;
+            while (d > 0 && strides[dims[d - 1]] > strides[n]) {
+                dims[d] = dims[d - 1];
+                d--;
+            }
+            dims[d] = n;
+        }
+
+        //only the neighbours before a cell are joined with it, the ones after join with it in their turn
+        int[][] allOffsets = grid.getNeighbourOffsets();
+        int[] allDeltas = grid.getNeighbourDeltas();
+        int nBefore = 0;
+        int[][] offsets = new int[allDeltas.length][];
+        int[] deltas = new int[allDeltas.length];
+        for (int i = 0; i < allDeltas.length; i++) {
+            if (allDeltas[i] < 0) {
+                offsets[nBefore] = allOffsets[i];
+                deltas[nBefore] = allDeltas[i];
+                nBefore++;
+            }
+        }
+
+        int[] ndIdx = new int[nDimensions];
+        for (int idx = 0; idx < labels.length; idx++) {
+            if (grid.densityAt(idx) < minDensity) {
+                labels[idx] = NO_COMPONENT;
+            } else {
+                labels[idx] = idx;
+                for (int i = 0; i < nBefore; i++) {
+                    int neighbourIdx = idx + deltas[i];
+                    if (isInside(ndIdx, offsets[i], nCellsPerDimension) && labels[neighbourIdx] != NO_COMPONENT) {
+                        union(idx, neighbourIdx);
+                    }
+                }
+            }
+            //move the n-d index along with the 1d index
+            for (int d = 0; d < nDimensions; d++) {
+                int n = dims[d];
+                if (++ndIdx[n] < nCellsPerDimension[n]) {
+                    break;
+                }
+                ndIdx[n] = 0;
+            }
+        }
+    }
+
+    private static boolean isInside(int[] ndIdx, int[] offset, int[] nCellsPerDimension) {
+        for (int n = 0; n < ndIdx.length; n++) {
+            int moved = ndIdx[n] + offset[n];
+            if (moved < 0 || moved >= nCellsPerDimension[n]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int find(int idx) {
+        while (labels[idx] != idx) {
+            //halve the path as we go
+            labels[idx] = labels[labels[idx]];
+            idx = labels[idx];
+        }
+        return idx;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        //the lower root wins, so every cell points at a lower (or the same) index
+        if (rootA < rootB) {
+            labels[rootB] = rootA;
+        } else if (rootB < rootA) {
+            labels[rootA] = rootB;
+        }
+    }
+
+    /**
+     * @return The seed key of each component, see {@link #seedKey(int, int)}.
+     */
+    private long[] labelRoots() {
+        //labels are stored as -(label + 2) until every cell has one, so they cannot be mistaken for indices
+        long[] seedKeys = new long[16];
+        sizes = new int[16];
+        for (int idx = 0; idx < labels.length; idx++) {
+            int pointsAt = labels[idx];
+            if (pointsAt == NO_COMPONENT) {
+                continue;
+            }
+            int label;
+            if (pointsAt == idx) {
+                label = nComponents++;
+                if (label == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, label * 2);
+                    seedKeys = Arrays.copyOf(seedKeys, label * 2);
+                }
+                seedKeys[label] = Long.MAX_VALUE;
+            } else {
+                //it points at a lower index, which already has its label
+                label = -labels[pointsAt] - 2;
+            }
+            labels[idx] = -label - 2;
+            sizes[label]++;
+            seedKeys[label] = Math.min(seedKeys[label], seedKey(grid.densityAt(idx), idx));
+        }
+        return seedKeys;
+    }
+
+    private static long seedKey(int density, int idx) {
+        return ((long) (Integer.MAX_VALUE - density) << 32) | idx;
+    }
+
+    private void relabelBySeed(long[] seedKeys) {
+        long[] order = Arrays.copyOf(seedKeys, nComponents);
+        Arrays.sort(order);
+        int[] ranks = new int[nComponents];
+        int[] rankedSizes = new int[nComponents];
+        for (int rank = 0; rank < nComponents; rank++) {
+            int label = -labels[(int) order[rank]] - 2;
+            ranks[label] = rank;
+            rankedSizes[rank] = sizes[label];
+        }
+        sizes = rankedSizes;
+        for (int idx = 0; idx < labels.length; idx++) {
+            if (labels[idx] != NO_COMPONENT) {
+                labels[idx] = ranks[-labels[idx] - 2];
+            }
+        }
+    }
+
+    /**
+     * @param cellIdx the 1d index of a cell
+     * @return The component the cell is in, or {@link #NO_COMPONENT} if it is not dense enough.
+     */
+    public int getComponent(int cellIdx) {
+        return labels[cellIdx];
+    }
+
+    /**
+     * @return The number of components, including those of just one cell.
+     */
+    public int nComponents() {
+        return nComponents;
+    }
+
+    /**
+     * @param component the component
+     * @return How many cells are in the component.
+     */
+    public int getComponentSize(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * @return An roi for each component of more than one cell, whose id is the component, in seed order.
+     */
+    public Collection<RoI> toRoIs() {
+        RoI[] rois = new RoI[nComponents];
+        for (int idx = 0; idx < labels.length; idx++) {
+            int component = labels[idx];
+            //if it is just one cell we do not call this a region
+            if (component == NO_COMPONENT || sizes[component] < 2) {
+                continue;
+            }
+            if (rois[component] == null) {
+                rois[component] = new RoI(component);
+            }
+            rois[component].add(grid.getCell(idx));
+        }
+        List<RoI> found = new ArrayList<>();
+        for (RoI roi : rois) {
+            if (roi != null) {
+                found.add(roi);
+            }
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,400 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.common.util.NDUtil;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * An RoI grid that stores its cells in flat primitive arrays indexed by the 1d cell index,
+ * rather than as one object per cell. This is much lighter on the heap for large grids,
+ * but is only suitable when the total number of cells in the grid fits in memory.
+ * Cells are handed out as lightweight views over the arrays, and only when a caller asks for one.
+ * @see MiningSpaceFactory
+ * @author Luke Bermingham
+ */
+public class DenseRoIGrid extends RoIGrid {
+
+    /**
+     * The number of unique entities that passed through each cell.
+     */
+    private final int[] densities;
+    /**
+     * The total number of visits to each cell (even by the same entity).
+     */
+    private final int[] totalDensities;
+    /**
+     * The per-entity tally of each cell, keyed by entity ordinal.
+     * The number of tallied entities is the cell's density. A tally is only made once a cell is first visited.
+     */
+    private final IntTally[] entityTallies;
+    /**
+     * Cells that exist in the grid, either because they were visited or because they were filled in.
+     */
+    private final BitSet present;
+    /**
+     * Processed cells, claimed atomically so separate regions of the grid can be mined at the same time.
+     */
+    private final AtomicBitSet processed;
+    /**
+     * The entities of each present cell, only kept once bitmaps are enabled.
+     * @see #enableEntityBitmaps()
+     */
+    private EntityBitmap[] entityBitmaps = null;
+
+    /**
+     * Creates a new densely stored roi grid using a specified n-d grid.
+     * This constructor is typically called by {@link MiningSpaceFactory}.
+     *
+     * @param grid the n-d grid
+     * @see MiningSpaceFactory
+     */
+    DenseRoIGrid(Grid grid) {
+        this(grid, new EntityInterner());
+    }
+
+    /**
+     * Creates a new densely stored roi grid, whose entity ids come from the given interner.
+     *
+     * @param grid the n-d grid
+     * @param interner the interner of entity ids
+     */
+    DenseRoIGrid(Grid grid, EntityInterner interner) {
+        super(grid, interner);
+        int nCells = 1;
+        for (int nCellsInDim : nCellsPerDimension) {
+            nCells = Math.multiplyExact(nCells, nCellsInDim);
+        }
+        this.densities = new int[nCells];
+        this.totalDensities = new int[nCells];
+        this.entityTallies = new IntTally[nCells];
+        this.present = new BitSet(nCells);
+        this.processed = new AtomicBitSet(nCells);
+    }
+
+    @Override
+    public void incrementCellDensity(int entity, int index) {
+        if (index < 0 || index >= densities.length) {
+            //outside the grid, so there is no storage for it
+            return;
+        }
+        addTally(index, entity, 1);
+    }
+
+    private void addTally(int index, int entity, int tally) {
+        densityChanged(index);
+        totalDensities[index] += tally;
+        present.set(index);
+        IntTally tallies = entityTallies[index];
+        if (tallies == null) {
+            tallies = new IntTally();
+            entityTallies[index] = tallies;
+        }
+        int density = tallies.size();
+        tallies.add(entity, tally);
+        if (tallies.size() > density) {
+            //first visit by this entity
+            if (entityBitmaps != null) {
+                entityBitmap(index).add(entity);
+            }
+            densities[index] = tallies.size();
+        }
+    }
+
+    @Override
+    void removeCellDensity(int entity, int index, int tally) {
+        if (index < 0 || index >= densities.length || !present.get(index)) {
+            return;
+        }
+        IntTally tallies = entityTallies[index];
+        int current = (tallies == null) ? 0 : tallies.get(entity);
+        if (current == 0) {
+            return;
+        }
+        densityChanged(index);
+        int removed = Math.min(tally, current);
+        totalDensities[index] -= removed;
+        if (removed == current) {
+            //the entity has no visits left
+            tallies.remove(entity);
+            densities[index] = tallies.size();
+            if (entityBitmaps != null) {
+                entityBitmap(index).remove(entity);
+            }
+        } else {
+            tallies.add(entity, -removed);
+        }
+        if (totalDensities[index] == 0) {
+            present.clear(index);
+        }
+    }
+
+    @Override
+    public void enableEntityBitmaps() {
+        super.enableEntityBitmaps();
+        if (entityBitmaps != null) {
+            return;
+        }
+        entityBitmaps = new EntityBitmap[densities.length];
+        for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+            entityBitmaps[idx] = makeEntityBitmap(idx);
+        }
+    }
+
+    private EntityBitmap entityBitmap(int index) {
+        if (entityBitmaps[index] == null) {
+            entityBitmaps[index] = new EntityBitmap();
+        }
+        return entityBitmaps[index];
+    }
+
+    private EntityBitmap makeEntityBitmap(int index) {
+        EntityBitmap bitmap = new EntityBitmap();
+        IntTally tallies = entityTallies[index];
+        for (int slot = 0; tallies != null && slot < tallies.nSlots(); slot++) {
+            if (tallies.isUsed(slot)) {
+                bitmap.add(tallies.keyAt(slot));
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return The number of cells in the grid, present or not.
+     */
+    int nCells() {
+        return densities.length;
+    }
+
+    /**
+     * Reads the density of a cell straight from the arrays, without making a view of it.
+     * @param idx the index of the cell
+     * @return The density of the cell, or -1 if it is not present.
+     */
+    int densityAt(int idx) {
+        return present.get(idx) ? densities[idx] : -1;
+    }
+
+    @Override
+    public int getDensity(int idx) {
+        return densityAt(idx);
+    }
+
+    @Override
+    public boolean isProcessed(int idx) {
+        return present.get(idx) && processed.get(idx);
+    }
+
+    @Override
+    boolean hasCell(int idx) {
+        return present.get(idx);
+    }
+
+    @Override
+    void forEachCellIndex(IntConsumer visitor) {
+        for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+            visitor.accept(idx);
+        }
+    }
+
+    @Override
+    public RoIGridCell getCell(int idx) {
+        if (idx < 0 || idx >= densities.length || !present.get(idx)) {
+            return null;
+        }
+        return new DenseCell(idx);
+    }
+
+    @Override
+    public RoIGridCell getCell(int[] indices) {
+        return getCell(NDUtil.flattenIndices(indices, nCellsPerDimension));
+    }
+
+    @Override
+    public RoIGridCell getOrCreateCell(int idx) {
+        present.set(idx);
+        return new DenseCell(idx);
+    }
+
+    @Override
+    public void unprocessAll() {
+        processed.clear();
+        resetSeedIndex();
+    }
+
+    @Override
+    SummedAreaTable buildSummedAreaTable() {
+        SummedAreaTable table = new SummedAreaTable(nCellsPerDimension);
+        for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+            table.set(idx, densities[idx]);
+        }
+        table.accumulate();
+        return table;
+    }
+
+    @Override
+    SeedIndex buildSeedIndex() {
+        int nPresent = present.cardinality();
+        int[] cellIndices = new int[nPresent];
+        int[] cellDensities = new int[nPresent];
+        int i = 0;
+        for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+            cellIndices[i] = idx;
+            cellDensities[i] = densities[idx];
+            i++;
+        }
+        return new DensitySeedIndex(cellIndices, cellDensities, i, processed::get);
+    }
+
+    @Override
+    public Collection<? extends MiningCell> getDenseCells() {
+        //counting sort the unprocessed cells so the most dense come first
+        int maxDensity = 0;
+        int nUnprocessed = 0;
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            if (!processed.get(i)) {
+                maxDensity = Math.max(maxDensity, densities[i]);
+                nUnprocessed++;
+            }
+        }
+        //where each density starts in the sorted output
+        int[] offsets = new int[maxDensity + 2];
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            if (!processed.get(i)) {
+                offsets[maxDensity - densities[i] + 1]++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        final int[] sorted = new int[nUnprocessed];
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            if (!processed.get(i)) {
+                sorted[offsets[maxDensity - densities[i]]++] = i;
+            }
+        }
+        //only make the cell views as they are requested
+        return new AbstractList<RoIGridCell>() {
+            @Override
+            public RoIGridCell get(int i) {
+                return new DenseCell(sorted[i]);
+            }
+
+            @Override
+            public int size() {
+                return sorted.length;
+            }
+        };
+    }
+
+    @Override
+    public int getMaxPossibleDensity() {
+        if (entityBitmaps != null) {
+            EntityBitmap possibleEntities = new EntityBitmap();
+            for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+                possibleEntities.addAll(entityBitmap(idx));
+            }
+            return possibleEntities.cardinality();
+        }
+        //not every interned entity necessarily passed through a cell
+        BitSet possibleEntities = new BitSet(interner.size());
+        for (int idx = present.nextSetBit(0); idx >= 0; idx = present.nextSetBit(idx + 1)) {
+            IntTally tallies = entityTallies[idx];
+            for (int slot = 0; tallies != null && slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    possibleEntities.set(tallies.keyAt(slot));
+                }
+            }
+        }
+        return possibleEntities.cardinality();
+    }
+
+    /**
+     * A view of a single cell in the dense grid, all its state lives in the grid's arrays.
+     */
+    private class DenseCell extends RoIGridCell {
+
+        private int[] ndIndices = null;
+
+        DenseCell(int index) {
+            super(index, null, DenseRoIGrid.this.interner);
+        }
+
+        @Override
+        public int[] getIndices() {
+            if (ndIndices == null) {
+                ndIndices = toNdIdx(getIndex());
+            }
+            return ndIndices;
+        }
+
+        @Override
+        public void incrementTally(int entity) {
+            incrementCellDensity(entity, getIndex());
+        }
+
+        @Override
+        void addTally(int entity, int tally) {
+            DenseRoIGrid.this.addTally(getIndex(), entity, tally);
+        }
+
+        @Override
+        IntTally getTallies() {
+            return (densities[getIndex()] == 0) ? null : entityTallies[getIndex()];
+        }
+
+        @Override
+        protected int tallyOf(int entity) {
+            IntTally tallies = entityTallies[getIndex()];
+            return (tallies == null) ? 0 : tallies.get(entity);
+        }
+
+        @Override
+        public void clear() {
+            densities[getIndex()] = 0;
+            entityTallies[getIndex()] = null;
+            if (entityBitmaps != null) {
+                entityBitmaps[getIndex()] = null;
+            }
+        }
+
+        @Override
+        void trackEntityBitmap() {
+            //the grid keeps the bitmaps, see enableEntityBitmaps
+        }
+
+        @Override
+        public EntityBitmap getEntityBitmap() {
+            return entityBitmaps != null ? entityBitmap(getIndex()) : makeEntityBitmap(getIndex());
+        }
+
+        @Override
+        public int getDensity() {
+            return densities[getIndex()];
+        }
+
+        @Override
+        public int getTotalDensity() {
+            return totalDensities[getIndex()];
+        }
+
+        @Override
+        public void markProcessed() {
+            processed.set(getIndex());
+        }
+
+        @Override
+        public void markUnprocessed() {
+            processed.clear(getIndex());
+            reinsertSeed(getIndex(), densities[getIndex()]);
+        }
+
+        @Override
+        public boolean isProcessed() {
+            return processed.get(getIndex());
+        }
+    }
+
+}
@@ -1,8 +1,7 @@
 package onethreeseven.roi.model;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -15,18 +14,39 @@ import java.util.Set;
 public class DensityCell extends IndexedCell {
 
     /**
-     * Each entity that passes through this cell has its id recorded and tallied.
+     * Each entity that passes through this cell has its ordinal recorded and tallied.
      * The reason for the tally is that potentially the same entity can pass through
      * a cell multiple times.
+     * Note: this is only made once the first entity is tallied, so empty cells stay cheap.
      */
-    private final Map<String, Integer> densityMap;
+    private IntTally tallies = null;
+
+    /**
+     * The set of entities that visited this cell, only kept once tracking is enabled.
+     * @see #trackEntityBitmap()
+     */
+    private EntityBitmap entityBitmap = null;
+
+    /**
+     * Maps entity ids to the ordinals tallied in this cell, usually shared by every cell in a grid.
+     */
+    private EntityInterner interner;
 
     private final int index;
     private int totalDensity = 0;
 
     public DensityCell(int index) {
+        this(index, null);
+    }
+
+    /**
+     * @param index the index of the cell
+     * @param interner the interner the entity ordinals of this cell come from,
+     *                 if null the cell makes its own once an entity is tallied
+     */
+    public DensityCell(int index, EntityInterner interner) {
         this.index = index;
-        densityMap = new HashMap<>();
+        this.interner = interner;
     }
 
     @Override
@@ -34,21 +54,118 @@ public class DensityCell extends IndexedCell {
         return index;
     }
 
+    /**
+     * @return The interner this cell's entity ordinals come from.
+     */
+    public EntityInterner getInterner() {
+        if (interner == null) {
+            interner = new EntityInterner();
+        }
+        return interner;
+    }
+
     public void incrementTally(String id) {
-        //increment the id by one
-        densityMap.put(id, densityMap.getOrDefault(id, 0) + 1);
-        totalDensity++;
+        incrementTally(getInterner().intern(id));
+    }
+
+    /**
+     * @param entity the ordinal of the entity, as given by {@link #getInterner()}
+     */
+    public void incrementTally(int entity) {
+        addTally(entity, 1);
+    }
+
+    /**
+     * Adds a tally of visits by an entity in one go, i.e. when combining cells.
+     * @param entity the ordinal of the entity
+     * @param tally how many times the entity visited this cell
+     */
+    void addTally(int entity, int tally) {
+        if (tallies == null) {
+            tallies = new IntTally();
+        }
+        if (entityBitmap != null && !tallies.contains(entity)) {
+            entityBitmap.add(entity);
+        }
+        tallies.add(entity, tally);
+        totalDensity += tally;
+    }
+
+    /**
+     * Takes away visits by an entity, i.e. when those visits expire.
+     * Once an entity has no visits left it no longer counts towards the density of this cell.
+     * @param entity the ordinal of the entity
+     * @param tally how many visits to take away
+     */
+    void removeTally(int entity, int tally) {
+        int current = (tallies == null) ? 0 : tallies.get(entity);
+        if (current == 0) {
+            return;
+        }
+        if (current > tally) {
+            tallies.add(entity, -tally);
+            totalDensity -= tally;
+            return;
+        }
+        tallies.remove(entity);
+        totalDensity -= current;
+        if (entityBitmap != null) {
+            entityBitmap.remove(entity);
+        }
+    }
+
+    /**
+     * Keep a bitmap of the entities in this cell from now on, rather than making it on request.
+     * This suits cells whose entity sets are queried many times, i.e. when post-processing RoIs.
+     */
+    void trackEntityBitmap() {
+        if (entityBitmap == null) {
+            entityBitmap = makeEntityBitmap();
+        }
+    }
+
+    /**
+     * @return The set of entity ordinals that visited this cell.
+     * Note: if the bitmap is tracked this is the cell's own bitmap, so it should not be modified.
+     * @see #trackEntityBitmap()
+     */
+    public EntityBitmap getEntityBitmap() {
+        return entityBitmap != null ? entityBitmap : makeEntityBitmap();
+    }
+
+    private EntityBitmap makeEntityBitmap() {
+        EntityBitmap bitmap = new EntityBitmap();
+        if (tallies != null) {
+            for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    bitmap.add(tallies.keyAt(slot));
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return The tallies of this cell keyed by entity ordinal, or null if nothing was tallied yet.
+     */
+    IntTally getTallies() {
+        return tallies;
     }
 
     public void clear() {
-        densityMap.clear();
+        if (tallies != null) {
+            tallies.clear();
+        }
+        if (entityBitmap != null) {
+            entityBitmap = new EntityBitmap();
+        }
     }
 
     /**
      * @return The number of unique visits to this cell, i.e each entity's visit only counts once
      */
     public int getDensity() {
-        return densityMap.size();
+        return tallies == null ? 0 : tallies.size();
     }
 
     /**
@@ -58,6 +175,33 @@ public class DensityCell extends IndexedCell {
         return totalDensity;
     }
 
+    /**
+     * Every query of the entities in this cell by id goes through here,
+     * so cells whose tallies live elsewhere (i.e. in their grid) only need to override this.
+     * @param entity the ordinal of an entity, as given by {@link #getInterner()}
+     * @return How many times the entity visited this cell.
+     */
+    protected int tallyOf(int entity) {
+        return tallies == null ? 0 : tallies.get(entity);
+    }
+
+    /**
+     * @param id an entity id
+     * @return How many times the entity visited this cell.
+     */
+    private int getTally(String id) {
+        int entity = getInterner().ordinalOf(id);
+        return entity == -1 ? 0 : tallyOf(entity);
+    }
+
+    /**
+     * @param id an entity id
+     * @return Whether the entity visited this cell.
+     */
+    private boolean contains(String id) {
+        return getTally(id) > 0;
+    }
+
     /**
      * Gets the tally of the ids passed in, or SPECIAL CASE: if null is passed in gets the tally
      * of the entire cell (assuming there is some density to tally)
@@ -70,14 +214,14 @@ public class DensityCell extends IndexedCell {
         }
         int cumulataiveTally = 0;
         for (String intersectorId : ids) {
-            cumulataiveTally += densityMap.getOrDefault(intersectorId, 0);
+            cumulataiveTally += getTally(intersectorId);
         }
         return cumulataiveTally;
     }
 
     public String containsOne(String... ids) {
         for (String intersectorId : ids) {
-            if (densityMap.containsKey(intersectorId)) {
+            if (contains(intersectorId)) {
                 return intersectorId;
             }
         }
@@ -85,13 +229,12 @@ public class DensityCell extends IndexedCell {
     }
 
     public boolean containsAll(String... ids) {
-        int counter = 0;
         for (String intersectorId : ids) {
-            if (densityMap.containsKey(intersectorId)) {
-                counter++;
+            if (!contains(intersectorId)) {
+                return false;
             }
         }
-        return (counter == ids.length);
+        return true;
     }
 
     public Set<String> getMatchingIds(String... ids) {
@@ -100,15 +243,28 @@ public class DensityCell extends IndexedCell {
         }
         HashSet<String> containedIds = new HashSet<String>();
         for (String intersectorId : ids) {
-            if (densityMap.containsKey(intersectorId)) {
+            if (contains(intersectorId)) {
                 containedIds.add(intersectorId);
             }
         }
         return containedIds;
     }
 
+    /**
+     * @return The ids of the entities that visited this cell.
+     */
     public Set<String> getKeys() {
-        return densityMap.keySet();
+        IntTally tallies = getTallies();
+        if (tallies == null || tallies.size() == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> keys = new HashSet<>();
+        for (int slot = 0; slot < tallies.nSlots(); slot++) {
+            if (tallies.isUsed(slot)) {
+                keys.add(getInterner().idOf(tallies.keyAt(slot)));
+            }
+        }
+        return keys;
     }
 
 }
@@ -0,0 +1,71 @@
+package onethreeseven.roi.model;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Orders the cells of a mining space from most to least dense (ties broken by ascending index),
+ * so the next seed cell for RoI mining can be found without re-sorting the space each time.
+ * The order is built once, then a cursor walks down it skipping cells that were processed since.
+ * Cells marked unprocessed again (i.e. when refining an RoI) are put in a small heap,
+ * which is merged with the cursor so they are found again in density order.
+ * @author Luke Bermingham
+ */
+final class DensitySeedIndex implements SeedIndex {
+
+    /**
+     * Each cell as a key that sorts densest first, see {@link SeedIndex#key(int, int)}.
+     */
+    private final long[] order;
+    private final IntPredicate isProcessed;
+    private int cursor = 0;
+
+    //the keys of cells behind the cursor that were marked unprocessed again
+    private final LongHeap heap = new LongHeap();
+
+    /**
+     * @param cellIndices the indices of the cells that can be seeds
+     * @param cellDensities the density of each of those cells
+     * @param nCells how many of the cells in the arrays to use
+     * @param isProcessed whether the cell at an index is processed
+     */
+    DensitySeedIndex(int[] cellIndices, int[] cellDensities, int nCells, IntPredicate isProcessed) {
+        this.order = new long[nCells];
+        for (int i = 0; i < nCells; i++) {
+            order[i] = SeedIndex.key(cellDensities[i], cellIndices[i]);
+        }
+        Arrays.sort(order);
+        this.isProcessed = isProcessed;
+    }
+
+    @Override
+    public int next() {
+        while (cursor < order.length && isProcessed.test(SeedIndex.idxOf(order[cursor]))) {
+            cursor++;
+        }
+        while (!heap.isEmpty() && isProcessed.test(SeedIndex.idxOf(heap.peek()))) {
+            heap.pop();
+        }
+        if (!heap.isEmpty() && (cursor == order.length || heap.peek() < order[cursor])) {
+            return SeedIndex.idxOf(heap.peek());
+        }
+        return cursor < order.length ? SeedIndex.idxOf(order[cursor]) : -1;
+    }
+
+    @Override
+    public void reinsert(int idx, int density) {
+        long key = SeedIndex.key(density, idx);
+        if (cursor < order.length && key >= order[cursor]) {
+            //the cursor has not passed it yet
+            return;
+        }
+        heap.push(key);
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+        heap.clear();
+    }
+
+}
@@ -0,0 +1,467 @@
+package onethreeseven.roi.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of entity ordinals (see {@link EntityInterner}), in the style of a roaring bitmap.
+ * Ordinals are split by their high 16 bits into chunks, and each chunk keeps its low 16 bits
+ * either in a sorted array (when sparse) or in a fixed 65536 bit bitmap (when dense).
+ * This keeps the set small for cells visited by a handful of entities, whilst set algebra
+ * (i.e. which entities passed through all cells of an RoI) stays fast for cells visited by many.
+ * @author Luke Bermingham
+ */
+public class EntityBitmap {
+
+    /**
+     * Chunks with more values than this are stored as a bitmap, which is then smaller than the array.
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    //the high 16 bits of each chunk, in ascending order, and their chunks
+    private int[] highs = new int[0];
+    private Chunk[] chunks = new Chunk[0];
+    private int nChunks = 0;
+
+    public EntityBitmap() {
+    }
+
+    /**
+     * @param ordinal a non-negative entity ordinal
+     */
+    public void add(int ordinal) {
+        int high = ordinal >>> 16;
+        int i = Arrays.binarySearch(highs, 0, nChunks, high);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk(i, high, new ArrayChunk(4));
+        }
+        chunks[i] = chunks[i].add((char) ordinal);
+    }
+
+    /**
+     * @param ordinal a non-negative entity ordinal
+     */
+    public void remove(int ordinal) {
+        int i = Arrays.binarySearch(highs, 0, nChunks, ordinal >>> 16);
+        if (i < 0) {
+            return;
+        }
+        chunks[i] = chunks[i].remove((char) ordinal);
+        if (chunks[i].cardinality() == 0) {
+            //drop the empty chunk
+            System.arraycopy(highs, i + 1, highs, i, nChunks - i - 1);
+            System.arraycopy(chunks, i + 1, chunks, i, nChunks - i - 1);
+            nChunks--;
+            chunks[nChunks] = null;
+        }
+    }
+
+    public boolean contains(int ordinal) {
+        int i = Arrays.binarySearch(highs, 0, nChunks, ordinal >>> 16);
+        return i >= 0 && chunks[i].contains((char) ordinal);
+    }
+
+    /**
+     * @return The number of entities in this set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < nChunks; i++) {
+            cardinality += chunks[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return nChunks == 0;
+    }
+
+    /**
+     * @param other another set of entities
+     * @return A new set of the entities in both sets.
+     */
+    public EntityBitmap and(EntityBitmap other) {
+        EntityBitmap out = new EntityBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < nChunks && j < other.nChunks) {
+            if (highs[i] < other.highs[j]) {
+                i++;
+            } else if (highs[i] > other.highs[j]) {
+                j++;
+            } else {
+                Chunk anded = chunks[i].and(other.chunks[j]);
+                if (anded.cardinality() > 0) {
+                    out.insertChunk(out.nChunks, highs[i], anded);
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param other another set of entities
+     * @return A new set of the entities in either set.
+     */
+    public EntityBitmap or(EntityBitmap other) {
+        EntityBitmap out = new EntityBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < nChunks || j < other.nChunks) {
+            if (j == other.nChunks || (i < nChunks && highs[i] < other.highs[j])) {
+                out.insertChunk(out.nChunks, highs[i], chunks[i].copy());
+                i++;
+            } else if (i == nChunks || highs[i] > other.highs[j]) {
+                out.insertChunk(out.nChunks, other.highs[j], other.chunks[j].copy());
+                j++;
+            } else {
+                out.insertChunk(out.nChunks, highs[i], chunks[i].or(other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adds all the entities of another set into this set, i.e. an in-place {@link #or(EntityBitmap)}.
+     * @param other another set of entities
+     */
+    public void addAll(EntityBitmap other) {
+        for (int j = 0; j < other.nChunks; j++) {
+            int i = Arrays.binarySearch(highs, 0, nChunks, other.highs[j]);
+            if (i < 0) {
+                insertChunk(-i - 1, other.highs[j], other.chunks[j].copy());
+            } else {
+                chunks[i] = chunks[i].orInto(other.chunks[j]);
+            }
+        }
+    }
+
+    /**
+     * Visits each entity in this set in ascending order.
+     * @param consumer called with each entity ordinal
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < nChunks; i++) {
+            chunks[i].forEach(highs[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return The entity ordinals in ascending order.
+     */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int[] n = new int[1];
+        forEach(ordinal -> out[n[0]++] = ordinal);
+        return out;
+    }
+
+    private void insertChunk(int i, int high, Chunk chunk) {
+        if (nChunks == highs.length) {
+            int capacity = Math.max(2, nChunks * 2);
+            highs = Arrays.copyOf(highs, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+        }
+        System.arraycopy(highs, i, highs, i + 1, nChunks - i);
+        System.arraycopy(chunks, i, chunks, i + 1, nChunks - i);
+        highs[i] = high;
+        chunks[i] = chunk;
+        nChunks++;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityBitmap {cardinality=" + cardinality() + "}";
+    }
+
+    /**
+     * The low 16 bits of the ordinals sharing the same high 16 bits.
+     * Operations return the resulting chunk, which may have changed representation.
+     */
+    private interface Chunk {
+        Chunk add(char value);
+
+        Chunk remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        Chunk and(Chunk other);
+
+        Chunk or(Chunk other);
+
+        /**
+         * Like {@link #or(Chunk)}, but changes this chunk where it can rather than making a new one.
+         */
+        Chunk orInto(Chunk other);
+
+        Chunk copy();
+
+        void forEach(int high, IntConsumer consumer);
+    }
+
+    /**
+     * A sparse chunk, its values are kept sorted.
+     */
+    private static final class ArrayChunk implements Chunk {
+
+        private char[] values;
+        private int size = 0;
+
+        ArrayChunk(int capacity) {
+            this.values = new char[capacity];
+        }
+
+        @Override
+        public Chunk add(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == MAX_ARRAY_SIZE) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, Math.max(4, size * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            ArrayChunk out = new ArrayChunk(Math.max(1, size));
+            if (other instanceof BitmapChunk) {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        out.values[out.size++] = values[i];
+                    }
+                }
+                return out;
+            }
+            ArrayChunk array = (ArrayChunk) other;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < array.size) {
+                if (values[i] < array.values[j]) {
+                    i++;
+                } else if (values[i] > array.values[j]) {
+                    j++;
+                } else {
+                    out.values[out.size++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            if (other instanceof BitmapChunk) {
+                return other.or(this);
+            }
+            ArrayChunk array = (ArrayChunk) other;
+            char[] merged = new char[size + array.size];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) {
+                    merged[n++] = values[i++];
+                } else if (i == size || values[i] > array.values[j]) {
+                    merged[n++] = array.values[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayChunk out = new ArrayChunk(0);
+            out.values = merged;
+            out.size = n;
+            return n > MAX_ARRAY_SIZE ? out.toBitmap() : out;
+        }
+
+        @Override
+        public Chunk orInto(Chunk other) {
+            if (other instanceof BitmapChunk) {
+                //the other chunk is not ours to change, so this becomes a copy of it
+                BitmapChunk out = (BitmapChunk) other.copy();
+                for (int i = 0; i < size; i++) {
+                    out.add(values[i]);
+                }
+                return out;
+            }
+            return or(other);
+        }
+
+        @Override
+        public Chunk copy() {
+            ArrayChunk out = new ArrayChunk(0);
+            out.values = Arrays.copyOf(values, size);
+            out.size = size;
+            return out;
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        private BitmapChunk toBitmap() {
+            BitmapChunk bitmap = new BitmapChunk();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * A dense chunk, one bit per possible value.
+     */
+    private static final class BitmapChunk implements Chunk {
+
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality = 0;
+
+        @Override
+        public Chunk add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality--;
+            }
+            return cardinality > MAX_ARRAY_SIZE ? this : toArray();
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.and(this);
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            BitmapChunk out = new BitmapChunk();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                out.words[i] = words[i] & bitmap.words[i];
+                out.cardinality += Long.bitCount(out.words[i]);
+            }
+            return out.cardinality > MAX_ARRAY_SIZE ? out : out.toArray();
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            BitmapChunk out = (BitmapChunk) copy();
+            if (other instanceof ArrayChunk) {
+                ArrayChunk array = (ArrayChunk) other;
+                for (int i = 0; i < array.size; i++) {
+                    out.add(array.values[i]);
+                }
+                return out;
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            out.cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                out.words[i] |= bitmap.words[i];
+                out.cardinality += Long.bitCount(out.words[i]);
+            }
+            return out;
+        }
+
+        @Override
+        public Chunk orInto(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                ArrayChunk array = (ArrayChunk) other;
+                for (int i = 0; i < array.size; i++) {
+                    add(array.values[i]);
+                }
+                return this;
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= bitmap.words[i];
+                cardinality += Long.bitCount(words[i]);
+            }
+            return this;
+        }
+
+        @Override
+        public Chunk copy() {
+            BitmapChunk out = new BitmapChunk();
+            System.arraycopy(words, 0, out.words, 0, BITMAP_WORDS);
+            out.cardinality = cardinality;
+            return out;
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private ArrayChunk toArray() {
+            ArrayChunk array = new ArrayChunk(Math.max(1, cardinality));
+            forEach(0, value -> array.values[array.size++] = (char) value);
+            return array;
+        }
+    }
+
+}
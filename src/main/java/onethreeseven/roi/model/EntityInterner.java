@@ -0,0 +1,58 @@
+package onethreeseven.roi.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps entity ids (i.e. trajectory ids) to dense int ordinals, and back again.
+ * Cells store the ordinals of the entities that pass through them, so each id string
+ * is only stored (and hashed) once per grid rather than once per cell visit.
+ * Note: this is not thread-safe, intern all the ids up front before sharing it between threads.
+ * @author Luke Bermingham
+ */
+public class EntityInterner {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * @param id the entity id
+     * @return The ordinal of the id, the id is given the next ordinal if it has not been seen before.
+     */
+    public int intern(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(id, ordinal);
+            ids.add(id);
+        }
+        return ordinal;
+    }
+
+    /**
+     * @param id the entity id
+     * @return The ordinal of the id, or -1 if the id has not been interned.
+     */
+    public int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @param ordinal an ordinal given out by this interner
+     * @return The entity id with that ordinal
+     */
+    public String idOf(int ordinal) {
+        return ids.get(ordinal);
+    }
+
+    /**
+     * @return The number of interned ids, ordinals are always less than this.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+}
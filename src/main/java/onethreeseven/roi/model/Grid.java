@@ -73,6 +73,22 @@ public class Grid {
         return NDUtil.flattenIndices(ndIdx, nCellsPerDimension);
     }
 
+    /**
+     * @param nCellsPerDimension the number of cells in each dimension of a grid
+     * @return How far a step along each dimension moves the 1d index of a cell.
+     */
+    static int[] strides(int[] nCellsPerDimension) {
+        int[] strides = new int[nCellsPerDimension.length];
+        int[] unit = new int[nCellsPerDimension.length];
+        int origin = NDUtil.flattenIndices(unit, nCellsPerDimension);
+        for (int n = 0; n < nCellsPerDimension.length; n++) {
+            unit[n] = 1;
+            strides[n] = NDUtil.flattenIndices(unit, nCellsPerDimension) - origin;
+            unit[n] = 0;
+        }
+        return strides;
+    }
+
     /**
      * Get indices between a given starting and ending point, whilst considering a cell radius
      *
@@ -268,6 +284,13 @@ public class Grid {
         return dimensionalRanges;
     }
 
+    /**
+     * @return the number of cells in each dimension
+     */
+    public int[] getNCellsPerDimension() {
+        return nCellsPerDimension.clone();
+    }
+
     /**
      * @return the number of dimensions as specified by the bounds
      */
@@ -0,0 +1,160 @@
+package onethreeseven.roi.model;
+
+import java.util.Arrays;
+
+/**
+ * A primitive int to int map of tallies, using open addressing (linear probing).
+ * Keys are non-negative entity ordinals and values are how many times each was tallied.
+ * Only keys with a tally above zero are kept.
+ * Iterate it using the slots: {@code for (int s = 0; s < tally.nSlots(); s++) if (tally.isUsed(s)) ...}
+ * @see EntityInterner
+ * @author Luke Bermingham
+ */
+final class IntTally {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+
+    IntTally() {
+        this(2);
+    }
+
+    IntTally(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key the key
+     * @return the tally of the key, zero if it was never tallied
+     */
+    int get(int key) {
+        int i = find(key);
+        return i == -1 ? 0 : values[i];
+    }
+
+    boolean contains(int key) {
+        return find(key) != -1;
+    }
+
+    void increment(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * @param key the key
+     * @param amount the amount to add onto the key's tally
+     */
+    void add(int key, int amount) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                values[i] += amount;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = amount;
+        size++;
+        //keep the load factor at or below three quarters
+        if (size * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes a key and its tally.
+     * @param key the key
+     */
+    void remove(int key) {
+        int i = find(key);
+        if (i == -1) {
+            return;
+        }
+        //shift back the keys after it in the same probe run, so they can still be found
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE) {
+                break;
+            }
+            //the key at j may only move back to i if i is not before the key's own slot
+            if (((j - slot(keys[j])) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of keys with a tally.
+     */
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    int nSlots() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return keys[slot] != FREE;
+    }
+
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+}
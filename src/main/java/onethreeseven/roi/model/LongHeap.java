@@ -0,0 +1,72 @@
+package onethreeseven.roi.model;
+
+import java.util.Arrays;
+
+/**
+ * A min-heap of primitive longs, so seed keys are not boxed.
+ * @author Luke Bermingham
+ */
+final class LongHeap {
+
+    private long[] heap = new long[16];
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The smallest value, the heap must not be empty.
+     */
+    long peek() {
+        return heap[0];
+    }
+
+    void push(long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        //sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * @return The smallest value, which is removed, the heap must not be empty.
+     */
+    long pop() {
+        long top = heap[0];
+        long last = heap[--size];
+        //sift down
+        int i = 0;
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+}
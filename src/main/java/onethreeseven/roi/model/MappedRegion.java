@@ -0,0 +1,57 @@
+package onethreeseven.roi.model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only region of a file mapped into memory, read as an array of ints or longs.
+ * A single mapping can be at most 2GB, so larger regions are mapped as several chunks.
+ * The pages of the file are only read in by the OS as they are touched.
+ * Reads are absolute, so many threads can read the same region at once.
+ * @author Luke Bermingham
+ */
+final class MappedRegion {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * @param channel the open file
+     * @param position where the region starts in the file (in bytes)
+     * @param size how long the region is (in bytes)
+     * @throws IOException if the file could not be mapped
+     */
+    MappedRegion(FileChannel channel, long position, long size) throws IOException {
+        int nChunks = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.chunks = new MappedByteBuffer[nChunks];
+        for (int i = 0; i < nChunks; i++) {
+            long chunkStart = (long) i << CHUNK_SHIFT;
+            long chunkSize = Math.min(CHUNK_SIZE, size - chunkStart);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + chunkStart, chunkSize);
+        }
+    }
+
+    /**
+     * @param index the index of the int in the region
+     * @return The int at that index.
+     */
+    int getInt(long index) {
+        //ints (and longs) never straddle chunks, because chunks are a multiple of their size
+        long position = index * Integer.BYTES;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * @param index the index of the long in the region
+     * @return The long at that index.
+     */
+    long getLong(long index) {
+        long position = index * Long.BYTES;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & CHUNK_MASK));
+    }
+
+}
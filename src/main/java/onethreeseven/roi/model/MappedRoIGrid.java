@@ -0,0 +1,354 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.common.util.NDUtil;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only RoI grid whose densities live in a memory-mapped snapshot file rather than on the heap.
+ * Opening one only reads the header (and entity ids), the densities are paged in by the OS as mining touches them.
+ * Like {@link DenseRoIGrid} cells are handed out as views, but over the mapped file instead of arrays.
+ * The only state on the heap is a bit per cell for processing, and another for cells filled in by
+ * {@link #removeSparsity(RoI)}. Anything that would change a density is unsupported.
+ * @see RoIGridSnapshot
+ * @author Luke Bermingham
+ */
+final class MappedRoIGrid extends RoIGrid {
+
+    private final int nCells;
+    private final MappedRegion densities;
+    private final MappedRegion totalDensities;
+    /**
+     * Where the tally pairs of each cell start (and the next cell's start where they end), or null if not written.
+     */
+    private final MappedRegion tallyOffsets;
+    /**
+     * The per-entity tally of every cell one after the other, packed as {entity, tally, entity, tally...}.
+     */
+    private final MappedRegion tallyPairs;
+    private final int maxPossibleDensity;
+    /**
+     * Cells made by {@link #getOrCreateCell(int)} that were not visited, i.e. those filled in to remove sparsity.
+     */
+    private final BitSet filled;
+    /**
+     * Processed cells, claimed atomically so separate regions of the grid can be mined at the same time.
+     */
+    private final AtomicBitSet processed;
+
+    MappedRoIGrid(Grid grid, EntityInterner interner, MappedRegion densities, MappedRegion totalDensities,
+                  MappedRegion tallyOffsets, MappedRegion tallyPairs, int maxPossibleDensity) {
+        super(grid, interner);
+        int nCells = 1;
+        for (int nCellsInDim : nCellsPerDimension) {
+            nCells = Math.multiplyExact(nCells, nCellsInDim);
+        }
+        this.nCells = nCells;
+        this.densities = densities;
+        this.totalDensities = totalDensities;
+        this.tallyOffsets = tallyOffsets;
+        this.tallyPairs = tallyPairs;
+        this.maxPossibleDensity = maxPossibleDensity;
+        this.filled = new BitSet();
+        this.processed = new AtomicBitSet(nCells);
+    }
+
+    /**
+     * @return Whether the per-entity tallies of each cell were written to the snapshot.
+     */
+    boolean hasTallies() {
+        return tallyOffsets != null;
+    }
+
+    private void requireTallies() {
+        if (!hasTallies()) {
+            throw new UnsupportedOperationException("The snapshot of this grid was written without entity tallies.");
+        }
+    }
+
+    @Override
+    public void incrementCellDensity(String entityId, int index) {
+        //before the id is interned
+        throw new UnsupportedOperationException("A mapped grid is read-only.");
+    }
+
+    @Override
+    public void incrementCellDensity(int entity, int index) {
+        throw new UnsupportedOperationException("A mapped grid is read-only.");
+    }
+
+    @Override
+    void removeCellDensity(int entity, int index, int tally) {
+        throw new UnsupportedOperationException("A mapped grid is read-only.");
+    }
+
+    @Override
+    RoIGrid emptyCopy() {
+        throw new UnsupportedOperationException("A mapped grid is read-only.");
+    }
+
+    @Override
+    void merge(RoIGrid partial) {
+        throw new UnsupportedOperationException("A mapped grid is read-only.");
+    }
+
+    /**
+     * @param index the cell index
+     * @param entity the entity ordinal
+     * @return How many times the entity visited the cell
+     */
+    private int getTally(int index, int entity) {
+        requireTallies();
+        long end = tallyOffsets.getLong(index + 1);
+        for (long i = tallyOffsets.getLong(index); i < end; i++) {
+            if (tallyPairs.getInt(i * 2) == entity) {
+                return tallyPairs.getInt(i * 2 + 1);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void enableEntityBitmaps() {
+        //the bitmaps are made from the mapped tallies whenever a cell is asked for one
+        requireTallies();
+        super.enableEntityBitmaps();
+    }
+
+    private EntityBitmap makeEntityBitmap(int index) {
+        requireTallies();
+        EntityBitmap bitmap = new EntityBitmap();
+        long end = tallyOffsets.getLong(index + 1);
+        for (long i = tallyOffsets.getLong(index); i < end; i++) {
+            bitmap.add(tallyPairs.getInt(i * 2));
+        }
+        return bitmap;
+    }
+
+    @Override
+    boolean hasCell(int idx) {
+        return totalDensities.getInt(idx) > 0 || filled.get(idx);
+    }
+
+    @Override
+    public int getDensity(int idx) {
+        return (idx < 0 || idx >= nCells || !hasCell(idx)) ? -1 : densities.getInt(idx);
+    }
+
+    @Override
+    public boolean isProcessed(int idx) {
+        return processed.get(idx);
+    }
+
+    @Override
+    void forEachCellIndex(IntConsumer visitor) {
+        for (int idx = 0; idx < nCells; idx++) {
+            if (hasCell(idx)) {
+                visitor.accept(idx);
+            }
+        }
+    }
+
+    @Override
+    public RoIGridCell getCell(int idx) {
+        if (idx < 0 || idx >= nCells || !hasCell(idx)) {
+            return null;
+        }
+        return new MappedCell(idx);
+    }
+
+    @Override
+    public RoIGridCell getCell(int[] indices) {
+        return getCell(NDUtil.flattenIndices(indices, nCellsPerDimension));
+    }
+
+    @Override
+    public RoIGridCell getOrCreateCell(int idx) {
+        if (totalDensities.getInt(idx) == 0) {
+            filled.set(idx);
+        }
+        return new MappedCell(idx);
+    }
+
+    @Override
+    public void unprocessAll() {
+        processed.clear();
+        resetSeedIndex();
+    }
+
+    @Override
+    SummedAreaTable buildSummedAreaTable() {
+        SummedAreaTable table = new SummedAreaTable(nCellsPerDimension);
+        for (int idx = 0; idx < nCells; idx++) {
+            int density = densities.getInt(idx);
+            if (density > 0) {
+                table.set(idx, density);
+            }
+        }
+        table.accumulate();
+        return table;
+    }
+
+    @Override
+    SeedIndex buildSeedIndex() {
+        int nPresent = 0;
+        for (int idx = 0; idx < nCells; idx++) {
+            if (hasCell(idx)) {
+                nPresent++;
+            }
+        }
+        int[] cellIndices = new int[nPresent];
+        int[] cellDensities = new int[nPresent];
+        int i = 0;
+        for (int idx = 0; idx < nCells && i < nPresent; idx++) {
+            if (hasCell(idx)) {
+                cellIndices[i] = idx;
+                cellDensities[i] = densities.getInt(idx);
+                i++;
+            }
+        }
+        return new DensitySeedIndex(cellIndices, cellDensities, i, processed::get);
+    }
+
+    @Override
+    public Collection<? extends MiningCell> getDenseCells() {
+        //counting sort the unprocessed cells so the most dense come first
+        int maxDensity = 0;
+        int nUnprocessed = 0;
+        for (int i = 0; i < nCells; i++) {
+            if (hasCell(i) && !processed.get(i)) {
+                maxDensity = Math.max(maxDensity, densities.getInt(i));
+                nUnprocessed++;
+            }
+        }
+        //where each density starts in the sorted output
+        int[] offsets = new int[maxDensity + 2];
+        for (int i = 0; i < nCells; i++) {
+            if (hasCell(i) && !processed.get(i)) {
+                offsets[maxDensity - densities.getInt(i) + 1]++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        final int[] sorted = new int[nUnprocessed];
+        for (int i = 0; i < nCells; i++) {
+            if (hasCell(i) && !processed.get(i)) {
+                sorted[offsets[maxDensity - densities.getInt(i)]++] = i;
+            }
+        }
+        //only make the cell views as they are requested
+        return new AbstractList<RoIGridCell>() {
+            @Override
+            public RoIGridCell get(int i) {
+                return new MappedCell(sorted[i]);
+            }
+
+            @Override
+            public int size() {
+                return sorted.length;
+            }
+        };
+    }
+
+    @Override
+    public int getMaxPossibleDensity() {
+        //worked out when the snapshot was written, as it needs every tally
+        return maxPossibleDensity;
+    }
+
+    /**
+     * A view of a single cell in the mapped grid, all its state lives in the mapped file.
+     */
+    private class MappedCell extends RoIGridCell {
+
+        private int[] ndIndices = null;
+
+        MappedCell(int index) {
+            super(index, null, MappedRoIGrid.this.interner);
+        }
+
+        @Override
+        public int[] getIndices() {
+            if (ndIndices == null) {
+                ndIndices = toNdIdx(getIndex());
+            }
+            return ndIndices;
+        }
+
+        @Override
+        public void incrementTally(int entity) {
+            incrementCellDensity(entity, getIndex());
+        }
+
+        @Override
+        void addTally(int entity, int tally) {
+            throw new UnsupportedOperationException("A mapped grid is read-only.");
+        }
+
+        @Override
+        IntTally getTallies() {
+            requireTallies();
+            long start = tallyOffsets.getLong(getIndex());
+            int nPairs = (int) (tallyOffsets.getLong(getIndex() + 1) - start);
+            if (nPairs == 0) {
+                return null;
+            }
+            IntTally tallies = new IntTally(nPairs);
+            for (long i = start; i < start + nPairs; i++) {
+                tallies.add(tallyPairs.getInt(i * 2), tallyPairs.getInt(i * 2 + 1));
+            }
+            return tallies;
+        }
+
+        @Override
+        protected int tallyOf(int entity) {
+            return getTally(getIndex(), entity);
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("A mapped grid is read-only.");
+        }
+
+        @Override
+        void trackEntityBitmap() {
+            //made on request, see enableEntityBitmaps
+        }
+
+        @Override
+        public EntityBitmap getEntityBitmap() {
+            return makeEntityBitmap(getIndex());
+        }
+
+        @Override
+        public int getDensity() {
+            return densities.getInt(getIndex());
+        }
+
+        @Override
+        public int getTotalDensity() {
+            return totalDensities.getInt(getIndex());
+        }
+
+        @Override
+        public void markProcessed() {
+            processed.set(getIndex());
+        }
+
+        @Override
+        public void markUnprocessed() {
+            processed.clear(getIndex());
+            reinsertSeed(getIndex(), getDensity());
+        }
+
+        @Override
+        public boolean isProcessed() {
+            return processed.get(getIndex());
+        }
+    }
+
+}
@@ -12,6 +12,10 @@ public class MiningCell extends DensityCell implements Processable {
         super(index);
     }
 
+    public MiningCell(int index, EntityInterner interner) {
+        super(index, interner);
+    }
+
     @Override
     public void markProcessed() {
         processed = true;
@@ -2,10 +2,16 @@ package onethreeseven.roi.model;
 
 import onethreeseven.datastructures.model.ITrajectory;
 import onethreeseven.trajsuitePlugin.util.BoundsUtil;
-import java.util.HashSet;
+
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * A factory for creating a region of n-dimensional space that will be partitioned for mining.
@@ -13,6 +19,13 @@ import java.util.Set;
  */
 public final class MiningSpaceFactory {
 
+    /**
+     * Grids with at most this many cells are stored densely in primitive arrays.
+     * Larger grids fall back to only storing the cells that are touched.
+     * @see DenseRoIGrid
+     */
+    public static final int MAX_DENSE_CELLS = 1 << 24;
+
     private MiningSpaceFactory() {
     }
 
@@ -28,37 +41,235 @@ public final class MiningSpaceFactory {
      */
     public static RoIGrid createGrid(Map<String, ? extends ITrajectory> trajectories, int[] cellsPerDimension, int cellRadius) {
         double[][] bounds = BoundsUtil.calculateFromBoundingCoordinates(trajectories.values());
-        RoIGrid roIGrid = new RoIGrid(new Grid(cellsPerDimension, bounds));
+        RoIGrid roIGrid = newRoIGrid(new Grid(cellsPerDimension, bounds));
+        roIGrid.setFeedCellRadius(cellRadius);
+        populateGrid(roIGrid, trajectories, cellRadius);
+        return roIGrid;
+    }
+
+    /**
+     * Creates a grid with no density, to be populated from live feeds of points.
+     * Points outside the bounds count towards the cells on the edge of the grid.
+     *
+     * @param bounds            the bounds of the grid, i.e. [[minX, maxX],[minY, maxY]]
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius        each cell the fed points pass through gets +1 density,
+     *                          but if cell radius is greater than zero,
+     *                          those neighbouring cells also get affected.
+     * @return An empty grid.
+     * @see RoIGrid#addPoint(String, double[])
+     */
+    public static RoIGrid createEmptyGrid(double[][] bounds, int[] cellsPerDimension, int cellRadius) {
+        RoIGrid roIGrid = newRoIGrid(new Grid(cellsPerDimension, bounds));
+        roIGrid.setFeedCellRadius(cellRadius);
+        return roIGrid;
+    }
+
+    /**
+     * Creates a grid with no density that is too big for the heap, so keeps only some of its tiles in memory
+     * and spills the rest to disk. It is populated from live feeds of points, like {@link #createEmptyGrid(double[][], int[], int)}.
+     *
+     * @param bounds            the bounds of the grid, i.e. [[minX, maxX],[minY, maxY]]
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius        each cell the fed points pass through gets +1 density,
+     *                          but if cell radius is greater than zero,
+     *                          those neighbouring cells also get affected.
+     * @param cellsPerTile      how many cells each tile spans in each dimension
+     * @param maxCachedTiles    how many tiles can be in memory at once
+     * @param spillDirectory    where tiles are spilled, made if it does not exist
+     * @return An empty tiled grid.
+     * @see TiledRoIGrid
+     */
+    public static TiledRoIGrid createTiledGrid(double[][] bounds, int[] cellsPerDimension, int cellRadius,
+                                               int[] cellsPerTile, int maxCachedTiles, File spillDirectory) {
+        TiledRoIGrid roIGrid = new TiledRoIGrid(new Grid(cellsPerDimension, bounds), cellsPerTile, maxCachedTiles, spillDirectory);
+        roIGrid.setFeedCellRadius(cellRadius);
+        return roIGrid;
+    }
+
+    /**
+     * Creates a grid of dense cells using trajectories as inputs, populating the grid in parallel.
+     * The trajectories are split into contiguous parts, each part populates its own partial grid
+     * on the executor, and the partial grids are then merged in trajectory order.
+     * The resulting grid is identical to the one made by {@link #createGrid(Map, int[], int)}.
+     * Each partial grid is map-backed, so it only holds the cells its part visits.
+     *
+     * @param trajectories      a collection of trajectories
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius        each cell the trajectory passes through gets +1 density,
+     *                          but if cell radius is greater than zero,
+     *                          those neighbouring cells also get affected.
+     * @param executor          where the grid is populated, i.e. {@link ForkJoinPool#commonPool()}
+     * @return A grid with cells tallied indicating where trajectories passed through
+     */
+    public static RoIGrid createGrid(Map<String, ? extends ITrajectory> trajectories, int[] cellsPerDimension,
+                                     int cellRadius, ExecutorService executor) {
+        double[][] bounds = BoundsUtil.calculateFromBoundingCoordinates(trajectories.values());
+        RoIGrid roIGrid = newRoIGrid(new Grid(cellsPerDimension, bounds));
+        roIGrid.setFeedCellRadius(cellRadius);
+
+        List<Map.Entry<String, ? extends ITrajectory>> entries = new ArrayList<>(trajectories.entrySet());
+        int parallelism = (executor instanceof ForkJoinPool) ?
+                ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        int nParts = Math.min(entries.size(), parallelism);
+        if (nParts <= 1) {
+            populateGrid(roIGrid, trajectories, cellRadius);
+            return roIGrid;
+        }
+
+        //intern the ids up front, in trajectory order, so every part shares the same ordinals
+        EntityInterner interner = roIGrid.getEntityInterner();
+        final int[] entities = new int[entries.size()];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = interner.intern(entries.get(i).getKey());
+        }
+
+        //populate each part of the trajectories into its own partial grid
+        List<Future<RoIGrid>> partials = new ArrayList<>(nParts);
+        for (int i = 0; i < nParts; i++) {
+            final int partStart = (int) ((long) entries.size() * i / nParts);
+            final int partEnd = (int) ((long) entries.size() * (i + 1) / nParts);
+            partials.add(executor.submit(() -> {
+                RoIGrid partial = roIGrid.emptyCopy();
+                for (int j = partStart; j < partEnd; j++) {
+                    populateGridWithTrajectory(entities[j], entries.get(j).getValue(), partial, cellRadius);
+                }
+                return partial;
+            }));
+        }
+
+        //merge in trajectory order so the grid is identical to a sequential population
+        for (Future<RoIGrid> partial : partials) {
+            try {
+                roIGrid.merge(partial.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted whilst populating the grid.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Could not populate the grid.", e.getCause());
+            }
+        }
+        return roIGrid;
+    }
+
+    /**
+     * Creates a grid with no density, whose cells only count the visits made in a recent window of time.
+     * Points outside the bounds count towards the cells on the edge of the grid.
+     *
+     * @param bounds            the bounds of the grid, i.e. [[minX, maxX],[minY, maxY]]
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius        each cell the fed points pass through gets +1 density,
+     *                          but if cell radius is greater than zero,
+     *                          those neighbouring cells also get affected.
+     * @param windowMillis      how long visits count towards density
+     * @param nSlots            how many time slots the window is split into
+     * @return An empty windowed grid.
+     * @see SlidingWindowRoIGrid#addPoint(String, double[], long)
+     */
+    public static SlidingWindowRoIGrid createSlidingWindowGrid(double[][] bounds, int[] cellsPerDimension, int cellRadius,
+                                                               long windowMillis, int nSlots) {
+        SlidingWindowRoIGrid roIGrid = new SlidingWindowRoIGrid(new Grid(cellsPerDimension, bounds), windowMillis, nSlots);
+        roIGrid.setFeedCellRadius(cellRadius);
+        return roIGrid;
+    }
+
+    /**
+     * Creates a grid that only stores the cells trajectories pass through.
+     * Unlike {@link #createGrid(Map, int[], int)} the total number of cells in this grid may exceed
+     * what an int can index, which makes it suitable for large or high-dimensional
+     * (i.e. spatio-temporal) grids where nearly all cells are empty.
+     *
+     * @param trajectories      a collection of trajectories
+     * @param cellsPerDimension how many cells in each dimension
+     * @param cellRadius        each cell the trajectory passes through gets +1 density,
+     *                          but if cell radius is greater than zero,
+     *                          those neighbouring cells also get affected.
+     * @return A sparse grid with cells tallied indicating where trajectories passed through
+     */
+    public static SparseRoIGrid createSparseGrid(Map<String, ? extends ITrajectory> trajectories, int[] cellsPerDimension, int cellRadius) {
+        double[][] bounds = BoundsUtil.calculateFromBoundingCoordinates(trajectories.values());
+        SparseRoIGrid grid = new SparseRoIGrid(new Grid(cellsPerDimension, bounds));
+        //go through each trajectory
+        for (Map.Entry<String, ? extends ITrajectory> trajectoryEntry : trajectories.entrySet()) {
+            int entity = grid.getEntityInterner().intern(trajectoryEntry.getKey());
+            populateSparseGridWithTrajectory(entity, trajectoryEntry.getValue(), grid, cellRadius);
+        }
+        return grid;
+    }
+
+    /**
+     * Makes an empty roi grid, the storage of the grid depends on how many cells it has.
+     * @param grid the n-d grid
+     * @return A dense grid if the cell count fits, otherwise a grid that only stores touched cells.
+     */
+    static RoIGrid newRoIGrid(Grid grid) {
+        return newRoIGrid(grid, new EntityInterner());
+    }
+
+    /**
+     * Makes an empty roi grid, whose entity ids come from the given interner.
+     * @param grid the n-d grid
+     * @param interner the interner of entity ids
+     * @return A dense grid if the cell count fits, otherwise a grid that only stores touched cells.
+     */
+    static RoIGrid newRoIGrid(Grid grid, EntityInterner interner) {
+        long nCells = 1;
+        for (int nCellsInDim : grid.nCellsPerDimension) {
+            nCells *= nCellsInDim;
+            if (nCells > MAX_DENSE_CELLS) {
+                return new RoIGrid(grid, interner);
+            }
+        }
+        return (nCells > 0) ? new DenseRoIGrid(grid, interner) : new RoIGrid(grid, interner);
+    }
+
+    static void populateGrid(RoIGrid roIGrid, Map<String, ? extends ITrajectory> trajectories, int cellRadius) {
         //go through each trajectory
+        //each id is interned once, so cells only ever see its ordinal
+        EntityInterner interner = roIGrid.getEntityInterner();
         for (Map.Entry<String, ? extends ITrajectory> trajectoryEntry : trajectories.entrySet()) {
-            populateGridWithTrajectory(trajectoryEntry.getKey(), trajectoryEntry.getValue(),
+            populateGridWithTrajectory(interner.intern(trajectoryEntry.getKey()), trajectoryEntry.getValue(),
                     roIGrid, cellRadius);
         }
-        return roIGrid;
     }
 
 
-    private static void populateGridWithTrajectory(String trajId, ITrajectory trajectory, RoIGrid grid, int cellRadius) {
+    private static void populateGridWithTrajectory(int entity, ITrajectory trajectory, RoIGrid grid, int cellRadius) {
         //iterate each point and use the previous point the find the relevant indices and increase density
+        TrajectoryPopulator populator = new TrajectoryPopulator(grid, cellRadius);
+        TrajectoryPopulator.Track track = new TrajectoryPopulator.Track();
+        Iterator<double[]> iter = trajectory.coordinateIter();
+        while(iter.hasNext()){
+            populator.addPoint(entity, track, iter.next());
+        }
+    }
+
+    private static void populateSparseGridWithTrajectory(int entity, ITrajectory trajectory, SparseRoIGrid grid, int cellRadius) {
+        //same as the dense population, but the cells are identified by long keys
         Iterator<double[]> iter = trajectory.coordinateIter();
 
         double[] prev = iter.hasNext() ? iter.next() : null;
         if(prev == null){return;}
 
-        Set<Integer> toDiscount = new HashSet<>();
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+        LongIntHashMap gridKeys = new LongIntHashMap();
+        LongIntHashMap toDiscount = new LongIntHashMap();
         while(iter.hasNext()){
             double[] cur = iter.next();
-            Set<Integer> gridIndices = grid.getIndicesBetween(prev, cur, cellRadius);
-            gridIndices.removeAll(toDiscount);
-            //increment density at the given indices
-            for (Integer gridIdx : gridIndices) {
-                grid.incrementCellDensity(trajId, gridIdx);
-            }
+            gridKeys.clear();
+            grid.collectKeysBetween(rasterizer, prev, cur, cellRadius, gridKeys);
+            //increment density at the given keys
+            gridKeys.forEachKey(key -> {
+                if (!toDiscount.containsKey(key)) {
+                    grid.incrementCellDensity(entity, key);
+                }
+            });
             //discount the current point resolve being counted again on the next move
             toDiscount.clear();
-            for (int indexToDiscount : grid.getIndicesAround(grid.getIndices(cur), cellRadius)) {
-                toDiscount.add(indexToDiscount);
-            }
+            grid.collectKeysAround(rasterizer.getIndices(cur), cellRadius, toDiscount);
             //set previous point
             prev = cur;
         }
@@ -0,0 +1,150 @@
+package onethreeseven.roi.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * A view over some of the cells of another mining space, i.e. the cells of one RoI.
+ * Mining in this space only seeds from and expands into those cells, so its cost
+ * depends on how many cells are in the view rather than on the size of the whole space.
+ * Processing state is shared with the underlying space.
+ * @see onethreeseven.roi.algorithm.HybridRoIs
+ * @author Luke Bermingham
+ */
+public class MiningSubSpace implements RoIMiningSpace {
+
+    private final RoIMiningSpace space;
+    private final Set<Integer> cellIndices;
+    private DensitySeedIndex seedIndex = null;
+
+    /**
+     * @param space the underlying mining space
+     * @param cellIndices the indices (in the underlying space) of the cells in this view
+     */
+    public MiningSubSpace(RoIMiningSpace space, Set<Integer> cellIndices) {
+        this.space = space;
+        this.cellIndices = cellIndices;
+    }
+
+    @Override
+    public void unprocessAll() {
+        for (Integer idx : cellIndices) {
+            space.markUnprocessed(idx);
+        }
+        if (seedIndex != null) {
+            seedIndex.reset();
+        }
+    }
+
+    @Override
+    public Collection<? extends MiningCell> getDenseCells() {
+        List<MiningCell> denseCells = new ArrayList<>(cellIndices.size());
+        for (Integer idx : cellIndices) {
+            MiningCell cell = space.getCell(idx);
+            if (cell != null && !cell.isProcessed()) {
+                denseCells.add(cell);
+            }
+        }
+        denseCells.sort((o1, o2) -> o2.getDensity() - o1.getDensity());
+        return denseCells;
+    }
+
+    @Override
+    public MiningCell nextDenseCell() {
+        if (seedIndex == null) {
+            int[] indices = new int[cellIndices.size()];
+            int[] densities = new int[cellIndices.size()];
+            int n = 0;
+            for (Integer idx : cellIndices) {
+                MiningCell cell = space.getCell(idx);
+                if (cell != null) {
+                    indices[n] = idx;
+                    densities[n] = cell.getDensity();
+                    n++;
+                }
+            }
+            seedIndex = new DensitySeedIndex(indices, densities, n, idx -> space.getCell(idx).isProcessed());
+        }
+        int idx = seedIndex.next();
+        return idx == -1 ? null : space.getCell(idx);
+    }
+
+    @Override
+    public void markUnprocessed(int idx) {
+        if (!cellIndices.contains(idx)) {
+            return;
+        }
+        space.markUnprocessed(idx);
+        if (seedIndex != null) {
+            seedIndex.reinsert(idx, space.getCell(idx).getDensity());
+        }
+    }
+
+    /**
+     * @param queryCell the query cell
+     * @return The neighbours of the cell in the underlying space, that are also in this view.
+     */
+    @Override
+    public Collection<MiningCell> getNeighbourCells(MiningCell queryCell) {
+        Collection<MiningCell> neighbourCells = space.getNeighbourCells(queryCell);
+        neighbourCells.removeIf(neighbour -> !cellIndices.contains(neighbour.getIndex()));
+        return neighbourCells;
+    }
+
+    /**
+     * @return The neighbourhood of the underlying space.
+     */
+    @Override
+    public Neighbourhood getNeighbourhood() {
+        return space.getNeighbourhood();
+    }
+
+    /**
+     * Changes the neighbourhood of the underlying space, as this is only a view over it.
+     * @param neighbourhood the neighbourhood
+     */
+    @Override
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        space.setNeighbourhood(neighbourhood);
+    }
+
+    @Override
+    public void forEachNeighbour(int idx, IntConsumer visitor) {
+        space.forEachNeighbour(idx, neighbourIdx -> {
+            if (cellIndices.contains(neighbourIdx)) {
+                visitor.accept(neighbourIdx);
+            }
+        });
+    }
+
+    @Override
+    public RoI removeSparsity(RoI roi) {
+        return space.removeSparsity(roi);
+    }
+
+    @Override
+    public MiningCell getCell(int idx) {
+        return cellIndices.contains(idx) ? space.getCell(idx) : null;
+    }
+
+    @Override
+    public int getDensity(int idx) {
+        return cellIndices.contains(idx) ? space.getDensity(idx) : -1;
+    }
+
+    @Override
+    public boolean isProcessed(int idx) {
+        return cellIndices.contains(idx) && space.isProcessed(idx);
+    }
+
+    /**
+     * @return The number of cells in this view.
+     */
+    public int size() {
+        return cellIndices.size();
+    }
+
+}
@@ -0,0 +1,133 @@
+package onethreeseven.roi.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which cells around a cell count as its neighbours when RoIs are expanded, see {@link RoIMiningSpace#setNeighbourhood(Neighbourhood)}.
+ * Face neighbours (the default) only step one cell along one dimension, so a diagonal corridor (i.e. a highway)
+ * is split into many small RoIs; the wider neighbourhoods also step diagonally, which keeps it as one RoI.
+ * Neighbourhoods are described by their offsets in n-d indices, which a space turns into a table of
+ * 1d index offsets once, so finding the neighbours of a cell stays a few additions per neighbour.
+ * @author Luke Bermingham
+ */
+public final class Neighbourhood {
+
+    /**
+     * Cells sharing a face: 4 in 2d, 6 in 3d.
+     */
+    public static final Neighbourhood FACE = new Neighbourhood("Face", 1, 1);
+    /**
+     * Cells sharing at least an edge (up to two dimensions stepped at once): 8 in 2d, 18 in 3d.
+     */
+    public static final Neighbourhood EDGE = new Neighbourhood("Edge", 1, 2);
+    /**
+     * Cells sharing at least a corner: 8 in 2d, 26 in 3d.
+     */
+    public static final Neighbourhood MOORE = new Neighbourhood("Moore", 1, Integer.MAX_VALUE);
+
+    private final String name;
+    private final int reach;
+    private final int maxDimensionsStepped;
+
+    private Neighbourhood(String name, int reach, int maxDimensionsStepped) {
+        this.name = name;
+        this.reach = reach;
+        this.maxDimensionsStepped = maxDimensionsStepped;
+    }
+
+    /**
+     * @param radius how many cells away (in every dimension, so a box) a neighbour can be
+     * @return The cells within a box of the given radius, a radius of 1 is the same as {@link #MOORE}.
+     */
+    public static Neighbourhood radius(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("The radius of a neighbourhood must be at least 1.");
+        }
+        return new Neighbourhood("Radius " + radius, radius, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The most cells a neighbour can be away along any one dimension.
+     */
+    public int getReach() {
+        return reach;
+    }
+
+    /**
+     * @return Whether this is the face neighbourhood, which spaces find without an offset table.
+     */
+    public boolean isFace() {
+        return reach == 1 && maxDimensionsStepped == 1;
+    }
+
+    /**
+     * The n-d offsets of the neighbours. The nearest (fewest steps) come first, then those stepping
+     * along lower dimensions, up before down, i.e. the face neighbours of 2d come as +x, -x, +y, -y.
+     * @param nDimensions the number of dimensions of the space
+     * @return The offset of each neighbour from the cell.
+     */
+    public int[][] getOffsets(int nDimensions) {
+        List<int[]> offsets = new ArrayList<>();
+        int[] offset = new int[nDimensions];
+        int side = reach * 2 + 1;
+        long nOffsets = 1;
+        for (int n = 0; n < nDimensions; n++) {
+            nOffsets *= side;
+        }
+        for (long i = 0; i < nOffsets; i++) {
+            long rest = i;
+            int nStepped = 0;
+            for (int n = 0; n < nDimensions; n++) {
+                offset[n] = (int) (rest % side) - reach;
+                rest /= side;
+                if (offset[n] != 0) {
+                    nStepped++;
+                }
+            }
+            if (nStepped > 0 && nStepped <= maxDimensionsStepped) {
+                offsets.add(offset.clone());
+            }
+        }
+        offsets.sort(Neighbourhood::compareOffsets);
+        return offsets.toArray(new int[offsets.size()][]);
+    }
+
+    private static int compareOffsets(int[] a, int[] b) {
+        int byDistance = Integer.compare(nSteps(a), nSteps(b));
+        if (byDistance != 0) {
+            return byDistance;
+        }
+        for (int n = 0; n < a.length; n++) {
+            int byDimension = Integer.compare(rank(a[n]), rank(b[n]));
+            if (byDimension != 0) {
+                return byDimension;
+            }
+        }
+        return 0;
+    }
+
+    private static int nSteps(int[] offset) {
+        int nSteps = 0;
+        for (int step : offset) {
+            nSteps += Math.abs(step);
+        }
+        return nSteps;
+    }
+
+    /**
+     * Stepping along a dimension comes before not stepping along it, and up before down.
+     */
+    private static int rank(int step) {
+        if (step == 0) {
+            return Integer.MAX_VALUE;
+        }
+        return step > 0 ? step * 2 - 1 : -step * 2;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -11,6 +11,8 @@ import java.util.List;
 
 /**
  * Given an RoI and the grid used to mine it, this class extracts the actual coordinates for the grid cell-based RoI.
+ * Note: if the RoI is a {@link BoxRoI} its cells are not put in this map (which is then empty), only the box is kept,
+ * see {@link #getBox()}. To ask whether a cell is in either kind of roi use {@link #contains(int)}.
  * @author Luke Bermingham
  */
 public class RectangularRoI extends HashMap<Integer, BoundingCoordinates> implements BoundingCoordinates {
@@ -20,17 +22,36 @@ public class RectangularRoI extends HashMap<Integer, BoundingCoordinates> implem
     private double[][] bounds = null;
     private final AbstractGeographicProjection projection;
     private final int id;
+    private final BoxRoI box;
 
     public RectangularRoI(RoIGrid roIGrid, RoI roi, AbstractGeographicProjection projection) {
         this.roIGrid = roIGrid;
         this.density = roi.getDensity() / roi.size();
         this.projection = projection;
         this.id = roi.getId();
-        for (Integer cellIdx : roi) {
-            this.put(cellIdx, roIGrid.getCellBounds(cellIdx));
+        this.box = (roi instanceof BoxRoI) ? (BoxRoI) roi : null;
+        if (box == null) {
+            for (Integer cellIdx : roi) {
+                this.put(cellIdx, roIGrid.getCellBounds(cellIdx));
+            }
         }
     }
 
+    /**
+     * @return The box of cells this roi covers, or null if the roi was not a box (and its cells are in this map).
+     */
+    public BoxRoI getBox() {
+        return box;
+    }
+
+    /**
+     * @param cellIdx the 1d index of a grid cell
+     * @return Whether the cell is in this roi, answered by the box if the roi is one, otherwise by this map.
+     */
+    public boolean contains(int cellIdx) {
+        return (box != null) ? box.getCells().contains(cellIdx) : containsKey(cellIdx);
+    }
+
     public int getId() {
         return id;
     }
@@ -65,7 +86,15 @@ public class RectangularRoI extends HashMap<Integer, BoundingCoordinates> implem
 
     @Override
     public double[][] getBounds() {
-        if (bounds == null) {
+        if (bounds == null && box != null) {
+            //the box spans from its min cell to its max cell
+            double[][] minBounds = roIGrid.getCellBounds(box.getMin()).getBounds();
+            double[][] maxBounds = roIGrid.getCellBounds(box.getMax()).getBounds();
+            bounds = new double[minBounds.length][];
+            for (int n = 0; n < minBounds.length; n++) {
+                bounds[n] = new double[]{minBounds[n][0], maxBounds[n][1]};
+            }
+        } else if (bounds == null) {
             bounds = BoundsUtil.calculateFromBoundingCoordinates(this.values());
         }
         return bounds;
@@ -22,6 +22,28 @@ public class RoI implements Iterable<Integer> {
 
     }
 
+    /**
+     * @param id the id of the roi
+     * @param cells how the cell indices of this roi are stored
+     */
+    protected RoI(int id, Set<Integer> cells) {
+        this.id = id;
+        this.cells = cells;
+    }
+
+    /**
+     * @param id the id of the roi
+     * @param cells the 1d indices of the cells of the roi
+     * @param density the density of the roi, i.e. when it was mined before
+     */
+    public RoI(int id, int[] cells, double density) {
+        this(id);
+        for (int cell : cells) {
+            this.cells.add(cell);
+        }
+        this.density = density;
+    }
+
     public RoI(DensityCell cell, int id) {
         this(id);
         this.add(cell);
@@ -61,6 +83,13 @@ public class RoI implements Iterable<Integer> {
         return id;
     }
 
+    /**
+     * @param id the new id of this roi, i.e. when it replaces an roi that was mined before
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public Set<Integer> getCells() {
         return cells;
     }
@@ -7,6 +7,7 @@ import onethreeseven.trajsuitePlugin.model.BoundingCoordinates;
 import onethreeseven.trajsuitePlugin.util.BoundsUtil;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +20,50 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
 
     private final Map<Integer, RoIGridCell> gridCells;
 
+    /**
+     * Entity ids are interned once per grid, cells only tally the ordinals.
+     */
+    protected final EntityInterner interner;
+
+    /**
+     * Whether cells keep a bitmap of their entities, see {@link #enableEntityBitmaps()}.
+     */
+    private boolean entityBitmaps = false;
+
+    /**
+     * The cells in order of density, for picking seeds. Made when first needed and dropped once densities change.
+     */
+    private SeedIndex seedIndex = null;
+
+    /**
+     * How far the 1d index moves when stepping one cell in each dimension.
+     */
+    private final int[] strides;
+
+    private Neighbourhood neighbourhood = Neighbourhood.FACE;
+    /**
+     * The n-d offset of each neighbour, and how far each moves the 1d index.
+     */
+    private int[][] neighbourOffsets;
+    private int[] neighbourDeltas;
+
+    /**
+     * The cells whose density changed since they were last drained, only kept once tracking is enabled.
+     * @see #trackDirtyCells()
+     */
+    private IntTally dirtyCells = null;
+
+    /**
+     * Adds points fed to this grid, see {@link #addPoint(String, double[])}. Made when first needed.
+     */
+    private TrajectoryPopulator feedPopulator = null;
+    private int feedCellRadius = 0;
+
+    /**
+     * Where each entity fed to this grid was last seen, indexed by entity ordinal.
+     */
+    private TrajectoryPopulator.Track[] feedTracks = new TrajectoryPopulator.Track[0];
+
     /**
      * Creates a new roi grid using a specified n-d grid
      * This constructor is typically called by {@link MiningSpaceFactory}.
@@ -27,14 +72,140 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
      * @see MiningSpaceFactory
      */
     RoIGrid(Grid grid) {
+        this(grid, new EntityInterner());
+    }
+
+    /**
+     * Creates a new roi grid using a specified n-d grid, whose entity ids come from the given interner.
+     *
+     * @param grid the n-d grid
+     * @param interner the interner of entity ids
+     */
+    RoIGrid(Grid grid, EntityInterner interner) {
         super(grid.nCellsPerDimension, grid.getBounds());
         this.gridCells = new HashMap<>();
+        this.interner = interner;
+        this.strides = Grid.strides(nCellsPerDimension);
+        setNeighbourhood(Neighbourhood.FACE);
     }
 
     private int getIdx(int[] indices) {
         return NDUtil.flattenIndices(indices, this.nCellsPerDimension);
     }
 
+    /**
+     * @param cellRadius the cell radius used for points fed to this grid, see {@link #addPoint(String, double[])}
+     */
+    void setFeedCellRadius(int cellRadius) {
+        this.feedCellRadius = cellRadius;
+        this.feedPopulator = null;
+    }
+
+    /**
+     * Adds the next point of an entity from a live feed.
+     * The segment from the entity's last point to this point is added to the grid exactly as if
+     * the entity's points had been populated as one trajectory, see {@link MiningSpaceFactory#createGrid(Map, int[], int)}.
+     * Note: entities populated when the grid was created have no last point, their first fed point starts a new trajectory.
+     *
+     * @param entityId the entity
+     * @param point the point, in the same coordinates as the grid
+     */
+    public void addPoint(String entityId, double[] point) {
+        addPoint(interner.intern(entityId), point.clone());
+    }
+
+    /**
+     * Adds the next points of an entity from a live feed, see {@link #addPoint(String, double[])}.
+     *
+     * @param entityId the entity
+     * @param points the points in the order they were seen
+     */
+    public void addPoints(String entityId, Iterable<double[]> points) {
+        int entity = interner.intern(entityId);
+        for (double[] point : points) {
+            addPoint(entity, point.clone());
+        }
+    }
+
+    private void addPoint(int entity, double[] point) {
+        if (feedPopulator == null) {
+            feedPopulator = new TrajectoryPopulator(this, feedCellRadius);
+        }
+        if (entity >= feedTracks.length) {
+            feedTracks = Arrays.copyOf(feedTracks, Math.max(entity + 1, feedTracks.length * 2));
+        }
+        if (feedTracks[entity] == null) {
+            feedTracks[entity] = new TrajectoryPopulator.Track();
+        }
+        feedPopulator.addPoint(entity, feedTracks[entity], point);
+    }
+
+    /**
+     * Forgets the last point of an entity, so the next point fed for it starts a new trajectory.
+     *
+     * @param entityId the entity
+     */
+    public void endTrajectory(String entityId) {
+        int entity = interner.ordinalOf(entityId);
+        if (entity != -1 && entity < feedTracks.length) {
+            feedTracks[entity] = null;
+        }
+    }
+
+    /**
+     * Forgets the last point of every entity (see {@link #endTrajectory(String)}),
+     * and lets go of what was kept to feed them, i.e. once a whole data set has been fed.
+     */
+    public void endAllTrajectories() {
+        feedTracks = new TrajectoryPopulator.Track[0];
+        feedPopulator = null;
+    }
+
+    /**
+     * Takes away visits by an entity from a cell, i.e. when those visits expire.
+     * Cells left with no visits are dropped.
+     *
+     * @param entity the ordinal of the entity
+     * @param index the index of the cell
+     * @param tally how many visits to take away
+     */
+    void removeCellDensity(int entity, int index, int tally) {
+        RoIGridCell cell = gridCells.get(index);
+        if (cell == null) {
+            return;
+        }
+        densityChanged(index);
+        cell.removeTally(entity, tally);
+        if (cell.getTotalDensity() == 0) {
+            gridCells.remove(index);
+        }
+    }
+
+    /**
+     * Whether separate regions of this grid can be mined at the same time, see {@link AbstractRoIMining}.
+     * Reading a cell must not change the grid, and marking a cell processed must not disturb any other cell.
+     * @return True if this grid can be mined from many threads at once.
+     */
+    public boolean supportsConcurrentMining() {
+        return true;
+    }
+
+    /**
+     * @return The period the visits being added now are counted in, visits are only taken away again by period.
+     * @see SlidingWindowRoIGrid
+     */
+    long countingPeriod() {
+        return 0;
+    }
+
+    /**
+     * @param period a period from {@link #countingPeriod()}
+     * @return Whether the visits counted in that period still count towards density.
+     */
+    boolean isCounted(long period) {
+        return true;
+    }
+
     /**
      * Increment the density of the cell at the position specified by the indices.
      * If no cell exists, makes one and sets the density to one.
@@ -43,15 +214,99 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
      * @param index    the index of the cell in question
      */
     public void incrementCellDensity(String entityId, int index) {
+        incrementCellDensity(interner.intern(entityId), index);
+    }
+
+    /**
+     * Increment the density of the cell at the position specified by the indices.
+     * If no cell exists, makes one and sets the density to one.
+     *
+     * @param entity the ordinal of the entity that was in this cell, see {@link #getEntityInterner()}
+     * @param index  the index of the cell in question
+     */
+    public void incrementCellDensity(int entity, int index) {
+        densityChanged(index);
         RoIGridCell cell = gridCells.get(index);
         if (cell == null) {
             //make grid cell
-            RoIGridCell roIGridCell = new RoIGridCell(index, NDUtil.inflateIndex(index, this.nCellsPerDimension));
-            roIGridCell.incrementTally(entityId);
+            RoIGridCell roIGridCell = new RoIGridCell(index, NDUtil.inflateIndex(index, this.nCellsPerDimension), interner);
+            if (entityBitmaps) {
+                roIGridCell.trackEntityBitmap();
+            }
+            roIGridCell.incrementTally(entity);
             putCell(roIGridCell);
         } else {
             //already exists just increment
-            cell.incrementTally(entityId);
+            cell.incrementTally(entity);
+        }
+    }
+
+    /**
+     * @return The interner that maps the entity ids in this grid to the ordinals tallied by its cells.
+     */
+    public EntityInterner getEntityInterner() {
+        return interner;
+    }
+
+    /**
+     * Have every cell keep a compressed bitmap of the entities that visited it, from now on.
+     * This costs some memory per cell, but makes repeated entity queries over cells
+     * (i.e. which entities passed through all the cells of an RoI) bitmap operations.
+     * @see DensityCell#getEntityBitmap()
+     */
+    public void enableEntityBitmaps() {
+        entityBitmaps = true;
+        for (RoIGridCell cell : gridCells.values()) {
+            cell.trackEntityBitmap();
+        }
+    }
+
+    /**
+     * @return Whether the cells of this grid keep a bitmap of their entities.
+     */
+    public boolean hasEntityBitmaps() {
+        return entityBitmaps;
+    }
+
+    /**
+     * Remember which cells change density from now on, i.e. so only RoIs around those cells need mining again.
+     * Note: only changes made through the grid are seen, not changes made to a cell directly.
+     * @see #drainDirtyCells()
+     */
+    public void trackDirtyCells() {
+        if (dirtyCells == null) {
+            dirtyCells = new IntTally();
+        }
+    }
+
+    /**
+     * @return The indices of the cells whose density changed since this was last called, in ascending order.
+     * @see #trackDirtyCells()
+     */
+    public int[] drainDirtyCells() {
+        if (dirtyCells == null) {
+            return new int[0];
+        }
+        int[] changed = new int[dirtyCells.size()];
+        int n = 0;
+        for (int slot = 0; slot < dirtyCells.nSlots(); slot++) {
+            if (dirtyCells.isUsed(slot)) {
+                changed[n++] = dirtyCells.keyAt(slot);
+            }
+        }
+        dirtyCells.clear();
+        Arrays.sort(changed);
+        return changed;
+    }
+
+    /**
+     * Must be called when the density of a cell changes.
+     * @param idx the index of the cell
+     */
+    void densityChanged(int idx) {
+        invalidateDensityIndices();
+        if (dirtyCells != null && idx >= 0 && !dirtyCells.contains(idx)) {
+            dirtyCells.increment(idx);
         }
     }
 
@@ -64,6 +319,61 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
         this.gridCells.put(roIGridCell.getIndex(), roIGridCell);
     }
 
+    /**
+     * Gets the cell at the given index, or if there is no cell there yet makes one.
+     * The made cell has zero density, but it is kept in the grid for processing reasons.
+     *
+     * @param idx the 1d index of the cell
+     * @return the existing cell, or the newly made (empty) cell
+     */
+    public RoIGridCell getOrCreateCell(int idx) {
+        RoIGridCell cell = gridCells.get(idx);
+        if (cell == null) {
+            cell = new RoIGridCell(idx, super.toNdIdx(idx), interner);
+            if (entityBitmaps) {
+                cell.trackEntityBitmap();
+            }
+            this.putCell(cell);
+        }
+        return cell;
+    }
+
+    /**
+     * @return An empty map-backed grid with the same extents as this grid, sharing its interner.
+     * Used to populate parts of the grid independently; it only stores the cells a part visits.
+     */
+    RoIGrid emptyCopy() {
+        return new RoIGrid(this, interner);
+    }
+
+    /**
+     * Adds the densities of a grid populated by different entities into this grid.
+     * @param partial a grid made by {@link #emptyCopy()}, populated with entities this grid has not seen
+     */
+    void merge(RoIGrid partial) {
+        invalidateDensityIndices();
+        for (RoIGridCell partialCell : partial.mappedCells()) {
+            densityChanged(partialCell.getIndex());
+            RoIGridCell cell = getOrCreateCell(partialCell.getIndex());
+            IntTally tallies = partialCell.getTallies();
+            if (tallies == null) {
+                continue;
+            }
+            for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    cell.addTally(tallies.keyAt(slot), tallies.valueAt(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The cells held in this grid's map, i.e. every cell of a grid made by {@link #emptyCopy()}.
+     */
+    Collection<RoIGridCell> mappedCells() {
+        return gridCells.values();
+    }
+
     public RoIGridCell moveToCell(int[] startIndices, int[] offset) {
         int[] moved = new int[startIndices.length];
         for (int i = 0; i < startIndices.length; i++) {
@@ -86,6 +396,67 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
         for (RoIGridCell cell : gridCells.values()) {
             cell.markUnprocessed();
         }
+        resetSeedIndex();
+    }
+
+    @Override
+    public MiningCell nextDenseCell() {
+        if (seedIndex == null) {
+            seedIndex = buildSeedIndex();
+        }
+        int idx = seedIndex.next();
+        return idx == -1 ? null : getCell(idx);
+    }
+
+    @Override
+    public void markUnprocessed(int idx) {
+        MiningCell cell = getCell(idx);
+        if (cell != null) {
+            cell.markUnprocessed();
+            reinsertSeed(idx, cell.getDensity());
+        }
+    }
+
+    /**
+     * @return A seed index over the cells of this grid.
+     */
+    SeedIndex buildSeedIndex() {
+        int[] cellIndices = new int[gridCells.size()];
+        int[] cellDensities = new int[gridCells.size()];
+        int i = 0;
+        for (RoIGridCell cell : gridCells.values()) {
+            cellIndices[i] = cell.getIndex();
+            cellDensities[i] = cell.getDensity();
+            i++;
+        }
+        return new DensitySeedIndex(cellIndices, cellDensities, i, idx -> gridCells.get(idx).isProcessed());
+    }
+
+    /**
+     * Must be called whenever the density of a cell changes.
+     */
+    void invalidateDensityIndices() {
+        seedIndex = null;
+    }
+
+    /**
+     * Must be called once every cell is marked unprocessed.
+     */
+    void resetSeedIndex() {
+        if (seedIndex != null) {
+            seedIndex.reset();
+        }
+    }
+
+    /**
+     * Must be called when a single cell is marked unprocessed.
+     * @param idx the index of the cell
+     * @param density the density of the cell
+     */
+    void reinsertSeed(int idx, int density) {
+        if (seedIndex != null) {
+            seedIndex.reinsert(idx, density);
+        }
     }
 
     @Override
@@ -114,30 +485,102 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
 
     @Override
     public Collection<MiningCell> getNeighbourCells(MiningCell queryCell) {
-        RoIGridCell start = (RoIGridCell) queryCell;
-        int nDimensions = nDimensions();
-        Collection<MiningCell> neighbourCells = new ArrayList<>(nDimensions * 2);
-        //check up and down in each dimension
-        for (int n = 0; n < nDimensions; n++) {
-            int[] up = new int[nDimensions];
-            up[n] = 1;
-            int[] down = new int[nDimensions];
-            down[n] = -1;
-            RoIGridCell movedUp = moveToCell(start.getIndices(), up);
-            RoIGridCell movedDown = moveToCell(start.getIndices(), down);
-            if (movedUp != null) {
-                neighbourCells.add(movedUp);
+        Collection<MiningCell> neighbourCells = new ArrayList<>(nDimensions() * 2);
+        forEachNeighbour(queryCell.getIndex(), idx -> neighbourCells.add(getCell(idx)));
+        return neighbourCells;
+    }
+
+    @Override
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+
+    @Override
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        int[][] offsets = neighbourhood.getOffsets(strides.length);
+        int[] deltas = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            for (int n = 0; n < strides.length; n++) {
+                deltas[i] += offsets[i][n] * strides[n];
             }
-            if (movedDown != null) {
-                neighbourCells.add(movedDown);
+        }
+        this.neighbourOffsets = offsets;
+        this.neighbourDeltas = deltas;
+        this.neighbourhood = neighbourhood;
+    }
+
+    /**
+     * @return The n-d offset of each neighbour, see {@link Neighbourhood#getOffsets(int)}.
+     */
+    int[][] getNeighbourOffsets() {
+        return neighbourOffsets;
+    }
+
+    /**
+     * @return How far each neighbour moves the 1d index, in the order of {@link #getNeighbourOffsets()}.
+     */
+    int[] getNeighbourDeltas() {
+        return neighbourDeltas;
+    }
+
+    /**
+     * Steps the 1d index by the precomputed offset of each neighbour, so no n-d indices are made.
+     * @param idx index of the query cell
+     * @param visitor given the index of each neighbour cell
+     */
+    @Override
+    public void forEachNeighbour(int idx, IntConsumer visitor) {
+        if (neighbourhood.isFace()) {
+            //check up and down in each dimension
+            for (int n = 0; n < strides.length; n++) {
+                int ndIdx = (idx / strides[n]) % nCellsPerDimension[n];
+                if (ndIdx < nCellsPerDimension[n] - 1 && hasCell(idx + strides[n])) {
+                    visitor.accept(idx + strides[n]);
+                }
+                if (ndIdx > 0 && hasCell(idx - strides[n])) {
+                    visitor.accept(idx - strides[n]);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < neighbourOffsets.length; i++) {
+            int[] offset = neighbourOffsets[i];
+            boolean inside = true;
+            for (int n = 0; n < offset.length && inside; n++) {
+                if (offset[n] != 0) {
+                    int moved = (idx / strides[n]) % nCellsPerDimension[n] + offset[n];
+                    inside = moved >= 0 && moved < nCellsPerDimension[n];
+                }
+            }
+            if (inside && hasCell(idx + neighbourDeltas[i])) {
+                visitor.accept(idx + neighbourDeltas[i]);
             }
         }
-        return neighbourCells;
+    }
+
+    /**
+     * @param idx index of a cell inside the grid
+     * @return Whether the cell exists, without fetching it.
+     */
+    boolean hasCell(int idx) {
+        return gridCells.containsKey(idx);
+    }
+
+    /**
+     * Visit the 1d index of every cell that exists in the grid, in no particular order.
+     * @param visitor called with the index of each cell
+     */
+    void forEachCellIndex(IntConsumer visitor) {
+        for (Integer idx : gridCells.keySet()) {
+            visitor.accept(idx);
+        }
     }
 
     @Override
     public RoI removeSparsity(RoI roi) {
-
+        if (roi.size() == 0) {
+            return null;
+        }
         //remove sparsity by getting the index bounds of the RoI
         //then filling in the all cells in between
         int[][] cellIndices = getNdIndices(roi.getCells());
@@ -146,30 +589,103 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
         //get extreme indices based on bounds
         int[] min = new int[nDimensions];
         int[] max = new int[nDimensions];
-        int[] shape = new int[nDimensions];
         for (int n = 0; n < nDimensions; n++) {
             min[n] = indexBounds[n][0];
             max[n] = indexBounds[n][1];
-            shape[n] = max[n] - min[n] + 1;
         }
 
-        int[] indices = fitIndicesIntoDimensions(shape, min, max);
-
         //make the new roi with all indices filled in
         RoI denseRoI = new RoI(roi.getId());
-        for (int index1d : indices) {
+        //if no cell available here, because this is method
+        //must remove sparsity it may require a cell to be made
+        forEachIndexInBox(min, max, index1d -> denseRoI.add(getOrCreateCell(index1d)));
+        return denseRoI;
+    }
 
-            MiningCell cell = getCell(index1d);
-            //if no cell available here, because this is method
-            //must remove sparsity it may require a cell to be made
-            if (cell == null) {
-                cell = new RoIGridCell(index1d, super.toNdIdx(index1d));
-                //have to add it in the grid (with zero density) for processing reasons
-                this.putCell((RoIGridCell) cell);
+    /**
+     * Visit the 1d index of every cell in a box of cells.
+     * @param min the min n-d indices of the box (inclusive)
+     * @param max the max n-d indices of the box (inclusive)
+     * @param visitor called with the 1d index of each cell in the box
+     */
+    public void forEachIndexInBox(int[] min, int[] max, IntConsumer visitor) {
+        int nDimensions = min.length;
+        for (int n = 0; n < nDimensions; n++) {
+            if (min[n] > max[n]) {
+                return;
             }
-            denseRoI.add(cell);
         }
-        return denseRoI;
+        //walk the box odometer style
+        int[] cur = min.clone();
+        int idx = 0;
+        for (int n = 0; n < nDimensions; n++) {
+            idx += cur[n] * strides[n];
+        }
+        while (true) {
+            visitor.accept(idx);
+            int n = 0;
+            while (n < nDimensions && cur[n] == max[n]) {
+                idx -= (cur[n] - min[n]) * strides[n];
+                cur[n] = min[n];
+                n++;
+            }
+            if (n == nDimensions) {
+                return;
+            }
+            cur[n]++;
+            idx += strides[n];
+        }
+    }
+
+    /**
+     * The total density of a box of cells, found by visiting each cell in the box.
+     * To find the density of many boxes while the grid does not change, see {@link #createSummedAreaTable()}.
+     * @param min the min n-d indices of the box (inclusive)
+     * @param max the max n-d indices of the box (inclusive)
+     * @return The sum of the densities of the cells in the box.
+     */
+    public long getBoxDensity(int[] min, int[] max) {
+        long[] total = new long[1];
+        forEachIndexInBox(min, max, idx -> {
+            MiningCell cell = getCell(idx);
+            if (cell != null) {
+                total[0] += cell.getDensity();
+            }
+        });
+        return total[0];
+    }
+
+    private boolean isDenselyStorable() {
+        long nCells = 1;
+        for (int nCellsInDim : nCellsPerDimension) {
+            nCells *= nCellsInDim;
+            if (nCells > MiningSpaceFactory.MAX_DENSE_CELLS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a summed-area table of the cell densities as they are now, so the density of any box of cells
+     * is found in O(2^d), i.e. for every box assessed by {@link onethreeseven.roi.algorithm.UniformRoIs}.
+     * The grid does not keep the table, it goes stale once a density changes and is up to the caller to drop.
+     * @return The table, or null if this grid has too many cells to make one (one long per cell).
+     */
+    public SummedAreaTable createSummedAreaTable() {
+        return isDenselyStorable() ? buildSummedAreaTable() : null;
+    }
+
+    /**
+     * @return A summed-area table over the densities of the cells in this grid.
+     */
+    SummedAreaTable buildSummedAreaTable() {
+        SummedAreaTable table = new SummedAreaTable(nCellsPerDimension);
+        for (RoIGridCell cell : gridCells.values()) {
+            table.set(cell.getIndex(), cell.getDensity());
+        }
+        table.accumulate();
+        return table;
     }
 
 
@@ -206,11 +722,26 @@ public class RoIGrid extends Grid implements RoIMiningSpace {
      * @return maximum possible cell density
      */
     public int getMaxPossibleDensity() {
-        HashSet<String> possibleEntityIds = new HashSet<>();
+        if (entityBitmaps) {
+            EntityBitmap possibleEntities = new EntityBitmap();
+            for (RoIGridCell cell : gridCells.values()) {
+                possibleEntities.addAll(cell.getEntityBitmap());
+            }
+            return possibleEntities.cardinality();
+        }
+        BitSet possibleEntities = new BitSet(interner.size());
         for (RoIGridCell cell : gridCells.values()) {
-            possibleEntityIds.addAll(cell.getKeys());
+            IntTally tallies = cell.getTallies();
+            if (tallies == null) {
+                continue;
+            }
+            for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    possibleEntities.set(tallies.keyAt(slot));
+                }
+            }
         }
-        return possibleEntityIds.size();
+        return possibleEntities.cardinality();
     }
 
     @Override
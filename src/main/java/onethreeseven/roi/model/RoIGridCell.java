@@ -13,6 +13,11 @@ public class RoIGridCell extends MiningCell implements NdCell {
         this.ndIndices = ndIndices;
     }
 
+    public RoIGridCell(int index, int[] ndIndices, EntityInterner interner) {
+        super(index, interner);
+        this.ndIndices = ndIndices;
+    }
+
     @Override
     public int[] getIndices() {
         return ndIndices;
@@ -0,0 +1,153 @@
+package onethreeseven.roi.model;
+
+/**
+ * A stack of RoI grids over the same space, each with cells twice as wide (in every dimension) as the level below.
+ * Only the finest grid is populated from trajectories, every coarser level is made from the level below it
+ * by merging each block of 2^d child cells into one cell. So trying a coarser cell size costs time proportional
+ * to the number of cells, rather than rasterizing every trajectory again.
+ * The distinct entity density of a merged cell is not the sum of its children (an entity may visit several of them),
+ * so the per-entity tallies of the children are merged instead, which keeps the density exact.
+ * The total density of a merged cell is the sum of the visits to its children.
+ * Levels are made the first time they are asked for and kept after that.
+ * Dimensions with only one cell are never merged, i.e. time in a spatial grid with one time cell.
+ * @author Luke Bermingham
+ */
+public class RoIGridPyramid {
+
+    private final RoIGrid[] levels;
+
+    /**
+     * @param finest the populated grid with the smallest cells, this is level zero
+     * @param nLevels how many levels (including the finest), capped at the level
+     *                where every dimension is down to one cell
+     */
+    public RoIGridPyramid(RoIGrid finest, int nLevels) {
+        if (nLevels < 1) {
+            throw new IllegalArgumentException("A pyramid must have at least one level.");
+        }
+        int maxLevels = 1;
+        for (int nCells : finest.nCellsPerDimension) {
+            int nLevelsInDim = 1;
+            while (nCells > 1) {
+                nCells = (nCells + 1) / 2;
+                nLevelsInDim++;
+            }
+            maxLevels = Math.max(maxLevels, nLevelsInDim);
+        }
+        this.levels = new RoIGrid[Math.min(nLevels, maxLevels)];
+        this.levels[0] = finest;
+    }
+
+    /**
+     * @return How many levels this pyramid has.
+     */
+    public int getNLevels() {
+        return levels.length;
+    }
+
+    /**
+     * @param level the level, zero being the finest grid
+     * @return The grid of the given level, made from the level below if it has not been already.
+     */
+    public synchronized RoIGrid getLevel(int level) {
+        if (level < 0 || level >= levels.length) {
+            throw new IllegalArgumentException("There is no level " + level + ", only 0 to " + (levels.length - 1) + ".");
+        }
+        if (levels[level] == null) {
+            levels[level] = coarsen(getLevel(level - 1));
+        }
+        return levels[level];
+    }
+
+    /**
+     * @param level the level, zero being the finest grid
+     * @return The width of a cell in each dimension at the given level, without making the level.
+     */
+    public double[] getCellSize(int level) {
+        if (level < 0 || level >= levels.length) {
+            throw new IllegalArgumentException("There is no level " + level + ", only 0 to " + (levels.length - 1) + ".");
+        }
+        RoIGrid finest = levels[0];
+        double[] cellSize = new double[finest.nDimensions()];
+        for (int n = 0; n < cellSize.length; n++) {
+            int nCells = finest.nCellsPerDimension[n];
+            double width = (finest.getMax(n) - finest.getMin(n)) / nCells;
+            //halved like coarsen does, a dimension stops widening once it is down to one cell
+            for (int i = 0; i < level && nCells > 1; i++) {
+                nCells = (nCells + 1) / 2;
+                width *= 2;
+            }
+            cellSize[n] = width;
+        }
+        return cellSize;
+    }
+
+    /**
+     * @param cellSize the largest cell width wanted
+     * @return The coarsest level whose cells are no wider than the given size in every dimension with more
+     * than one cell, or the finest level if even its cells are wider.
+     */
+    public int getLevelForCellSize(double cellSize) {
+        RoIGrid finest = levels[0];
+        int best = 0;
+        for (int level = 1; level < levels.length; level++) {
+            double[] levelCellSize = getCellSize(level);
+            for (int n = 0; n < levelCellSize.length; n++) {
+                if (finest.nCellsPerDimension[n] > 1 && levelCellSize[n] > cellSize) {
+                    return best;
+                }
+            }
+            best = level;
+        }
+        return best;
+    }
+
+    /**
+     * Merges each block of 2^d cells of a grid into one cell of a grid with half as many cells in each dimension.
+     * @param fine the grid to merge the cells of
+     * @return The coarser grid, sharing the entity ordinals of the fine grid.
+     */
+    static RoIGrid coarsen(RoIGrid fine) {
+        int nDims = fine.nCellsPerDimension.length;
+        int[] factors = new int[nDims];
+        int[] coarseCellsPerDimension = new int[nDims];
+        double[][] coarseBounds = new double[nDims][];
+        for (int n = 0; n < nDims; n++) {
+            int nCells = fine.nCellsPerDimension[n];
+            factors[n] = nCells > 1 ? 2 : 1;
+            coarseCellsPerDimension[n] = (nCells + factors[n] - 1) / factors[n];
+            //an odd number of cells means the last coarse cell hangs over the edge of the fine grid
+            double min = fine.getMin(n);
+            double fineWidth = (fine.getMax(n) - min) / nCells;
+            coarseBounds[n] = new double[]{min, min + coarseCellsPerDimension[n] * factors[n] * fineWidth};
+        }
+        RoIGrid coarse = MiningSpaceFactory.newRoIGrid(new Grid(coarseCellsPerDimension, coarseBounds),
+                fine.getEntityInterner());
+
+        int[] fineStrides = Grid.strides(fine.nCellsPerDimension);
+        int[] coarseStrides = Grid.strides(coarseCellsPerDimension);
+        fine.forEachCellIndex(idx -> {
+            DensityCell cell = fine.getCell(idx);
+            IntTally tallies = cell.getTallies();
+            if (tallies == null) {
+                if (cell.getTotalDensity() > 0) {
+                    throw new UnsupportedOperationException("Coarser levels need the per-entity tallies of each cell.");
+                }
+                //a cell filled in to remove sparsity, it was never visited
+                return;
+            }
+            int coarseIdx = 0;
+            for (int n = 0; n < nDims; n++) {
+                coarseIdx += ((idx / fineStrides[n]) % fine.nCellsPerDimension[n]) / factors[n] * coarseStrides[n];
+            }
+            DensityCell coarseCell = coarse.getOrCreateCell(coarseIdx);
+            for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    coarseCell.addTally(tallies.keyAt(slot), tallies.valueAt(slot));
+                }
+            }
+        });
+        return coarse;
+    }
+
+}
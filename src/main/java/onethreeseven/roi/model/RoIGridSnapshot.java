@@ -0,0 +1,166 @@
+package onethreeseven.roi.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves an RoI grid to a compact binary file, that can later be opened without reading it all into memory.
+ * The file is laid out so its densities can be memory-mapped straight from disk:
+ * <pre>
+ *     int magic, int version, int flags, int nDimensions
+ *     for each dimension: int nCells, double min, double max
+ *     int maxPossibleDensity, int nEntities
+ *     int[nCells] density of each cell
+ *     int[nCells] total density of each cell
+ *     (only if written with tallies)
+ *     long[nCells + 1] where the tally pairs of each cell start
+ *     int[nPairs * 2] tally pairs of every cell, as {entity, tally, entity, tally...}
+ *     String[nEntities] entity ids, in ordinal order
+ * </pre>
+ * Everything is big-endian. Tallies let the opened grid answer queries about entities (i.e. which passed through an RoI),
+ * but mining only needs the densities, so they can be left out to make the file much smaller.
+ * @see MappedRoIGrid
+ * @author Luke Bermingham
+ */
+public final class RoIGridSnapshot {
+
+    /**
+     * "137R" in ascii.
+     */
+    private static final int MAGIC = 0x31333752;
+    private static final int VERSION = 1;
+    private static final int WITH_TALLIES = 1;
+
+    private RoIGridSnapshot() {
+    }
+
+    /**
+     * Writes the densities of a grid (and optionally the tallies of each entity) to a file.
+     * @param grid the grid to write
+     * @param file the file to write to, overwritten if it exists
+     * @param withTallies whether to write how many times each entity visited each cell
+     * @throws IOException if the file could not be written
+     */
+    public static void write(RoIGrid grid, File file, boolean withTallies) throws IOException {
+        int[] nCellsPerDimension = grid.getNCellsPerDimension();
+        double[][] bounds = grid.getBounds();
+        int nCells = 1;
+        for (int nCellsInDim : nCellsPerDimension) {
+            nCells = Math.multiplyExact(nCells, nCellsInDim);
+        }
+        EntityInterner interner = grid.getEntityInterner();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(withTallies ? WITH_TALLIES : 0);
+            out.writeInt(nCellsPerDimension.length);
+            for (int n = 0; n < nCellsPerDimension.length; n++) {
+                out.writeInt(nCellsPerDimension[n]);
+                out.writeDouble(bounds[n][0]);
+                out.writeDouble(bounds[n][1]);
+            }
+            out.writeInt(grid.getMaxPossibleDensity());
+            out.writeInt(withTallies ? interner.size() : 0);
+
+            //each section is written in its own pass, so the sections are contiguous for mapping
+            for (int idx = 0; idx < nCells; idx++) {
+                out.writeInt(grid.hasCell(idx) ? grid.getCell(idx).getDensity() : 0);
+            }
+            for (int idx = 0; idx < nCells; idx++) {
+                out.writeInt(grid.hasCell(idx) ? grid.getCell(idx).getTotalDensity() : 0);
+            }
+            if (!withTallies) {
+                return;
+            }
+            long nPairs = 0;
+            for (int idx = 0; idx < nCells; idx++) {
+                out.writeLong(nPairs);
+                nPairs += grid.hasCell(idx) ? grid.getCell(idx).getDensity() : 0;
+            }
+            out.writeLong(nPairs);
+            for (int idx = 0; idx < nCells; idx++) {
+                IntTally tallies = grid.hasCell(idx) ? grid.getCell(idx).getTallies() : null;
+                if (tallies == null) {
+                    continue;
+                }
+                for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                    if (tallies.isUsed(slot)) {
+                        out.writeInt(tallies.keyAt(slot));
+                        out.writeInt(tallies.valueAt(slot));
+                    }
+                }
+            }
+            for (int ordinal = 0; ordinal < interner.size(); ordinal++) {
+                out.writeUTF(interner.idOf(ordinal));
+            }
+        }
+    }
+
+    /**
+     * Opens a grid written by {@link #write(RoIGrid, File, boolean)}, by memory-mapping the file.
+     * This takes about the same time however big the grid is, its cells are read from disk as they are needed.
+     * The grid is read-only, and can still be used once the file is closed.
+     * @param file the file to open
+     * @return The read-only grid.
+     * @throws IOException if the file could not be read, or is not a snapshot
+     */
+    public static RoIGrid open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not an RoI grid snapshot.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " is a version " + version + " snapshot, only version " +
+                        VERSION + " can be read.");
+            }
+            boolean withTallies = (in.readInt() & WITH_TALLIES) != 0;
+            int nDimensions = in.readInt();
+            int[] nCellsPerDimension = new int[nDimensions];
+            double[][] bounds = new double[nDimensions][2];
+            long nCells = 1;
+            for (int n = 0; n < nDimensions; n++) {
+                nCellsPerDimension[n] = in.readInt();
+                bounds[n][0] = in.readDouble();
+                bounds[n][1] = in.readDouble();
+                nCells *= nCellsPerDimension[n];
+            }
+            int maxPossibleDensity = in.readInt();
+            int nEntities = in.readInt();
+
+            long densitiesStart = Integer.BYTES * 4L + nDimensions * (Integer.BYTES + Double.BYTES * 2L) + Integer.BYTES * 2L;
+            long totalsStart = densitiesStart + nCells * Integer.BYTES;
+            MappedRegion densities = new MappedRegion(channel, densitiesStart, nCells * Integer.BYTES);
+            MappedRegion totalDensities = new MappedRegion(channel, totalsStart, nCells * Integer.BYTES);
+            MappedRegion tallyOffsets = null;
+            MappedRegion tallyPairs = null;
+            EntityInterner interner = new EntityInterner();
+            if (withTallies) {
+                long offsetsStart = totalsStart + nCells * Integer.BYTES;
+                tallyOffsets = new MappedRegion(channel, offsetsStart, (nCells + 1) * Long.BYTES);
+                long nPairs = tallyOffsets.getLong(nCells);
+                long pairsStart = offsetsStart + (nCells + 1) * Long.BYTES;
+                tallyPairs = new MappedRegion(channel, pairsStart, nPairs * 2 * Integer.BYTES);
+                //the ids are few compared to the cells, so they are read into the interner
+                channel.position(pairsStart + nPairs * 2 * Integer.BYTES);
+                in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                for (int i = 0; i < nEntities; i++) {
+                    interner.intern(in.readUTF());
+                }
+            }
+            return new MappedRoIGrid(new Grid(nCellsPerDimension, bounds), interner, densities, totalDensities,
+                    tallyOffsets, tallyPairs, maxPossibleDensity);
+        }
+    }
+
+}
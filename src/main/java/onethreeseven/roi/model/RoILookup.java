@@ -0,0 +1,83 @@
+package onethreeseven.roi.model;
+
+import java.util.Collection;
+
+/**
+ * Maps the index of a grid cell to the id of the RoI containing it, built once per set of mined RoIs.
+ * Converting a trajectory into RoI visitations is then one lookup per point,
+ * rather than asking every RoI whether it contains the point's cell.
+ * For a dense grid the lookup is a flat array with one slot per cell,
+ * otherwise it is a primitive hash map holding only the cells that are in an RoI.
+ * Note: if RoIs overlap, a cell belongs to the first RoI (in iteration order) that contains it.
+ * @see onethreeseven.roi.algorithm.TrajectoryRoIUtil
+ * @author Luke Bermingham
+ */
+public final class RoILookup {
+
+    /**
+     * Returned when a cell is not in any RoI.
+     */
+    public static final int NO_ROI = Integer.MIN_VALUE;
+
+    //the ids of the rois, cells store the position of their roi in here plus one (so zero means no roi)
+    private final int[] roiIds;
+    private final int[] denseLookup;
+    private final IntTally sparseLookup;
+
+    /**
+     * @param rois the mined rois
+     * @param grid the grid the rois were mined from
+     */
+    public RoILookup(Collection<RoI> rois, Grid grid) {
+        this.roiIds = new int[rois.size()];
+        if (grid instanceof DenseRoIGrid) {
+            int nCells = 1;
+            for (int nCellsInDim : grid.nCellsPerDimension) {
+                nCells *= nCellsInDim;
+            }
+            this.denseLookup = new int[nCells];
+            this.sparseLookup = null;
+        } else {
+            int nRoICells = 0;
+            for (RoI roi : rois) {
+                if (roi != null) {
+                    nRoICells += roi.size();
+                }
+            }
+            this.denseLookup = null;
+            this.sparseLookup = new IntTally(nRoICells);
+        }
+
+        int roiOrdinal = 0;
+        for (RoI roi : rois) {
+            if (roi == null) {
+                continue;
+            }
+            roiIds[roiOrdinal++] = roi.getId();
+            for (Integer cellIdx : roi) {
+                if (denseLookup != null) {
+                    if (denseLookup[cellIdx] == 0) {
+                        denseLookup[cellIdx] = roiOrdinal;
+                    }
+                } else if (!sparseLookup.contains(cellIdx)) {
+                    sparseLookup.add(cellIdx, roiOrdinal);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cellIdx the 1d index of a cell
+     * @return The id of the RoI the cell is in, or {@link #NO_ROI} if it is not in one.
+     */
+    public int getRoIId(int cellIdx) {
+        int roiOrdinal;
+        if (denseLookup != null) {
+            roiOrdinal = (cellIdx >= 0 && cellIdx < denseLookup.length) ? denseLookup[cellIdx] : 0;
+        } else {
+            roiOrdinal = (cellIdx >= 0) ? sparseLookup.get(cellIdx) : 0;
+        }
+        return roiOrdinal == 0 ? NO_ROI : roiIds[roiOrdinal - 1];
+    }
+
+}
@@ -1,6 +1,7 @@
 package onethreeseven.roi.model;
 
 import java.util.Collection;
+import java.util.function.IntConsumer;
 
 /**
  * Some kind of n-d space that trajectories pass through.
@@ -24,13 +25,45 @@ public interface RoIMiningSpace {
 
     /**
      * Neighbours cells in the mining context must have some shared data with the query cell.
-     * In 2d this means a shared edge, in 3d this means a shared face
+     * By default in 2d this means a shared edge, in 3d this means a shared face, see {@link #setNeighbourhood(Neighbourhood)}.
      *
      * @param queryCell the query cell
      * @return the neighbour cells indices
      */
     Collection<MiningCell> getNeighbourCells(MiningCell queryCell);
 
+    /**
+     * Visits the indices of the neighbour cells of a cell (as in {@link #getNeighbourCells(MiningCell)}),
+     * in the same order, without making a collection of them. Spaces should override this so it does
+     * not allocate at all, as it is called for every step of RoI expansion.
+     *
+     * @param idx index of the query cell
+     * @param visitor given the index of each neighbour cell
+     */
+    default void forEachNeighbour(int idx, IntConsumer visitor) {
+        for (MiningCell neighbourCell : getNeighbourCells(getCell(idx))) {
+            visitor.accept(neighbourCell.getIndex());
+        }
+    }
+
+    /**
+     * @return Which cells are the neighbours of a cell.
+     */
+    default Neighbourhood getNeighbourhood() {
+        return Neighbourhood.FACE;
+    }
+
+    /**
+     * Changes which cells are the neighbours of a cell, and so how every algorithm expands RoIs in this space.
+     *
+     * @param neighbourhood the neighbourhood
+     */
+    default void setNeighbourhood(Neighbourhood neighbourhood) {
+        if (!neighbourhood.isFace()) {
+            throw new UnsupportedOperationException("This space only has face neighbours.");
+        }
+    }
+
     /**
      * An RoI is said to be sparse if it missing indices in between its extreme indices.
      *
@@ -45,4 +78,55 @@ public interface RoIMiningSpace {
      */
     MiningCell getCell(int idx);
 
+    /**
+     * Reads the density of a cell without making a view of it, spaces that make cells on request should override this.
+     *
+     * @param idx index into this space
+     * @return The density of the cell, or -1 if there is no cell at that index.
+     */
+    default int getDensity(int idx) {
+        MiningCell cell = getCell(idx);
+        return (cell == null) ? -1 : cell.getDensity();
+    }
+
+    /**
+     * Reads whether a cell is processed without making a view of it, spaces that make cells on request should override this.
+     *
+     * @param idx index into this space
+     * @return True if the cell is processed, false if it is not (or there is no cell at that index).
+     */
+    default boolean isProcessed(int idx) {
+        MiningCell cell = getCell(idx);
+        return cell != null && cell.isProcessed();
+    }
+
+    /**
+     * The next seed for RoI mining, the space may keep its cells ordered by density between calls
+     * so this is cheaper than {@link #getDenseCells()}.
+     * The returned cell is not consumed, it is only skipped once it is marked processed.
+     *
+     * @return The most dense unprocessed cell, or null if all cells are processed.
+     */
+    default MiningCell nextDenseCell() {
+        for (MiningCell cell : getDenseCells()) {
+            if (!cell.isProcessed()) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark a single cell unprocessed, so it can be a seed for {@link #nextDenseCell()} again.
+     * Use this rather than marking the cell itself, so the space can keep its ordering up to date.
+     *
+     * @param idx index into this space
+     */
+    default void markUnprocessed(int idx) {
+        MiningCell cell = getCell(idx);
+        if (cell != null) {
+            cell.markUnprocessed();
+        }
+    }
+
 }
@@ -0,0 +1,43 @@
+package onethreeseven.roi.model;
+
+/**
+ * Finds the next seed cell for RoI mining, from most to least dense (ties broken by ascending index).
+ * Note: an index must be rebuilt if any cell's density changes.
+ * @see RoIGrid#nextDenseCell()
+ * @author Luke Bermingham
+ */
+interface SeedIndex {
+
+    /**
+     * @return The index of the densest unprocessed cell, or -1 if all cells are processed.
+     * The cell is not consumed, it is skipped from then on once it is marked processed.
+     */
+    int next();
+
+    /**
+     * Make a cell that was marked unprocessed again available as a seed.
+     * @param idx the index of the cell
+     * @param density the density of the cell
+     */
+    void reinsert(int idx, int density);
+
+    /**
+     * Start from the densest cell again, i.e. once every cell is unprocessed.
+     */
+    void reset();
+
+    /**
+     * @return A key that sorts cells densest first, then by ascending index.
+     */
+    static long key(int density, int idx) {
+        return ((long) (Integer.MAX_VALUE - density) << 32) | idx;
+    }
+
+    /**
+     * @return The index of the cell a key was made from.
+     */
+    static int idxOf(long key) {
+        return (int) key;
+    }
+
+}
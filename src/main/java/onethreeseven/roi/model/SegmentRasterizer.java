@@ -0,0 +1,255 @@
+package onethreeseven.roi.model;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds the grid cells a line segment passes through, without allocating per segment.
+ * The segment is walked cell by cell using a DDA voxel traversal (Amanatides and Woo),
+ * which works the same in 2d as in n-d, and each visited cell can be dilated by a cell radius.
+ * Cells are written into a buffer owned by the rasterizer, which is reused between calls,
+ * so a rasterizer should not be shared between threads.
+ * Note: the walk is face connected, so a diagonal segment visits a cell in every dimension it steps along,
+ * where {@link Grid#getIndicesBetween(double[], double[], int)} only visits one cell per step of its longest dimension.
+ * @see Grid
+ * @author Luke Bermingham
+ */
+public class SegmentRasterizer {
+
+    private final int nDimensions;
+    private final int[] nCellsPerDimension;
+    private final double[] mins;
+    private final double[] cellSizes;
+    /**
+     * How far the 1d index moves when stepping one cell in each dimension,
+     * or null if the grid has more cells than an int can index.
+     */
+    private final int[] strides;
+
+    //reused for each segment
+    private final int[] startCell;
+    private final int[] endCell;
+    private final int[] curCell;
+    private final int[] steps;
+    private final double[] tMax;
+    private final double[] tDelta;
+    private final int[] boxMin;
+    private final int[] boxMax;
+    private final int[] boxCur;
+
+    private int[] cells = new int[64];
+    private int nCells = 0;
+    /**
+     * The radius the cells of the segment being rasterized are dilated by.
+     */
+    private int radius = 0;
+    private final Consumer<int[]> addAround = cell -> addCellAround(cell, radius);
+
+    public SegmentRasterizer(Grid grid) {
+        this.nDimensions = grid.nDimensions();
+        this.nCellsPerDimension = grid.nCellsPerDimension;
+        this.mins = new double[nDimensions];
+        this.cellSizes = new double[nDimensions];
+        long nGridCells = 1;
+        boolean fitsInt = true;
+        for (int n = 0; n < nDimensions; n++) {
+            mins[n] = grid.getMin(n);
+            //same partitioning as Grid.getIndices
+            cellSizes[n] = ((grid.getMax(n) - grid.getMin(n)) + 1) / nCellsPerDimension[n];
+            if (fitsInt) {
+                nGridCells *= nCellsPerDimension[n];
+                fitsInt = nGridCells <= Integer.MAX_VALUE;
+            }
+        }
+        this.strides = fitsInt ? Grid.strides(nCellsPerDimension) : null;
+        this.startCell = new int[nDimensions];
+        this.endCell = new int[nDimensions];
+        this.curCell = new int[nDimensions];
+        this.steps = new int[nDimensions];
+        this.tMax = new double[nDimensions];
+        this.tDelta = new double[nDimensions];
+        this.boxMin = new int[nDimensions];
+        this.boxMax = new int[nDimensions];
+        this.boxCur = new int[nDimensions];
+    }
+
+    /**
+     * Finds the cells between a starting and ending point (inclusive), whilst considering a cell radius.
+     * Points outside the grid are clamped to the cells on the edge of the grid.
+     *
+     * @param startPt the starting point
+     * @param endPt   the ending point
+     * @param radius  the cell radius, each cell on the segment also includes the cells within this radius
+     * @return the number of cells found, which are the first entries of {@link #getCells()},
+     * in ascending order of 1d index and without duplicates
+     */
+    public int rasterize(double[] startPt, double[] endPt, int radius) {
+        requireStrides();
+        nCells = 0;
+        this.radius = radius;
+        forEachCellOnSegment(startPt, endPt, addAround);
+        return sortAndDistinct();
+    }
+
+    /**
+     * Visit each cell a segment passes through, from the cell of the starting point to the cell of the ending point.
+     * Unlike {@link #rasterize(double[], double[], int)} cells are given by their n-d indices, so this also works
+     * for grids with more cells than an int can index, i.e. {@link SparseRoIGrid}.
+     * Points outside the grid are clamped to the cells on the edge of the grid.
+     *
+     * @param startPt the starting point
+     * @param endPt   the ending point
+     * @param visitor given the n-d indices of each cell in the order they are walked,
+     *                the array is reused for the next cell so must be copied to be kept
+     */
+    public void forEachCellOnSegment(double[] startPt, double[] endPt, Consumer<int[]> visitor) {
+        int nSteps = 0;
+        for (int n = 0; n < nDimensions; n++) {
+            double startN = (startPt[n] - mins[n]) / cellSizes[n];
+            double endN = (endPt[n] - mins[n]) / cellSizes[n];
+            startCell[n] = toCell(startN, n);
+            endCell[n] = toCell(endN, n);
+            curCell[n] = startCell[n];
+            int delta = endCell[n] - startCell[n];
+            steps[n] = Integer.signum(delta);
+            nSteps += Math.abs(delta);
+            if (delta == 0 || endN == startN) {
+                tMax[n] = Double.POSITIVE_INFINITY;
+                tDelta[n] = Double.POSITIVE_INFINITY;
+            } else {
+                //how far along the segment (0 to 1) we must go to cross a cell boundary in this dimension
+                tDelta[n] = Math.abs(1.0 / (endN - startN));
+                double toBoundary = (delta > 0) ? (startCell[n] + 1) - startN : startN - startCell[n];
+                tMax[n] = Math.max(0, toBoundary) * tDelta[n];
+            }
+        }
+        visitor.accept(curCell);
+        for (int i = 0; i < nSteps; i++) {
+            //step into the next cell along the dimension whose boundary is crossed first
+            int stepDim = -1;
+            for (int n = 0; n < nDimensions; n++) {
+                if (curCell[n] != endCell[n] && (stepDim == -1 || tMax[n] < tMax[stepDim])) {
+                    stepDim = n;
+                }
+            }
+            curCell[stepDim] += steps[stepDim];
+            tMax[stepDim] += tDelta[stepDim];
+            visitor.accept(curCell);
+        }
+    }
+
+    /**
+     * Finds the cells around a point (inclusive of the cell the point is in).
+     *
+     * @param pt     the point
+     * @param radius the cell radius
+     * @return the number of cells found, which are the first entries of {@link #getCells()},
+     * in ascending order of 1d index and without duplicates
+     */
+    public int rasterizeAround(double[] pt, int radius) {
+        requireStrides();
+        nCells = 0;
+        addCellAround(getIndices(pt), radius);
+        return sortAndDistinct();
+    }
+
+    /**
+     * @param pt the point
+     * @return The n-d indices of the cell the point is in, clamped to the cells on the edge of the grid.
+     * Note: the array is reused by the next call.
+     */
+    public int[] getIndices(double[] pt) {
+        for (int n = 0; n < nDimensions; n++) {
+            curCell[n] = toCell((pt[n] - mins[n]) / cellSizes[n], n);
+        }
+        return curCell;
+    }
+
+    private void requireStrides() {
+        if (strides == null) {
+            throw new IllegalStateException("The grid has more cells than a 1d int index can address, " +
+                    "use forEachCellOnSegment instead.");
+        }
+    }
+
+    /**
+     * Visit each cell between a starting and ending point (inclusive), whilst considering a cell radius.
+     * @param startPt the starting point
+     * @param endPt   the ending point
+     * @param radius  the cell radius
+     * @param visitor called once with the 1d index of each cell
+     */
+    public void forEachCellBetween(double[] startPt, double[] endPt, int radius, IntConsumer visitor) {
+        int n = rasterize(startPt, endPt, radius);
+        for (int i = 0; i < n; i++) {
+            visitor.accept(cells[i]);
+        }
+    }
+
+    /**
+     * @return The buffer of 1d cell indices found by the last call to rasterize.
+     * Note: the buffer is reused (and may be replaced) by the next call.
+     */
+    public int[] getCells() {
+        return cells;
+    }
+
+    private int toCell(double normD, int n) {
+        int idx = (int) Math.floor(normD);
+        return Math.max(0, Math.min(nCellsPerDimension[n] - 1, idx));
+    }
+
+    private void addCellAround(int[] centre, int radius) {
+        if (radius <= 0) {
+            int idx = 0;
+            for (int n = 0; n < nDimensions; n++) {
+                idx += centre[n] * strides[n];
+            }
+            add(idx);
+            return;
+        }
+        //walk the box of cells around the centre, odometer style
+        for (int n = 0; n < nDimensions; n++) {
+            boxMin[n] = Math.max(0, centre[n] - radius);
+            boxMax[n] = Math.min(nCellsPerDimension[n] - 1, centre[n] + radius);
+            boxCur[n] = boxMin[n];
+        }
+        while (true) {
+            int idx = 0;
+            for (int n = 0; n < nDimensions; n++) {
+                idx += boxCur[n] * strides[n];
+            }
+            add(idx);
+            int n = 0;
+            while (n < nDimensions && boxCur[n] == boxMax[n]) {
+                boxCur[n] = boxMin[n];
+                n++;
+            }
+            if (n == nDimensions) {
+                return;
+            }
+            boxCur[n]++;
+        }
+    }
+
+    private void add(int idx) {
+        if (nCells == cells.length) {
+            cells = Arrays.copyOf(cells, cells.length * 2);
+        }
+        cells[nCells++] = idx;
+    }
+
+    private int sortAndDistinct() {
+        Arrays.sort(cells, 0, nCells);
+        int nDistinct = 0;
+        for (int i = 0; i < nCells; i++) {
+            if (nDistinct == 0 || cells[nDistinct - 1] != cells[i]) {
+                cells[nDistinct++] = cells[i];
+            }
+        }
+        nCells = nDistinct;
+        return nCells;
+    }
+
+}
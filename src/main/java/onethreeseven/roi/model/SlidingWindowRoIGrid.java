@@ -0,0 +1,156 @@
+package onethreeseven.roi.model;
+
+/**
+ * A grid whose cell densities only count the visits made in a recent window of time, i.e. "the last 6 hours".
+ * The window is split into equal time slots kept in a ring, and each slot tallies the visits it added
+ * to each cell by each entity. Once time moves past a slot its visits are taken away again,
+ * so expiring a slot costs time proportional to the cells it touched, not to the size of the grid.
+ * Mining this grid (as any {@link RoIMiningSpace}) only sees the visits in the window.
+ * Note: times are epoch milliseconds, i.e. the timestamps carried by the points of an STTrajectory.
+ * @see MiningSpaceFactory#createSlidingWindowGrid(double[][], int[], int, long, int)
+ * @author Luke Bermingham
+ */
+public class SlidingWindowRoIGrid extends RoIGrid {
+
+    private final long slotMillis;
+
+    /**
+     * The tallies added in each slot, keyed by cell index (high 32 bits) and entity ordinal (low 32 bits).
+     */
+    private final LongIntHashMap[] slots;
+
+    /**
+     * The slot (counted from the epoch) of the latest time seen.
+     */
+    private long newestSlot = 0;
+
+    /**
+     * Where the visits being added now are tallied, and the slot (counted from the epoch) it is.
+     */
+    private LongIntHashMap recordingSlot;
+    private long recordingPeriod = 0;
+
+    /**
+     * @param grid the n-d grid
+     * @param windowMillis how long visits count towards density
+     * @param nSlots how many slots the window is split into, more slots expire visits more smoothly
+     */
+    SlidingWindowRoIGrid(Grid grid, long windowMillis, int nSlots) {
+        super(grid);
+        if (nSlots < 1 || windowMillis < nSlots) {
+            throw new IllegalArgumentException("The window must have at least one slot, each at least 1ms long.");
+        }
+        this.slotMillis = (windowMillis + nSlots - 1) / nSlots;
+        this.slots = new LongIntHashMap[nSlots];
+        for (int i = 0; i < nSlots; i++) {
+            slots[i] = new LongIntHashMap();
+        }
+        this.recordingSlot = slots[0];
+    }
+
+    private LongIntHashMap slotAt(long slot) {
+        return slots[(int) Math.floorMod(slot, (long) slots.length)];
+    }
+
+    /**
+     * Moves the window forward, visits that fall out of it no longer count.
+     * @param timeMillis the latest time
+     */
+    public void advanceTo(long timeMillis) {
+        long slot = Math.floorDiv(timeMillis, slotMillis);
+        if (slot <= newestSlot) {
+            return;
+        }
+        long nExpired = Math.min(slot - newestSlot, slots.length);
+        for (long i = 1; i <= nExpired; i++) {
+            expire(slotAt(newestSlot + i));
+        }
+        newestSlot = slot;
+        recordingSlot = slotAt(slot);
+        recordingPeriod = slot;
+    }
+
+    private void expire(LongIntHashMap slot) {
+        slot.forEachKey(key -> removeCellDensity((int) key, (int) (key >>> 32), slot.get(key)));
+        slot.clear();
+    }
+
+    /**
+     * Adds the next point of an entity, seen at the given time, see {@link #addPoint(String, double[])}.
+     * The window is moved forward if the point is the latest seen.
+     * @param entityId the entity
+     * @param point the point, in the same coordinates as the grid
+     * @param timeMillis when the point was seen
+     * @return False if the point is too old to be in the window (so it was not added).
+     */
+    public boolean addPoint(String entityId, double[] point, long timeMillis) {
+        long slot = Math.floorDiv(timeMillis, slotMillis);
+        if (slot > newestSlot) {
+            advanceTo(timeMillis);
+        } else if (slot <= newestSlot - slots.length) {
+            return false;
+        }
+        //a late point still expires along with the other visits of its time
+        recordingSlot = slotAt(slot);
+        recordingPeriod = slot;
+        try {
+            addPoint(entityId, point);
+        } finally {
+            recordingSlot = slotAt(newestSlot);
+            recordingPeriod = newestSlot;
+        }
+        return true;
+    }
+
+    /**
+     * Increments the density of a cell, the visit is counted in the current time slot.
+     * @param entity the ordinal of the entity that was in this cell
+     * @param index  the index of the cell in question
+     */
+    @Override
+    public void incrementCellDensity(int entity, int index) {
+        super.incrementCellDensity(entity, index);
+        long key = ((long) index << 32) | (entity & 0xFFFFFFFFL);
+        int tally = recordingSlot.get(key);
+        recordingSlot.put(key, tally == -1 ? 1 : tally + 1);
+    }
+
+    @Override
+    long countingPeriod() {
+        return recordingPeriod;
+    }
+
+    /**
+     * @param period a slot counted from the epoch
+     * @return Whether the slot is still in the window.
+     */
+    @Override
+    boolean isCounted(long period) {
+        return period > newestSlot - slots.length;
+    }
+
+    /**
+     * @return The start of the window (inclusive) in epoch milliseconds.
+     */
+    public long getWindowStart() {
+        return (newestSlot - slots.length + 1) * slotMillis;
+    }
+
+    /**
+     * @return The end of the window (exclusive) in epoch milliseconds.
+     */
+    public long getWindowEnd() {
+        return (newestSlot + 1) * slotMillis;
+    }
+
+    @Override
+    RoIGrid emptyCopy() {
+        throw new UnsupportedOperationException("A windowed grid is populated as its points arrive, not in parts.");
+    }
+
+    @Override
+    void merge(RoIGrid partial) {
+        throw new UnsupportedOperationException("A windowed grid is populated as its points arrive, not in parts.");
+    }
+
+}
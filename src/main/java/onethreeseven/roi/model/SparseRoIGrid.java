@@ -0,0 +1,480 @@
+package onethreeseven.roi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * A grid for RoI mining that only stores the cells that are occupied.
+ * Cells are keyed by a long 1d index, so the total number of cells in the grid
+ * may be far larger than an int can address (i.e. spatio-temporal grids with many time bins).
+ * Memory scales with the number of occupied cells, not with the number of cells in the grid.
+ *
+ * Note: because the full 1d index does not fit in an int, the index of each cell in this
+ * space is a compact id assigned in the order cells are occupied. {@link #toNdIdx(int)}
+ * and {@link #to1dIdx(int[])} convert between these ids and the n-d indices of the cells.
+ * @see MiningSpaceFactory
+ * @author Luke Bermingham
+ */
+public class SparseRoIGrid extends Grid implements RoIMiningSpace {
+
+    /**
+     * The stride of each dimension when flattening n-d indices into a long key.
+     */
+    private final long[] strides;
+    /**
+     * Maps the long key of a cell to its compact id.
+     */
+    private final LongIntHashMap cellIds;
+    /**
+     * The occupied cells, in order of their compact id.
+     */
+    private final List<RoIGridCell> cells;
+    /**
+     * Entity ids are interned once per grid, cells only tally the ordinals.
+     */
+    private final EntityInterner interner;
+    /**
+     * Whether cells keep a bitmap of their entities, see {@link #enableEntityBitmaps()}.
+     */
+    private boolean entityBitmaps = false;
+    /**
+     * The cells in order of density, for picking seeds. Made when first needed and dropped once densities change.
+     */
+    private DensitySeedIndex seedIndex = null;
+
+    private Neighbourhood neighbourhood = Neighbourhood.FACE;
+    /**
+     * The n-d offset of each neighbour, and how far each moves the long key.
+     */
+    private int[][] neighbourOffsets;
+    private long[] neighbourDeltas;
+
+    /**
+     * Creates a new sparse roi grid using a specified n-d grid
+     * This constructor is typically called by {@link MiningSpaceFactory}.
+     *
+     * @param grid the n-d grid
+     * @see MiningSpaceFactory
+     */
+    SparseRoIGrid(Grid grid) {
+        super(grid.nCellsPerDimension, grid.getBounds());
+        this.strides = new long[nCellsPerDimension.length];
+        long stride = 1;
+        for (int n = 0; n < nCellsPerDimension.length; n++) {
+            strides[n] = stride;
+            stride = Math.multiplyExact(stride, (long) nCellsPerDimension[n]);
+        }
+        this.cellIds = new LongIntHashMap();
+        this.cells = new ArrayList<>();
+        this.interner = new EntityInterner();
+        setNeighbourhood(Neighbourhood.FACE);
+    }
+
+    /**
+     * @return The interner that maps the entity ids in this grid to the ordinals tallied by its cells.
+     */
+    public EntityInterner getEntityInterner() {
+        return interner;
+    }
+
+    /**
+     * Have every cell keep a compressed bitmap of the entities that visited it, from now on.
+     * @see RoIGrid#enableEntityBitmaps()
+     */
+    public void enableEntityBitmaps() {
+        entityBitmaps = true;
+        for (RoIGridCell cell : cells) {
+            cell.trackEntityBitmap();
+        }
+    }
+
+    /**
+     * @param ndIndices n-d indices of a cell
+     * @return The long key of the cell, or -1 if the indices are outside the grid
+     */
+    long toKey(int[] ndIndices) {
+        long key = 0;
+        for (int n = 0; n < ndIndices.length; n++) {
+            if (ndIndices[n] < 0 || ndIndices[n] >= nCellsPerDimension[n]) {
+                return -1;
+            }
+            key += ndIndices[n] * strides[n];
+        }
+        return key;
+    }
+
+    private int[] fromKey(long key) {
+        int[] ndIndices = new int[strides.length];
+        for (int n = strides.length - 1; n >= 0; n--) {
+            ndIndices[n] = (int) (key / strides[n]);
+            key = key % strides[n];
+        }
+        return ndIndices;
+    }
+
+    /**
+     * Increment the density of the cell with the given key.
+     * If no cell exists, makes one and sets the density to one.
+     * @param entity the ordinal of the entity that was in this cell
+     * @param key the long key of the cell
+     */
+    void incrementCellDensity(int entity, long key) {
+        seedIndex = null;
+        getOrCreateCell(key).incrementTally(entity);
+    }
+
+    /**
+     * Increment the density of the cell at the given n-d indices.
+     * If no cell exists, makes one and sets the density to one.
+     * @param entityId the entity that was in this cell
+     * @param ndIndices the n-d indices of the cell
+     */
+    public void incrementCellDensity(String entityId, int[] ndIndices) {
+        long key = toKey(ndIndices);
+        if (key != -1) {
+            incrementCellDensity(interner.intern(entityId), key);
+        }
+    }
+
+    private RoIGridCell getOrCreateCell(long key) {
+        int id = cellIds.get(key);
+        if (id == -1) {
+            id = cells.size();
+            RoIGridCell cell = new RoIGridCell(id, fromKey(key), interner);
+            if (entityBitmaps) {
+                cell.trackEntityBitmap();
+            }
+            cells.add(cell);
+            cellIds.put(key, id);
+        }
+        return cells.get(id);
+    }
+
+    /**
+     * Collects the keys of all cells between two points (inclusive), whilst considering a cell radius.
+     * The cells are walked the same way as the other grids, so the same trajectories give the same densities.
+     * @param rasterizer walks the cells of the segment, see {@link SegmentRasterizer#forEachCellOnSegment}
+     * @param startPt the starting point
+     * @param endPt the ending point
+     * @param radius the cell radius
+     * @param keys where the keys are collected
+     */
+    void collectKeysBetween(SegmentRasterizer rasterizer, double[] startPt, double[] endPt, int radius,
+                            LongIntHashMap keys) {
+        rasterizer.forEachCellOnSegment(startPt, endPt, centroid -> collectKeysAround(centroid, radius, keys));
+    }
+
+    /**
+     * Collects the keys of all cells within a radius of the central cell (inclusive of the central cell).
+     * @param centroidIndices the n-d indices of the central cell
+     * @param radius the cell radius
+     * @param keys where the keys are collected
+     */
+    void collectKeysAround(int[] centroidIndices, int radius, LongIntHashMap keys) {
+        int nDimensions = centroidIndices.length;
+        int[] min = new int[nDimensions];
+        int[] max = new int[nDimensions];
+        for (int n = 0; n < nDimensions; n++) {
+            min[n] = Math.max(0, centroidIndices[n] - radius);
+            max[n] = Math.min(nCellsPerDimension[n] - 1, centroidIndices[n] + radius);
+            if (min[n] > max[n]) {
+                return;
+            }
+        }
+        forEachKeyInBox(min, max, keys);
+    }
+
+    /**
+     * Walk every cell in the box (inclusive), odometer style, collecting each key.
+     */
+    private void forEachKeyInBox(int[] min, int[] max, LongIntHashMap keys) {
+        int[] cur = min.clone();
+        while (true) {
+            keys.put(toKey(cur), 0);
+            int n = 0;
+            while (n < cur.length && cur[n] == max[n]) {
+                cur[n] = min[n];
+                n++;
+            }
+            if (n == cur.length) {
+                return;
+            }
+            cur[n]++;
+        }
+    }
+
+    @Override
+    public int[] toNdIdx(int idx1D) {
+        return cells.get(idx1D).getIndices();
+    }
+
+    /**
+     * @param ndIdx nd index
+     * @return The compact id of the occupied cell at these indices, or -1 if the cell is not occupied.
+     */
+    @Override
+    public int to1dIdx(int[] ndIdx) {
+        long key = toKey(ndIdx);
+        return key == -1 ? -1 : cellIds.get(key);
+    }
+
+    /**
+     * @param point a n-d point
+     * @return The compact id of the occupied cell the point is in, or -1 if the cell is not occupied.
+     */
+    @Override
+    public int getIndex(double[] point) {
+        return to1dIdx(getIndices(point));
+    }
+
+    /**
+     * The cells are found by their long keys, then given as compact ids.
+     * Note: only occupied cells have a compact id, so cells between the points that are not occupied are left out.
+     * @param startPt the starting point
+     * @param endPt   the ending point
+     * @param radius  the cell radius
+     * @return The compact ids of the occupied cells between the points.
+     */
+    @Override
+    public Set<Integer> getIndicesBetween(double[] startPt, double[] endPt, int radius) {
+        LongIntHashMap keys = new LongIntHashMap();
+        collectKeysBetween(new SegmentRasterizer(this), startPt, endPt, radius, keys);
+        Set<Integer> cellIds = new HashSet<>();
+        keys.forEachKey(key -> {
+            int id = this.cellIds.get(key);
+            if (id != -1) {
+                cellIds.add(id);
+            }
+        });
+        return cellIds;
+    }
+
+    /**
+     * Note: only occupied cells have a compact id, so cells around the centre that are not occupied are left out.
+     * @param centroidIndices The indices of the central cell
+     * @param radius          The radius of cells around the central cell to get
+     * @return The compact ids of the occupied cells around the central indices (including the centre itself).
+     */
+    @Override
+    public int[] getIndicesAround(int[] centroidIndices, int radius) {
+        LongIntHashMap keys = new LongIntHashMap();
+        collectKeysAround(centroidIndices, radius, keys);
+        int[] cellIds = new int[keys.size()];
+        int[] nFound = new int[1];
+        keys.forEachKey(key -> {
+            int id = this.cellIds.get(key);
+            if (id != -1) {
+                cellIds[nFound[0]++] = id;
+            }
+        });
+        return Arrays.copyOf(cellIds, nFound[0]);
+    }
+
+    @Override
+    public RoIGridCell getCell(int[] indices) {
+        int id = to1dIdx(indices);
+        return id == -1 ? null : cells.get(id);
+    }
+
+    @Override
+    public RoIGridCell getCell(int idx) {
+        return (idx < 0 || idx >= cells.size()) ? null : cells.get(idx);
+    }
+
+    /**
+     * @return The number of occupied cells (including empty cells made by {@link #removeSparsity(RoI)}).
+     */
+    public int nOccupiedCells() {
+        return cells.size();
+    }
+
+    @Override
+    public void unprocessAll() {
+        for (RoIGridCell cell : cells) {
+            cell.markUnprocessed();
+        }
+        if (seedIndex != null) {
+            seedIndex.reset();
+        }
+    }
+
+    @Override
+    public MiningCell nextDenseCell() {
+        if (seedIndex == null) {
+            int[] cellIndices = new int[cells.size()];
+            int[] cellDensities = new int[cells.size()];
+            for (int i = 0; i < cellIndices.length; i++) {
+                cellIndices[i] = i;
+                cellDensities[i] = cells.get(i).getDensity();
+            }
+            seedIndex = new DensitySeedIndex(cellIndices, cellDensities, cellIndices.length,
+                    idx -> cells.get(idx).isProcessed());
+        }
+        int idx = seedIndex.next();
+        return idx == -1 ? null : cells.get(idx);
+    }
+
+    @Override
+    public void markUnprocessed(int idx) {
+        RoIGridCell cell = getCell(idx);
+        if (cell != null) {
+            cell.markUnprocessed();
+            if (seedIndex != null) {
+                seedIndex.reinsert(idx, cell.getDensity());
+            }
+        }
+    }
+
+    @Override
+    public Collection<? extends MiningCell> getDenseCells() {
+        return cells.stream()
+                .filter(miningCell -> !miningCell.isProcessed())
+                .sorted((o1, o2) -> o2.getDensity() - o1.getDensity())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<MiningCell> getNeighbourCells(MiningCell queryCell) {
+        Collection<MiningCell> neighbourCells = new ArrayList<>(nDimensions() * 2);
+        forEachNeighbour(queryCell.getIndex(), idx -> neighbourCells.add(cells.get(idx)));
+        return neighbourCells;
+    }
+
+    @Override
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+
+    @Override
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        int[][] offsets = neighbourhood.getOffsets(strides.length);
+        long[] deltas = new long[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            for (int n = 0; n < strides.length; n++) {
+                deltas[i] += offsets[i][n] * strides[n];
+            }
+        }
+        this.neighbourOffsets = offsets;
+        this.neighbourDeltas = deltas;
+        this.neighbourhood = neighbourhood;
+    }
+
+    /**
+     * Steps the long key of the cell by the precomputed offset of each neighbour, so no n-d indices are made.
+     * @param idx the compact id of the query cell
+     * @param visitor given the compact id of each neighbour cell
+     */
+    @Override
+    public void forEachNeighbour(int idx, IntConsumer visitor) {
+        int[] start = cells.get(idx).getIndices();
+        long key = toKey(start);
+        if (neighbourhood.isFace()) {
+            //check up and down in each dimension, in the same order as RoIGrid so ties are broken the same
+            for (int n = 0; n < start.length; n++) {
+                if (start[n] < nCellsPerDimension[n] - 1) {
+                    int up = cellIds.get(key + strides[n]);
+                    if (up != -1) {
+                        visitor.accept(up);
+                    }
+                }
+                if (start[n] > 0) {
+                    int down = cellIds.get(key - strides[n]);
+                    if (down != -1) {
+                        visitor.accept(down);
+                    }
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < neighbourOffsets.length; i++) {
+            int[] offset = neighbourOffsets[i];
+            boolean inside = true;
+            for (int n = 0; n < offset.length && inside; n++) {
+                int moved = start[n] + offset[n];
+                inside = moved >= 0 && moved < nCellsPerDimension[n];
+            }
+            if (inside) {
+                int neighbour = cellIds.get(key + neighbourDeltas[i]);
+                if (neighbour != -1) {
+                    visitor.accept(neighbour);
+                }
+            }
+        }
+    }
+
+    @Override
+    public RoI removeSparsity(RoI roi) {
+        //get the index bounds of the RoI
+        int nDimensions = nDimensions();
+        int[] min = new int[nDimensions];
+        int[] max = new int[nDimensions];
+        boolean first = true;
+        for (Integer cellId : roi.getCells()) {
+            int[] ndIdx = toNdIdx(cellId);
+            for (int n = 0; n < nDimensions; n++) {
+                min[n] = first ? ndIdx[n] : Math.min(min[n], ndIdx[n]);
+                max[n] = first ? ndIdx[n] : Math.max(max[n], ndIdx[n]);
+            }
+            first = false;
+        }
+        if (first) {
+            return null;
+        }
+        //then fill in all the cells in between
+        LongIntHashMap boxKeys = new LongIntHashMap();
+        forEachKeyInBox(min, max, boxKeys);
+        RoI denseRoI = new RoI(roi.getId());
+        //the empty cells have to be made (with zero density) for processing reasons
+        boxKeys.forEachKey(key -> denseRoI.add(getOrCreateCell(key)));
+        return denseRoI;
+    }
+
+    /**
+     * Once the grid has been populated with dense cells we want to know the maximum possible cell density
+     *
+     * @return maximum possible cell density
+     */
+    public int getMaxPossibleDensity() {
+        if (entityBitmaps) {
+            EntityBitmap possibleEntities = new EntityBitmap();
+            for (RoIGridCell cell : cells) {
+                possibleEntities.addAll(cell.getEntityBitmap());
+            }
+            return possibleEntities.cardinality();
+        }
+        BitSet possibleEntities = new BitSet(interner.size());
+        for (RoIGridCell cell : cells) {
+            IntTally tallies = cell.getTallies();
+            if (tallies == null) {
+                continue;
+            }
+            for (int slot = 0; slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    possibleEntities.set(tallies.keyAt(slot));
+                }
+            }
+        }
+        return possibleEntities.cardinality();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("Sparse RoI Grid(");
+        for (int i = 0; i < nCellsPerDimension.length; i++) {
+            str.append(nCellsPerDimension[i]);
+            if (i != nCellsPerDimension.length - 1) {
+                str.append("x");
+            }
+        }
+        str.append(")");
+        return str.toString();
+    }
+
+}
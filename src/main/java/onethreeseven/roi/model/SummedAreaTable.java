@@ -0,0 +1,83 @@
+package onethreeseven.roi.model;
+
+/**
+ * An n-dimensional summed-area table (prefix sums) over the cell densities of a grid.
+ * Once built, the total density of any box of cells is found in O(2^d) by inclusion-exclusion,
+ * rather than by visiting every cell in the box.
+ * Note: this holds one long per cell in the grid, so it is only made for grids that could be stored densely.
+ * @see RoIGrid#createSummedAreaTable()
+ * @author Luke Bermingham
+ */
+public final class SummedAreaTable {
+
+    private final int[] nCellsPerDimension;
+    private final int[] strides;
+    private final long[] sums;
+
+    /**
+     * @param nCellsPerDimension the number of cells in each dimension of the grid
+     */
+    SummedAreaTable(int[] nCellsPerDimension) {
+        int nDimensions = nCellsPerDimension.length;
+        this.nCellsPerDimension = nCellsPerDimension;
+        this.strides = Grid.strides(nCellsPerDimension);
+        int nCells = 1;
+        for (int n = 0; n < nDimensions; n++) {
+            nCells = Math.multiplyExact(nCells, nCellsPerDimension[n]);
+        }
+        this.sums = new long[nCells];
+    }
+
+    /**
+     * Set the density of a cell, must be called before {@link #accumulate()}.
+     * @param idx the 1d index of the cell
+     * @param density the density of the cell
+     */
+    void set(int idx, long density) {
+        sums[idx] = density;
+    }
+
+    /**
+     * Turn the cell densities into prefix sums, one pass per dimension.
+     */
+    void accumulate() {
+        for (int n = 0; n < strides.length; n++) {
+            int stride = strides[n];
+            int nCellsInDim = nCellsPerDimension[n];
+            //cells are visited in ascending order, so the cell one step back is already summed
+            for (int idx = 0; idx < sums.length; idx++) {
+                if ((idx / stride) % nCellsInDim > 0) {
+                    sums[idx] += sums[idx - stride];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param min the min n-d indices of the box (inclusive)
+     * @param max the max n-d indices of the box (inclusive)
+     * @return The total density of the cells in the box.
+     */
+    public long sum(int[] min, int[] max) {
+        int nDimensions = strides.length;
+        long total = 0;
+        //each corner of the box, the low corners are just outside it
+        for (int corner = 0; corner < (1 << nDimensions); corner++) {
+            int idx = 0;
+            boolean outside = false;
+            for (int n = 0; n < nDimensions; n++) {
+                int ndIdx = ((corner >>> n) & 1) == 1 ? min[n] - 1 : max[n];
+                if (ndIdx < 0) {
+                    outside = true;
+                    break;
+                }
+                idx += ndIdx * strides[n];
+            }
+            if (!outside) {
+                total += (Integer.bitCount(corner) % 2 == 0) ? sums[idx] : -sums[idx];
+            }
+        }
+        return total;
+    }
+
+}
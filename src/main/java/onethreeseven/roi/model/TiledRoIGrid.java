@@ -0,0 +1,789 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.common.util.NDUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * An RoI grid too big for the heap, which is split into fixed-size tiles (boxes of cells) that are kept in a
+ * least recently used cache. When the cache is full the coldest tile is spilled to its own file,
+ * and read back in the next time one of its cells is touched, i.e. by a neighbour lookup or {@link #removeSparsity(RoI)}.
+ * Within a tile cells are stored like {@link DenseRoIGrid}, in flat arrays, and cells are handed out as views.
+ * Tiles that were never visited take no memory or disk at all.
+ * Finding the most dense cells (seeding) has to visit every tile, so the cache should hold enough tiles
+ * that RoIs (which are local) are mostly expanded without spilling, see {@link #getCacheMisses()}.
+ * Seeding only keeps the next seed of each tile on the heap, besides the cached tiles.
+ * Note: this grid is not thread-safe, and it should be {@link #close() closed} to delete its spill files.
+ * @see MiningSpaceFactory#createTiledGrid(double[][], int[], int, int[], int, File)
+ * @author Luke Bermingham
+ */
+public class TiledRoIGrid extends RoIGrid implements Closeable {
+
+    private final int nCells;
+    private final int[] strides;
+    private final int[] cellsPerTile;
+    private final int[] nTilesPerDimension;
+    /**
+     * How far a step along each dimension moves the tile index, and the index of a cell within its tile.
+     */
+    private final int[] tileStrides;
+    private final int[] localStrides;
+    private final int nCellsPerTile;
+    private final int nTiles;
+
+    private final int maxCachedTiles;
+    private final File spillDirectory;
+    /**
+     * The tiles on the heap, in access order so the eldest is the least recently used.
+     */
+    private final LinkedHashMap<Integer, Tile> cache;
+    /**
+     * Tiles that have a spill file, all other tiles not in the cache are empty.
+     */
+    private final BitSet spilledTiles = new BitSet();
+    /**
+     * Bumped to unprocess every cell, tiles clear their processed cells when they see a new epoch.
+     * So spilled tiles do not need reading in (and writing back) just to be unprocessed.
+     */
+    private int epoch = 0;
+    private Tile lastTile = null;
+
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private long nSpills = 0;
+
+    /**
+     * Creates a new tiled roi grid.
+     * This constructor is typically called by {@link MiningSpaceFactory}.
+     *
+     * @param grid the n-d grid
+     * @param cellsPerTile how many cells each tile spans in each dimension
+     * @param maxCachedTiles how many tiles can be on the heap at once, each with the seed order of its cells
+     * @param spillDirectory where tiles are spilled, made if it does not exist
+     */
+    TiledRoIGrid(Grid grid, int[] cellsPerTile, int maxCachedTiles, File spillDirectory) {
+        super(grid);
+        int nDimensions = nCellsPerDimension.length;
+        if (cellsPerTile.length != nDimensions) {
+            throw new IllegalArgumentException("Tiles have " + cellsPerTile.length +
+                    " dimensions, but the grid has " + nDimensions + ".");
+        }
+        if (maxCachedTiles < 1) {
+            throw new IllegalArgumentException("At least one tile must be cached.");
+        }
+        this.cellsPerTile = cellsPerTile.clone();
+        this.nTilesPerDimension = new int[nDimensions];
+        this.tileStrides = new int[nDimensions];
+        this.localStrides = new int[nDimensions];
+        this.strides = Grid.strides(nCellsPerDimension);
+        int nCells = 1;
+        int nTiles = 1;
+        int nCellsPerTile = 1;
+        for (int n = 0; n < nDimensions; n++) {
+            if (cellsPerTile[n] < 1) {
+                throw new IllegalArgumentException("Tiles must span at least one cell in each dimension.");
+            }
+            nCells = Math.multiplyExact(nCells, nCellsPerDimension[n]);
+            nTilesPerDimension[n] = (nCellsPerDimension[n] + cellsPerTile[n] - 1) / cellsPerTile[n];
+            tileStrides[n] = nTiles;
+            nTiles = Math.multiplyExact(nTiles, nTilesPerDimension[n]);
+            localStrides[n] = nCellsPerTile;
+            nCellsPerTile = Math.multiplyExact(nCellsPerTile, cellsPerTile[n]);
+        }
+        this.nCells = nCells;
+        this.nTiles = nTiles;
+        this.nCellsPerTile = nCellsPerTile;
+        this.maxCachedTiles = maxCachedTiles;
+        this.spillDirectory = spillDirectory;
+        this.cache = new LinkedHashMap<Integer, Tile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                if (size() <= TiledRoIGrid.this.maxCachedTiles) {
+                    return false;
+                }
+                spill(eldest.getValue());
+                if (lastTile == eldest.getValue()) {
+                    lastTile = null;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return How many times a cell's tile was already on the heap.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return How many times a cell's tile was not on the heap, so was read back from its spill file (or made).
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return How many times a tile was pushed out of the cache.
+     */
+    public long getSpills() {
+        return nSpills;
+    }
+
+    /**
+     * @return How many tiles are on the heap.
+     */
+    public int getCachedTileCount() {
+        return cache.size();
+    }
+
+    /**
+     * @param idx the index of a cell
+     * @return The tile of the cell in the high 32 bits, and the index of the cell within the tile in the low 32 bits.
+     */
+    private long locate(int idx) {
+        int tile = 0;
+        int local = 0;
+        for (int n = 0; n < strides.length; n++) {
+            int ndIdx = (idx / strides[n]) % nCellsPerDimension[n];
+            tile += (ndIdx / cellsPerTile[n]) * tileStrides[n];
+            local += (ndIdx % cellsPerTile[n]) * localStrides[n];
+        }
+        return ((long) tile << 32) | local;
+    }
+
+    /**
+     * @return The index of a cell from its tile and its index within the tile, or -1 if it is past the edge of the grid.
+     */
+    private int indexOf(int tile, int local) {
+        int idx = 0;
+        for (int n = 0; n < strides.length; n++) {
+            int ndIdx = ((tile / tileStrides[n]) % nTilesPerDimension[n]) * cellsPerTile[n] +
+                    (local / localStrides[n]) % cellsPerTile[n];
+            if (ndIdx >= nCellsPerDimension[n]) {
+                return -1;
+            }
+            idx += ndIdx * strides[n];
+        }
+        return idx;
+    }
+
+    /**
+     * @param tileId the tile
+     * @param create whether to make the tile if it is empty
+     * @return The tile, read back in if it was spilled, or null if it is empty and was not made.
+     */
+    private Tile getTile(int tileId, boolean create) {
+        if (lastTile != null && lastTile.id == tileId) {
+            cacheHits++;
+            return lastTile;
+        }
+        Tile tile = cache.get(tileId);
+        if (tile != null) {
+            cacheHits++;
+        } else {
+            if (!spilledTiles.get(tileId) && !create) {
+                return null;
+            }
+            cacheMisses++;
+            tile = spilledTiles.get(tileId) ? readSpilled(tileId) : new Tile(tileId, nCellsPerTile);
+            cache.put(tileId, tile);
+        }
+        if (tile.epoch != epoch) {
+            tile.processed.clear();
+            tile.epoch = epoch;
+        }
+        lastTile = tile;
+        return tile;
+    }
+
+    private File spillFile(int tileId) {
+        return new File(spillDirectory, "tile-" + tileId + ".bin");
+    }
+
+    private void spill(Tile tile) {
+        nSpills++;
+        //a tile read back and not changed since is already on disk
+        if (!tile.dirty && spilledTiles.get(tile.id)) {
+            return;
+        }
+        long size = tile.spillSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Tile " + tile.id + " is too big to spill, use smaller tiles.");
+        }
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IllegalStateException("Could not make the spill directory " + spillDirectory + ".");
+        }
+        //written through a heap buffer, a mapping would hold the file open (so it could not be truncated or deleted)
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        tile.writeTo(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(spillFile(tile.id).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not spill tile " + tile.id + " to " + spillDirectory + ".", e);
+        }
+        tile.dirty = false;
+        spilledTiles.set(tile.id);
+    }
+
+    private Tile readSpilled(int tileId) {
+        try (FileChannel channel = FileChannel.open(spillFile(tileId).toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Spill file of tile " + tileId + " ended early.");
+                }
+            }
+            buffer.flip();
+            return Tile.readFrom(tileId, nCellsPerTile, buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read tile " + tileId + " back from " + spillDirectory + ".", e);
+        }
+    }
+
+    /**
+     * Deletes the spill files and empties the grid.
+     */
+    @Override
+    public void close() {
+        for (int tileId = spilledTiles.nextSetBit(0); tileId >= 0; tileId = spilledTiles.nextSetBit(tileId + 1)) {
+            //not being able to delete a temporary file should not stop the others being deleted
+            spillFile(tileId).delete();
+        }
+        spilledTiles.clear();
+        cache.clear();
+        lastTile = null;
+        invalidateDensityIndices();
+    }
+
+    /**
+     * Reading a cell may read in its tile and spill another, so this grid is mined from one thread at a time.
+     */
+    @Override
+    public boolean supportsConcurrentMining() {
+        return false;
+    }
+
+    @Override
+    RoIGrid emptyCopy() {
+        throw new UnsupportedOperationException("A tiled grid is populated from feeds, not merged from partial grids.");
+    }
+
+    @Override
+    void merge(RoIGrid partial) {
+        throw new UnsupportedOperationException("A tiled grid is populated from feeds, not merged from partial grids.");
+    }
+
+    @Override
+    public void incrementCellDensity(int entity, int index) {
+        if (index < 0 || index >= nCells) {
+            //outside the grid, so there is no storage for it
+            return;
+        }
+        addTally(index, entity, 1);
+    }
+
+    private void addTally(int index, int entity, int tally) {
+        long location = locate(index);
+        Tile tile = getTile((int) (location >>> 32), true);
+        int local = (int) location;
+        densityChanged(index);
+        tile.dirty = true;
+        tile.seedOrder = null;
+        tile.totalDensities[local] += tally;
+        tile.present.set(local);
+        IntTally tallies = tile.entityTallies[local];
+        if (tallies == null) {
+            tallies = new IntTally();
+            tile.entityTallies[local] = tallies;
+        }
+        tallies.add(entity, tally);
+        tile.densities[local] = tallies.size();
+    }
+
+    /**
+     * Something done to each present cell of the grid.
+     */
+    private interface CellVisitor {
+        void visit(int idx, Tile tile, int local);
+    }
+
+    /**
+     * Visits the present cells one tile at a time, so each tile is only read in once.
+     */
+    private void forEachPresentCell(CellVisitor visitor) {
+        for (int tileId = 0; tileId < nTiles; tileId++) {
+            Tile tile = getTile(tileId, false);
+            if (tile == null) {
+                continue;
+            }
+            for (int local = tile.present.nextSetBit(0); local >= 0; local = tile.present.nextSetBit(local + 1)) {
+                visitor.visit(indexOf(tileId, local), tile, local);
+            }
+        }
+    }
+
+    private EntityBitmap makeEntityBitmap(int index) {
+        long location = locate(index);
+        Tile tile = getTile((int) (location >>> 32), true);
+        int local = (int) location;
+        EntityBitmap bitmap = new EntityBitmap();
+        IntTally tallies = tile.entityTallies[local];
+        for (int slot = 0; tallies != null && slot < tallies.nSlots(); slot++) {
+            if (tallies.isUsed(slot)) {
+                bitmap.add(tallies.keyAt(slot));
+            }
+        }
+        return bitmap;
+    }
+
+    @Override
+    boolean hasCell(int idx) {
+        long location = locate(idx);
+        Tile tile = getTile((int) (location >>> 32), false);
+        return tile != null && tile.present.get((int) location);
+    }
+
+    @Override
+    void forEachCellIndex(IntConsumer visitor) {
+        forEachPresentCell((idx, tile, local) -> visitor.accept(idx));
+    }
+
+    @Override
+    public RoIGridCell getCell(int idx) {
+        if (idx < 0 || idx >= nCells || !hasCell(idx)) {
+            return null;
+        }
+        return new TiledCell(idx);
+    }
+
+    @Override
+    public RoIGridCell getCell(int[] indices) {
+        return getCell(NDUtil.flattenIndices(indices, nCellsPerDimension));
+    }
+
+    @Override
+    public RoIGridCell getOrCreateCell(int idx) {
+        long location = locate(idx);
+        Tile tile = getTile((int) (location >>> 32), true);
+        if (!tile.present.get((int) location)) {
+            tile.present.set((int) location);
+            tile.dirty = true;
+            tile.seedOrder = null;
+        }
+        return new TiledCell(idx);
+    }
+
+    @Override
+    public void unprocessAll() {
+        epoch++;
+        //the last tile is checked against the epoch again on its next use
+        lastTile = null;
+        resetSeedIndex();
+    }
+
+    /**
+     * A table needs a long per cell on the heap, which defeats the point of tiling,
+     * so boxes are always found by visiting their cells, see {@link #getBoxDensity(int[], int[])}.
+     * @return Always null.
+     */
+    @Override
+    public SummedAreaTable createSummedAreaTable() {
+        return null;
+    }
+
+    @Override
+    SeedIndex buildSeedIndex() {
+        return new TileSeedIndex();
+    }
+
+    /**
+     * @return The keys of the present cells of a tile sorted densest first, see {@link SeedIndex#key(int, int)}.
+     * The order is kept with the tile until it changes or is spilled.
+     */
+    private long[] seedOrder(Tile tile) {
+        if (tile.seedOrder == null) {
+            long[] order = new long[tile.present.cardinality()];
+            int i = 0;
+            for (int local = tile.present.nextSetBit(0); local >= 0; local = tile.present.nextSetBit(local + 1)) {
+                order[i++] = SeedIndex.key(tile.densities[local], indexOf(tile.id, local));
+            }
+            Arrays.sort(order);
+            tile.seedOrder = order;
+        }
+        return tile.seedOrder;
+    }
+
+    /**
+     * @return The indices of the unprocessed present cells, and their densities.
+     */
+    private int[][] unprocessedCells() {
+        int[][] cells = new int[][]{new int[16], new int[16]};
+        int[] nUnprocessed = new int[1];
+        forEachPresentCell((idx, tile, local) -> {
+            if (tile.processed.get(local)) {
+                return;
+            }
+            if (nUnprocessed[0] == cells[0].length) {
+                cells[0] = Arrays.copyOf(cells[0], nUnprocessed[0] * 2);
+                cells[1] = Arrays.copyOf(cells[1], nUnprocessed[0] * 2);
+            }
+            cells[0][nUnprocessed[0]] = idx;
+            cells[1][nUnprocessed[0]] = tile.densities[local];
+            nUnprocessed[0]++;
+        });
+        cells[0] = Arrays.copyOf(cells[0], nUnprocessed[0]);
+        cells[1] = Arrays.copyOf(cells[1], nUnprocessed[0]);
+        return cells;
+    }
+
+    @Override
+    public boolean isProcessed(int idx) {
+        long location = locate(idx);
+        Tile tile = getTile((int) (location >>> 32), false);
+        return tile != null && tile.processed.get((int) location);
+    }
+
+    @Override
+    public int getDensity(int idx) {
+        if (idx < 0 || idx >= nCells) {
+            return -1;
+        }
+        long location = locate(idx);
+        Tile tile = getTile((int) (location >>> 32), false);
+        return (tile != null && tile.present.get((int) location)) ? tile.densities[(int) location] : -1;
+    }
+
+    /**
+     * Unlike {@link #nextDenseCell()} this holds every unprocessed cell's index on the heap,
+     * so mining should seed from that instead.
+     */
+    @Override
+    public Collection<? extends MiningCell> getDenseCells() {
+        int[][] cells = unprocessedCells();
+        //the cells were gathered tile by tile, so sort them densest first then by index, like the other grids
+        long[] keys = new long[cells[0].length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = SeedIndex.key(cells[1][i], cells[0][i]);
+        }
+        Arrays.sort(keys);
+        final int[] sorted = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = SeedIndex.idxOf(keys[i]);
+        }
+        //only make the cell views as they are requested
+        return new AbstractList<RoIGridCell>() {
+            @Override
+            public RoIGridCell get(int i) {
+                return new TiledCell(sorted[i]);
+            }
+
+            @Override
+            public int size() {
+                return sorted.length;
+            }
+        };
+    }
+
+    @Override
+    public int getMaxPossibleDensity() {
+        //not every interned entity necessarily passed through a cell
+        BitSet possibleEntities = new BitSet(interner.size());
+        forEachPresentCell((idx, tile, local) -> {
+            IntTally tallies = tile.entityTallies[local];
+            for (int slot = 0; tallies != null && slot < tallies.nSlots(); slot++) {
+                if (tallies.isUsed(slot)) {
+                    possibleEntities.set(tallies.keyAt(slot));
+                }
+            }
+        });
+        return possibleEntities.cardinality();
+    }
+
+    /**
+     * The cells of one tile, indexed by their index within the tile.
+     */
+    private static final class Tile {
+        private final int id;
+        private final int[] densities;
+        private final int[] totalDensities;
+        /**
+         * Keyed by entity ordinal, the number of tallied entities is the cell's density.
+         */
+        private final IntTally[] entityTallies;
+        private final BitSet present;
+        private final BitSet processed;
+        private int epoch = 0;
+        /**
+         * The seed order of the tile's cells, made when seeding reaches the tile and not spilled.
+         */
+        private long[] seedOrder = null;
+        /**
+         * Whether the tile changed since it was last spilled.
+         */
+        private boolean dirty = true;
+
+        Tile(int id, int nCells) {
+            this.id = id;
+            this.densities = new int[nCells];
+            this.totalDensities = new int[nCells];
+            this.entityTallies = new IntTally[nCells];
+            this.present = new BitSet(nCells);
+            this.processed = new BitSet(nCells);
+        }
+
+        long spillSize() {
+            long nPairs = 0;
+            for (int density : densities) {
+                nPairs += density;
+            }
+            return Integer.BYTES * 3L + Long.BYTES * ((long) present.toLongArray().length + processed.toLongArray().length) +
+                    Integer.BYTES * 2L * densities.length + Integer.BYTES * 2L * nPairs;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(epoch);
+            putBits(buffer, present);
+            putBits(buffer, processed);
+            buffer.asIntBuffer().put(densities);
+            buffer.position(buffer.position() + densities.length * Integer.BYTES);
+            buffer.asIntBuffer().put(totalDensities);
+            buffer.position(buffer.position() + totalDensities.length * Integer.BYTES);
+            for (int local = present.nextSetBit(0); local >= 0; local = present.nextSetBit(local + 1)) {
+                IntTally tallies = entityTallies[local];
+                //spilled packed as {entity, tally, entity, tally...}, the number of pairs is the cell's density
+                for (int slot = 0; densities[local] > 0 && slot < tallies.nSlots(); slot++) {
+                    if (tallies.isUsed(slot)) {
+                        buffer.putInt(tallies.keyAt(slot));
+                        buffer.putInt(tallies.valueAt(slot));
+                    }
+                }
+            }
+        }
+
+        static Tile readFrom(int id, int nCells, ByteBuffer buffer) {
+            Tile tile = new Tile(id, nCells);
+            tile.epoch = buffer.getInt();
+            tile.present.or(getBits(buffer));
+            tile.processed.or(getBits(buffer));
+            buffer.asIntBuffer().get(tile.densities);
+            buffer.position(buffer.position() + nCells * Integer.BYTES);
+            buffer.asIntBuffer().get(tile.totalDensities);
+            buffer.position(buffer.position() + nCells * Integer.BYTES);
+            for (int local = tile.present.nextSetBit(0); local >= 0; local = tile.present.nextSetBit(local + 1)) {
+                int nPairs = tile.densities[local];
+                if (nPairs > 0) {
+                    IntTally tallies = new IntTally(nPairs);
+                    for (int i = 0; i < nPairs; i++) {
+                        tallies.add(buffer.getInt(), buffer.getInt());
+                    }
+                    tile.entityTallies[local] = tallies;
+                }
+            }
+            tile.dirty = false;
+            return tile;
+        }
+
+        private static void putBits(ByteBuffer buffer, BitSet bits) {
+            long[] words = bits.toLongArray();
+            buffer.putInt(words.length);
+            buffer.asLongBuffer().put(words);
+            buffer.position(buffer.position() + words.length * Long.BYTES);
+        }
+
+        private static BitSet getBits(ByteBuffer buffer) {
+            long[] words = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(words);
+            buffer.position(buffer.position() + words.length * Long.BYTES);
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * Merges the seed orders of the tiles, holding only the next seed of each tile on the heap.
+     * A tile's order is made the first time seeding reaches it, so it is read in once per {@link #reset()}
+     * then again only when one of its cells becomes the densest seed.
+     */
+    private final class TileSeedIndex implements SeedIndex {
+
+        //the key of the densest unprocessed cell of each tile that has one
+        private final LongHeap tileSeeds = new LongHeap();
+        //cells marked unprocessed again, which their tile's seed may have passed already
+        private final LongHeap reinserted = new LongHeap();
+        private boolean started = false;
+
+        @Override
+        public int next() {
+            if (!started) {
+                for (int tileId = 0; tileId < nTiles; tileId++) {
+                    Tile tile = getTile(tileId, false);
+                    if (tile != null) {
+                        pushSeedAfter(tile, -1);
+                    }
+                }
+                started = true;
+            }
+            while (!tileSeeds.isEmpty() && isProcessed(SeedIndex.idxOf(tileSeeds.peek()))) {
+                long key = tileSeeds.pop();
+                pushSeedAfter(getTile((int) (locate(SeedIndex.idxOf(key)) >>> 32), false), key);
+            }
+            while (!reinserted.isEmpty() && isProcessed(SeedIndex.idxOf(reinserted.peek()))) {
+                reinserted.pop();
+            }
+            if (!reinserted.isEmpty() && (tileSeeds.isEmpty() || reinserted.peek() < tileSeeds.peek())) {
+                return SeedIndex.idxOf(reinserted.peek());
+            }
+            return tileSeeds.isEmpty() ? -1 : SeedIndex.idxOf(tileSeeds.peek());
+        }
+
+        /**
+         * Push the densest unprocessed cell of a tile that comes after a key in its seed order, if any.
+         */
+        private void pushSeedAfter(Tile tile, long key) {
+            long[] order = seedOrder(tile);
+            int i = 0;
+            if (key >= 0) {
+                i = Arrays.binarySearch(order, key);
+                i = (i < 0) ? -i - 1 : i + 1;
+            }
+            while (i < order.length && isProcessed(SeedIndex.idxOf(order[i]))) {
+                i++;
+            }
+            if (i < order.length) {
+                tileSeeds.push(order[i]);
+            }
+        }
+
+        @Override
+        public void reinsert(int idx, int density) {
+            if (started) {
+                reinserted.push(SeedIndex.key(density, idx));
+            }
+        }
+
+        @Override
+        public void reset() {
+            tileSeeds.clear();
+            reinserted.clear();
+            started = false;
+        }
+    }
+
+    /**
+     * A view of a single cell in the tiled grid, its tile is found (and read back in if need be) on each use.
+     */
+    private class TiledCell extends RoIGridCell {
+
+        private final int tileId;
+        private final int local;
+        private int[] ndIndices = null;
+
+        TiledCell(int index) {
+            super(index, null, TiledRoIGrid.this.interner);
+            long location = locate(index);
+            this.tileId = (int) (location >>> 32);
+            this.local = (int) location;
+        }
+
+        private Tile tile() {
+            return getTile(tileId, true);
+        }
+
+        @Override
+        public int[] getIndices() {
+            if (ndIndices == null) {
+                ndIndices = toNdIdx(getIndex());
+            }
+            return ndIndices;
+        }
+
+        @Override
+        public void incrementTally(int entity) {
+            incrementCellDensity(entity, getIndex());
+        }
+
+        @Override
+        void addTally(int entity, int tally) {
+            TiledRoIGrid.this.addTally(getIndex(), entity, tally);
+        }
+
+        @Override
+        IntTally getTallies() {
+            Tile tile = tile();
+            return (tile.densities[local] == 0) ? null : tile.entityTallies[local];
+        }
+
+        @Override
+        protected int tallyOf(int entity) {
+            IntTally tallies = tile().entityTallies[local];
+            return (tallies == null) ? 0 : tallies.get(entity);
+        }
+
+        @Override
+        public void clear() {
+            Tile tile = tile();
+            tile.densities[local] = 0;
+            tile.entityTallies[local] = null;
+            tile.dirty = true;
+            tile.seedOrder = null;
+        }
+
+        @Override
+        void trackEntityBitmap() {
+            //bitmaps are made from the tallies when asked for
+        }
+
+        @Override
+        public EntityBitmap getEntityBitmap() {
+            return makeEntityBitmap(getIndex());
+        }
+
+        @Override
+        public int getDensity() {
+            return tile().densities[local];
+        }
+
+        @Override
+        public int getTotalDensity() {
+            return tile().totalDensities[local];
+        }
+
+        @Override
+        public void markProcessed() {
+            Tile tile = tile();
+            tile.processed.set(local);
+            tile.dirty = true;
+        }
+
+        @Override
+        public void markUnprocessed() {
+            Tile tile = tile();
+            tile.processed.clear(local);
+            tile.dirty = true;
+            reinsertSeed(getIndex(), tile.densities[local]);
+        }
+
+        @Override
+        public boolean isProcessed() {
+            return tile().processed.get(local);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package onethreeseven.roi.model;
+
+/**
+ * Adds the density of trajectories to a grid one point at a time.
+ * Each entity keeps a {@link Track} of its last point and the cells around that point,
+ * which are not counted again when the next segment starts from them (unless the grid has since stopped counting
+ * the visit to them, see {@link RoIGrid#isCounted(long)}).
+ * This is how both whole trajectories and live feeds of points populate a grid,
+ * so feeding a trajectory point by point gives the same density as populating it in one go.
+ * Note: this reuses one rasterizer, so it should not be shared between threads.
+ * @see MiningSpaceFactory#createGrid(java.util.Map, int[], int)
+ * @see RoIGrid#addPoint(String, double[])
+ * @author Luke Bermingham
+ */
+final class TrajectoryPopulator {
+
+    private final RoIGrid grid;
+    private final int cellRadius;
+    private final SegmentRasterizer rasterizer;
+    private long[] periods = new long[0];
+
+    /**
+     * @param grid the grid to populate
+     * @param cellRadius each cell a trajectory passes through gets +1 density,
+     *                   and so do its neighbouring cells within this radius
+     */
+    TrajectoryPopulator(RoIGrid grid, int cellRadius) {
+        this.grid = grid;
+        this.cellRadius = cellRadius;
+        this.rasterizer = new SegmentRasterizer(grid);
+    }
+
+    int getCellRadius() {
+        return cellRadius;
+    }
+
+    /**
+     * Adds the segment from the entity's last point to this point (if it has one), then makes this its last point.
+     * @param entity the ordinal of the entity
+     * @param track the track of the entity
+     * @param cur the new point of the entity, it is kept so must not be changed afterwards
+     */
+    void addPoint(int entity, Track track, double[] cur) {
+        if (track.last != null) {
+            long period = grid.countingPeriod();
+            int nCells = rasterizer.rasterize(track.last, cur, cellRadius);
+            int[] gridIndices = rasterizer.getCells();
+            //increment density at the given indices, both they and the discounted indices are sorted
+            int d = 0;
+            for (int i = 0; i < nCells; i++) {
+                int gridIdx = gridIndices[i];
+                while (d < track.nToDiscount && track.toDiscount[d] < gridIdx) {
+                    d++;
+                }
+                if (d < track.nToDiscount && track.toDiscount[d] == gridIdx && grid.isCounted(track.discountPeriods[d])) {
+                    continue;
+                }
+                grid.incrementCellDensity(entity, gridIdx);
+            }
+            //discount the current point resolve being counted again on the next move,
+            //a cell skipped just now keeps the period it was counted in, the rest were counted in this period
+            int nToDiscount = rasterizer.rasterizeAround(cur, cellRadius);
+            int[] cells = rasterizer.getCells();
+            if (periods.length < nToDiscount) {
+                periods = new long[cells.length];
+            }
+            d = 0;
+            for (int i = 0; i < nToDiscount; i++) {
+                while (d < track.nToDiscount && track.toDiscount[d] < cells[i]) {
+                    d++;
+                }
+                boolean skipped = d < track.nToDiscount && track.toDiscount[d] == cells[i] &&
+                        grid.isCounted(track.discountPeriods[d]);
+                periods[i] = skipped ? track.discountPeriods[d] : period;
+            }
+            if (track.toDiscount.length < nToDiscount) {
+                track.toDiscount = new int[cells.length];
+                track.discountPeriods = new long[cells.length];
+            }
+            System.arraycopy(cells, 0, track.toDiscount, 0, nToDiscount);
+            System.arraycopy(periods, 0, track.discountPeriods, 0, nToDiscount);
+            track.nToDiscount = nToDiscount;
+        }
+        //set previous point
+        track.last = cur;
+    }
+
+    /**
+     * Where an entity was last seen.
+     */
+    static final class Track {
+        private double[] last = null;
+        private int[] toDiscount = new int[0];
+        /**
+         * The period each discounted cell was counted in, see {@link RoIGrid#countingPeriod()}.
+         */
+        private long[] discountPeriods = new long[0];
+        private int nToDiscount = 0;
+    }
+
+}
@@ -43,6 +43,7 @@ import java.util.ServiceLoader;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -486,7 +487,7 @@ public class RoIViewController {
             nCellsPerDim[i] = (int) (dimLength / cellSize);
         }
 
-        RoIGrid grid = MiningSpaceFactory.createGrid(selectedTrajs, nCellsPerDim, 0);
+        RoIGrid grid = MiningSpaceFactory.createGrid(selectedTrajs, nCellsPerDim, 0, ForkJoinPool.commonPool());
         BaseTrajSuiteProgram.getInstance().getLayers().add("Grids", grid);
     }
 
@@ -568,14 +569,9 @@ public class RoIViewController {
 
     private SPMParameters setupSPMParams(SPMAlgorithm spmAlgo, Map<String, ITrajectory> selectedTrajs, Collection<RoI> rois, RoIMiningSpace space){
 
-        int[][] seqDb = new int[selectedTrajs.size()][];
-
-        int i = 0;
-        for (Map.Entry<String, ITrajectory> entry : selectedTrajs.entrySet()) {
-            int[] sequence = TrajectoryRoIUtil.fromTrajToRoISequence(entry.getValue(), rois, (RoIGrid) space);
-            seqDb[i] = sequence;
-            i++;
-        }
+        RoILookup roiLookup = new RoILookup(rois, (RoIGrid) space);
+        int[][] seqDb = TrajectoryRoIUtil.fromTrajsToRoISequences(selectedTrajs, roiLookup, (RoIGrid) space,
+                ForkJoinPool.commonPool());
 
         int minSup = minsupSpinner.getValue();
         int otherParam = spmParamSpinner == null ? 1 : spmParamSpinner.getValue();
@@ -0,0 +1,77 @@
+package onethreeseven.roi;
+
+import onethreeseven.roi.model.MiningCell;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Helpers shared by the tests of rois and their grids.
+ * @author Luke Bermingham
+ */
+public final class RoITestUtil {
+
+    private RoITestUtil() {
+    }
+
+    /**
+     * @param rois some rois
+     * @return The cells of each roi, so rois can be compared regardless of their ids or order.
+     */
+    public static Set<Set<Integer>> cellSets(Collection<RoI> rois) {
+        Set<Set<Integer>> cellSets = new HashSet<>();
+        for (RoI roi : rois) {
+            cellSets.add(new HashSet<>(roi.getCells()));
+        }
+        return cellSets;
+    }
+
+    /**
+     * Asserts both grids have the same cells, with the same densities and tallies.
+     * @param expected the grid to compare against
+     * @param actual the grid under test, with the same number of cells
+     * @param ids entities whose tallies are compared as well, even in the cells they did not visit
+     */
+    public static void assertSameDensities(RoIGrid expected, RoIGrid actual, String... ids) {
+        int nCells = 1;
+        for (int nCellsInDim : expected.getNCellsPerDimension()) {
+            nCells *= nCellsInDim;
+        }
+        for (int i = 0; i < nCells; i++) {
+            MiningCell expectedCell = expected.getCell(i);
+            MiningCell actualCell = actual.getCell(i);
+            if (expectedCell == null) {
+                Assert.assertNull(actualCell);
+                continue;
+            }
+            Assert.assertNotNull(actualCell);
+            Assert.assertEquals(expectedCell.getDensity(), actualCell.getDensity());
+            Assert.assertEquals(expectedCell.getTotalDensity(), actualCell.getTotalDensity());
+            Assert.assertEquals(expectedCell.getKeys(), actualCell.getKeys());
+            for (String id : expectedCell.getKeys()) {
+                Assert.assertEquals(expectedCell.getDensityById(id), actualCell.getDensityById(id));
+            }
+            for (String id : ids) {
+                Assert.assertEquals(expectedCell.getDensityById(id), actualCell.getDensityById(id));
+            }
+        }
+    }
+
+    /**
+     * @param prefix the start of the file name
+     * @param suffix the end of the file name, i.e. ".bin"
+     * @return A new empty file that is deleted when the tests finish.
+     */
+    public static File tempFile(String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,45 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Testing the Expansive RoIs algorithm.
+ * @see ExpansiveRoIs
+ * @author Luke Bermingham
+ */
+public class ExpansiveRoIsTest {
+
+    private static void tally(RoIGrid grid, int[] ndIdx, int density) {
+        for (int i = 0; i < density; i++) {
+            grid.incrementCellDensity("entity" + i, grid.to1dIdx(ndIdx));
+        }
+    }
+
+    @Test
+    public void testReplacedNeighbourStaysCandidate() {
+        RoIGrid grid = MiningSpaceFactory.createEmptyGrid(new double[][]{{0, 3}, {0, 3}}, new int[]{3, 3}, 0);
+        int[] seed = new int[]{1, 1};
+        //the seed's neighbour up in x is seen first, then replaced by its denser neighbour down in x
+        int[] replaced = new int[]{2, 1};
+        int[] denser = new int[]{0, 1};
+        tally(grid, seed, 10);
+        tally(grid, replaced, 5);
+        tally(grid, denser, 8);
+
+        //the replaced neighbour used to be dropped, giving just the seed and the denser neighbour,
+        //which left the replaced neighbour on its own (so not an roi at all)
+        Collection<RoI> rois = new ExpansiveRoIs().run(grid, 3);
+        Assert.assertEquals(1, rois.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(grid.to1dIdx(seed), grid.to1dIdx(replaced), grid.to1dIdx(denser))),
+                new HashSet<>(rois.iterator().next().getCells()));
+    }
+
+}
@@ -0,0 +1,60 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.model.MiningCell;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Testing the hybrid RoI algorithm, when it refines each uniform RoI locally.
+ * @see HybridRoIs
+ * @author Luke Bermingham
+ */
+public class HybridRoIsTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    @Test
+    public void testLocalRefinementStaysInsideUniformRoIs() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid roiGrid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+        int minDensity = 3;
+
+        Collection<RoI> uniformRoIs = new UniformRoIs().run(roiGrid, minDensity);
+        Collection<RoI> hybridRoIs = new HybridRoIs(true).run(roiGrid, minDensity);
+        Assert.assertFalse(hybridRoIs.isEmpty());
+
+        for (RoI hybridRoI : hybridRoIs) {
+            //each refined roi is made from the cells of exactly one uniform roi
+            int nContaining = 0;
+            for (RoI uniformRoI : uniformRoIs) {
+                if (uniformRoI.getCells().containsAll(hybridRoI.getCells())) {
+                    nContaining++;
+                }
+            }
+            Assert.assertEquals(1, nContaining);
+            for (Integer idx : hybridRoI) {
+                Assert.assertTrue(roiGrid.getCell(idx).getDensity() >= minDensity);
+            }
+        }
+
+        //the grid is left ready to mine again
+        for (MiningCell cell : roiGrid.getDenseCells()) {
+            Assert.assertFalse(cell.isProcessed());
+        }
+    }
+
+}
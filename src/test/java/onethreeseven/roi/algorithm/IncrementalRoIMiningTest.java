@@ -0,0 +1,90 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Testing that incremental mining only replaces the RoIs around changed cells.
+ * @see IncrementalRoIMining
+ * @author Luke Bermingham
+ */
+public class IncrementalRoIMiningTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    @Test
+    public void testNoChangesNoDiff() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+        IncrementalRoIMining mining = new IncrementalRoIMining(new SlopeRoIs(), grid, 3);
+        Collection<RoI> rois = mining.run();
+        Assert.assertFalse(rois.isEmpty());
+        Assert.assertTrue(mining.update().isEmpty());
+        Assert.assertEquals(RoITestUtil.cellSets(rois), RoITestUtil.cellSets(mining.getRoIs()));
+    }
+
+    @Test
+    public void testUpdateOnlyReplacesAffectedRoIs() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+        IncrementalRoIMining mining = new IncrementalRoIMining(new SlopeRoIs(), grid, 3);
+        Map<Integer, RoI> before = new HashMap<>();
+        for (RoI roi : mining.run()) {
+            before.put(roi.getId(), roi);
+        }
+
+        //more entities pass along the far end of the space
+        for (int i = 0; i < 10; i++) {
+            grid.addPoints("new" + i, Arrays.asList(new double[]{12, 3, 0}, new double[]{12, 0, 0}));
+        }
+        RoIDiff diff = mining.update();
+        Assert.assertFalse(diff.isEmpty());
+
+        Map<Integer, RoI> after = new HashMap<>();
+        for (RoI roi : mining.getRoIs()) {
+            after.put(roi.getId(), roi);
+        }
+        //the diff accounts for every difference between the old and new rois
+        for (RoI removed : diff.getRemoved()) {
+            Assert.assertTrue(before.containsKey(removed.getId()));
+            Assert.assertFalse(after.containsKey(removed.getId()));
+        }
+        for (RoI added : diff.getAdded()) {
+            Assert.assertFalse(before.containsKey(added.getId()));
+            Assert.assertSame(added, after.get(added.getId()));
+        }
+        for (RoI changed : diff.getChanged()) {
+            Assert.assertTrue(before.containsKey(changed.getId()));
+            Assert.assertSame(changed, after.get(changed.getId()));
+        }
+        Assert.assertEquals(before.size() - diff.getRemoved().size() + diff.getAdded().size(), after.size());
+
+        //and the result is what mining from scratch finds
+        Assert.assertEquals(RoITestUtil.cellSets(new SlopeRoIs().run(grid, 3)), RoITestUtil.cellSets(mining.getRoIs()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThresholdCannotBeIncremental() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+        new IncrementalRoIMining(new ThresholdRoIs(), grid, 3);
+    }
+
+}
@@ -0,0 +1,119 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.datastructures.algorithm.TrajectoryDragonCurve;
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.TiledRoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Testing that mining tiles in parallel finds the same rois as mining sequentially (once they are joined up).
+ * @see ParallelRoIMining
+ * @author Luke Bermingham
+ */
+public class ParallelRoIMiningTest {
+
+    private static final double[][] bounds = new double[][]{
+            new double[]{0, 100}, new double[]{0, 100}, new double[]{0, 100}};
+    private static final int[] cellsPerDimension = new int[]{20, 20, 20};
+
+    private static RoIGrid makeGrid() {
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(bounds);
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, 20);
+        return MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+    }
+
+    @Test
+    public void testExpansiveSameAsSequential() {
+        RoIGrid grid = makeGrid();
+        Collection<RoI> expected = new ExpansiveRoIs().run(grid, 2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Collection<RoI> actual = new ParallelRoIMining(ExpansiveRoIs::new, new int[]{3, 4, 5}, pool).run(grid, 2);
+            Assert.assertFalse(actual.isEmpty());
+            Assert.assertEquals(RoITestUtil.cellSets(expected), RoITestUtil.cellSets(actual));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOneTileSameAsSequential() {
+        RoIGrid grid = makeGrid();
+        List<RoI> expected = new ArrayList<>(new ExpansiveRoIs().run(grid, 2));
+        List<RoI> actual = new ArrayList<>(new ParallelRoIMining(
+                ExpansiveRoIs::new, cellsPerDimension, ForkJoinPool.commonPool()).run(grid, 2));
+        Assert.assertEquals(RoITestUtil.cellSets(expected), RoITestUtil.cellSets(actual));
+    }
+
+    @Test
+    public void testJoinedDeterministically() {
+        RoIGrid grid = makeGrid();
+        ForkJoinPool serialPool = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<RoI> serial = new ArrayList<>(new ParallelRoIMining(
+                    ExpansiveRoIs::new, new int[]{4, 4, 4}, serialPool).run(grid, 2));
+            List<RoI> parallel = new ArrayList<>(new ParallelRoIMining(
+                    ExpansiveRoIs::new, new int[]{2, 2, 2}, pool).run(grid, 2));
+            Assert.assertEquals(serial.size(), parallel.size());
+            Set<Integer> seen = new HashSet<>();
+            for (int i = 0; i < serial.size(); i++) {
+                Assert.assertEquals(i, parallel.get(i).getId());
+                Assert.assertEquals(serial.get(i).getCells(), parallel.get(i).getCells());
+                for (Integer idx : parallel.get(i)) {
+                    //each cell is in one roi, and dense enough to be there
+                    Assert.assertTrue(seen.add(idx));
+                    Assert.assertTrue(grid.getCell(idx).getDensity() >= 2);
+                }
+            }
+        } finally {
+            serialPool.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlopeCannotBeTiled() {
+        //joining across borders would merge slope rois that were kept apart on purpose
+        new ParallelRoIMining(SlopeRoIs::new, new int[]{4, 4, 4}, ForkJoinPool.commonPool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDisjointCannotBeTiled() {
+        new ParallelRoIMining(DisjointRoIs::new, new int[]{4, 4, 4}, ForkJoinPool.commonPool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUniformCannotBeTiled() {
+        new ParallelRoIMining(UniformRoIs::new, new int[]{4, 4, 4}, ForkJoinPool.commonPool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTiledGridRejected() throws IOException {
+        //reading a tiled grid swaps its tiles in and out, which is not safe from many threads
+        File spillDirectory = Files.createTempDirectory("tiles").toFile();
+        try (TiledRoIGrid tiled = MiningSpaceFactory.createTiledGrid(
+                bounds, cellsPerDimension, 0, new int[]{5, 5, 5}, 2, spillDirectory)) {
+            new ParallelRoIMining(ExpansiveRoIs::new, new int[]{4, 4, 4}, ForkJoinPool.commonPool()).run(tiled, 2);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package onethreeseven.roi.algorithm;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.RoILookup;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Testing the batch conversion of trajectories to RoI sequences against converting them one at a time.
+ * @see TrajectoryRoIUtil
+ * @author Luke Bermingham
+ */
+public class TrajectoryRoIUtilTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    @Test
+    public void testBatchMatchesEachTrajectory() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid roiGrid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+        Collection<RoI> rois = new SlopeRoIs().run(roiGrid, 3);
+        RoILookup lookup = new RoILookup(rois, roiGrid);
+
+        int[][] sequential = TrajectoryRoIUtil.fromTrajsToRoISequences(trajectories, lookup, roiGrid);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        int[][] parallel;
+        try {
+            parallel = TrajectoryRoIUtil.fromTrajsToRoISequences(trajectories, lookup, roiGrid, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(trajectories.size(), parallel.length);
+        int i = 0;
+        for (Trajectory trajectory : trajectories.values()) {
+            int[] expected = TrajectoryRoIUtil.fromTrajToRoISequence(trajectory, rois, roiGrid);
+            Assert.assertArrayEquals(expected, sequential[i]);
+            Assert.assertArrayEquals(expected, parallel[i]);
+            i++;
+        }
+    }
+
+}
@@ -2,14 +2,19 @@ package onethreeseven.roi.algorithm;
 
 import onethreeseven.datastructures.model.Trajectory;
 import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.model.MiningCell;
 import onethreeseven.roi.model.MiningSpaceFactory;
 import onethreeseven.roi.model.RoI;
 import onethreeseven.roi.model.RoIGrid;
+import onethreeseven.roi.model.RoIMiningSpace;
 import org.junit.Assert;
 import org.junit.Test;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Testing the uniform RoIs algorithm.
@@ -48,4 +53,57 @@ public class UniformRoIsTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBoxExpansionMatchesGeneralExpansion() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(new double[][]{
+                new double[]{0, 0, 0},
+                new double[]{3, 0, 0},
+                new double[]{6, 0, 0},
+                new double[]{6, 3, 0},
+                new double[]{12, 3, 0}
+        }, 10);
+        RoIGrid roiGrid = MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 1);
+
+        //hiding the grid behind the interface makes uniform expand each roi by filling in its cells
+        RoIMiningSpace hiddenGrid = new RoIMiningSpace() {
+            @Override
+            public void unprocessAll() {
+                roiGrid.unprocessAll();
+            }
+
+            @Override
+            public Collection<? extends MiningCell> getDenseCells() {
+                return roiGrid.getDenseCells();
+            }
+
+            @Override
+            public Collection<MiningCell> getNeighbourCells(MiningCell queryCell) {
+                return roiGrid.getNeighbourCells(queryCell);
+            }
+
+            @Override
+            public RoI removeSparsity(RoI roi) {
+                return roiGrid.removeSparsity(roi);
+            }
+
+            @Override
+            public MiningCell getCell(int idx) {
+                return roiGrid.getCell(idx);
+            }
+        };
+
+        for (int minDensity = 1; minDensity <= 6; minDensity++) {
+            List<Set<Integer>> expected = new ArrayList<>();
+            for (RoI roi : new UniformRoIs().run(hiddenGrid, minDensity)) {
+                expected.add(roi.getCells());
+            }
+            List<Set<Integer>> actual = new ArrayList<>();
+            for (RoI roi : new UniformRoIs().run(roiGrid, minDensity)) {
+                actual.add(roi.getCells());
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import onethreeseven.roi.algorithm.UniformRoIs;
+import onethreeseven.roi.model.BoxRoI;
+import onethreeseven.roi.model.Grid;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoI;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing that exported rois read back the same as they were written.
+ * @see RoIExport
+ * @author Luke Bermingham
+ */
+public class RoIExportTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static RoIGrid makeGrid() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        return MiningSpaceFactory.createGrid(trajectories, new int[]{13, 4, 1}, 0);
+    }
+
+    private static void assertSameRoIs(List<RoI> expected, ExportedRoIs actual, RoIGrid grid) {
+        Assert.assertEquals(expected.size(), actual.getRoIs().size());
+        for (int i = 0; i < expected.size(); i++) {
+            RoI roi = expected.get(i);
+            RoI read = actual.getRoIs().get(i);
+            Assert.assertEquals(roi.getId(), read.getId());
+            Assert.assertEquals(roi.getDensity(), read.getDensity(), 1e-9);
+            Assert.assertEquals(new HashSet<>(roi.getCells()), new HashSet<>(read.getCells()));
+            Assert.assertEquals(roi instanceof BoxRoI, read instanceof BoxRoI);
+            double[] centroid = grid.getCentroid(roi);
+            for (int n = 0; n < centroid.length; n++) {
+                Assert.assertEquals(centroid[n], actual.getCentroid(i)[n], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testCellRoIsRoundTrip() throws IOException {
+        RoIGrid grid = makeGrid();
+        List<RoI> rois = new ArrayList<>(new SlopeRoIs().run(grid, 3));
+        Assert.assertFalse(rois.isEmpty());
+        File file = RoITestUtil.tempFile("rois", ".bin");
+        RoIExport.write(rois, grid, file);
+        assertSameRoIs(rois, RoIExport.read(file, grid), grid);
+    }
+
+    @Test
+    public void testBoxRoIsRoundTrip() throws IOException {
+        RoIGrid grid = makeGrid();
+        List<RoI> rois = new ArrayList<>(new UniformRoIs().run(grid, 3));
+        Assert.assertFalse(rois.isEmpty());
+        File file = RoITestUtil.tempFile("rois", ".bin");
+        RoIExport.write(rois, grid, file);
+        assertSameRoIs(rois, RoIExport.read(file, grid), grid);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDifferentGridRejected() throws IOException {
+        RoIGrid grid = makeGrid();
+        File file = RoITestUtil.tempFile("rois", ".bin");
+        RoIExport.write(new SlopeRoIs().run(grid, 3), grid, file);
+        RoIExport.read(file, new Grid(new int[]{4, 4, 1}, grid.getBounds()));
+    }
+
+}
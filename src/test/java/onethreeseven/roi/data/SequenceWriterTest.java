@@ -0,0 +1,67 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.roi.RoITestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Testing that visitation sequences are read back the same as they were written.
+ * @see SequenceWriter
+ * @see SequenceReader
+ * @author Luke Bermingham
+ */
+public class SequenceWriterTest {
+
+    @Test
+    public void testRoundTripAcrossBlocks() throws IOException {
+        Random random = new Random(137);
+        int[][] sequences = new int[SequenceWriter.SEQUENCES_PER_BLOCK * 2 + 7][];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = new int[random.nextInt(20)];
+            for (int j = 0; j < sequences[i].length; j++) {
+                sequences[i][j] = random.nextInt(1000);
+            }
+        }
+        File file = RoITestUtil.tempFile("sequences", ".bin");
+        SequenceWriter.writeAll(sequences, file);
+        Assert.assertArrayEquals(sequences, SequenceReader.readAll(file));
+    }
+
+    @Test
+    public void testExtremeIds() throws IOException {
+        int[] sequence = new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SequenceWriter writer = new SequenceWriter(bytes)) {
+            writer.write(sequence);
+            writer.write(new int[0]);
+        }
+        try (SequenceReader reader = new SequenceReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Assert.assertArrayEquals(sequence, reader.next());
+            Assert.assertArrayEquals(new int[0], reader.next());
+            Assert.assertNull(reader.next());
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testSmallIdsTakeOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SequenceWriter writer = new SequenceWriter(bytes)) {
+            writer.write(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        }
+        //header, block count, length, block size, ten one byte ids, end of blocks
+        Assert.assertEquals(8 + 1 + 1 + 1 + 10 + 1, bytes.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotSequences() throws IOException {
+        new SequenceReader(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+}
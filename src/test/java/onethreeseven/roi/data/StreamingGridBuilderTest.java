@@ -0,0 +1,103 @@
+package onethreeseven.roi.data;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.model.MiningSpaceFactory;
+import onethreeseven.roi.model.RoIGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing that streaming trajectory files into a grid gives the same grid as loading the trajectories.
+ * @see StreamingGridBuilder
+ * @author Luke Bermingham
+ */
+public class StreamingGridBuilderTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    /**
+     * Writes the first half of each trajectory to one file and the rest to another.
+     */
+    private static List<File> writeHalves(Map<String, Trajectory> trajectories) throws IOException {
+        File first = RoITestUtil.tempFile("trajectories", ".csv");
+        File second = RoITestUtil.tempFile("trajectories", ".csv");
+        try (PrintWriter firstOut = new PrintWriter(first); PrintWriter secondOut = new PrintWriter(second)) {
+            firstOut.println("id,x,y,z");
+            secondOut.println("id,x,y,z");
+            for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+                int i = 0;
+                Iterator<double[]> iter = entry.getValue().coordinateIter();
+                while (iter.hasNext()) {
+                    double[] pt = iter.next();
+                    PrintWriter out = (i++ < entry.getValue().size() / 2) ? firstOut : secondOut;
+                    out.println(entry.getKey() + "," + pt[0] + "," + pt[1] + "," + pt[2]);
+                }
+            }
+        }
+        return Arrays.asList(first, second);
+    }
+
+    @Test
+    public void testSameGridAsLoadingTrajectories() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        StreamingGridBuilder builder = new StreamingGridBuilder(0, new int[]{1, 2, 3}, ',', 1);
+        builder.setBufferSize(16);
+        RoIGrid streamed = builder.build(writeHalves(trajectories), cellsPerDimension, 0);
+
+        for (int n = 0; n < expected.nDimensions(); n++) {
+            Assert.assertArrayEquals(expected.getBounds()[n], streamed.getBounds()[n], 1e-9);
+        }
+        RoITestUtil.assertSameDensities(expected, streamed);
+    }
+
+    @Test
+    public void testGivenBoundsReadOnce() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        List<File> files = writeHalves(trajectories);
+        StreamingGridBuilder builder = new StreamingGridBuilder(0, new int[]{1, 2, 3}, ',', 1);
+        double[][] bounds = builder.scanBounds(files);
+        RoIGrid streamed = builder.build(files, bounds, cellsPerDimension, 0);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        Assert.assertEquals(expected.getMaxPossibleDensity(), streamed.getMaxPossibleDensity());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedLine() throws IOException {
+        File file = RoITestUtil.tempFile("trajectories", ".csv");
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("a,1,2,3");
+            out.println("a,1,two,3");
+        }
+        new StreamingGridBuilder(0, new int[]{1, 2, 3}, ',', 0).scanBounds(Collections.singletonList(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooFewFields() throws IOException {
+        File file = RoITestUtil.tempFile("trajectories", ".csv");
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("a,1,2");
+        }
+        new StreamingGridBuilder(0, new int[]{1, 2, 3}, ',', 0).scanBounds(Collections.singletonList(file));
+    }
+
+}
@@ -0,0 +1,143 @@
+package onethreeseven.roi.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Testing the cells of a box RoI against enumerating the box by hand.
+ * @see BoxRoI
+ * @author Luke Bermingham
+ */
+public class BoxRoITest {
+
+    private static final Grid grid = new Grid(new int[]{5, 4, 3},
+            new double[][]{
+                    new double[]{0, 5},
+                    new double[]{0, 4},
+                    new double[]{0, 3},
+            });
+
+    private static Set<Integer> enumerate(int[] min, int[] max) {
+        Set<Integer> cells = new HashSet<>();
+        for (int x = min[0]; x <= max[0]; x++) {
+            for (int y = min[1]; y <= max[1]; y++) {
+                for (int z = min[2]; z <= max[2]; z++) {
+                    cells.add(grid.to1dIdx(new int[]{x, y, z}));
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static void assertSameCells(BoxRoI roi, Set<Integer> expected) {
+        Set<Integer> iterated = new HashSet<>();
+        for (Integer idx : roi) {
+            Assert.assertTrue("Cell iterated twice: " + idx, iterated.add(idx));
+        }
+        Assert.assertEquals(expected, iterated);
+        Assert.assertEquals(expected.size(), roi.size());
+        for (int idx = 0; idx < 5 * 4 * 3; idx++) {
+            Assert.assertEquals(expected.contains(idx), roi.contains(idx));
+        }
+    }
+
+    @Test
+    public void testCellsMatchEnumeratedBox() {
+        int[] min = new int[]{1, 0, 1};
+        int[] max = new int[]{3, 2, 2};
+        BoxRoI roi = new BoxRoI(1, min, max, 10, grid);
+        assertSameCells(roi, enumerate(min, max));
+    }
+
+    @Test
+    public void testSingleCell() {
+        int[] idx = new int[]{4, 3, 2};
+        BoxRoI roi = new BoxRoI(1, idx, idx, 1, grid);
+        assertSameCells(roi, enumerate(idx, idx));
+    }
+
+    @Test
+    public void testExpandTo() {
+        BoxRoI roi = new BoxRoI(1, new int[]{2, 2, 1}, new int[]{2, 2, 1}, 1, grid);
+        int[] min = new int[]{0, 1, 0};
+        int[] max = new int[]{4, 3, 1};
+        roi.expandTo(min, max, 15);
+        assertSameCells(roi, enumerate(min, max));
+        Assert.assertEquals(15, roi.getDensity(), 1e-10);
+        Assert.assertArrayEquals(min, roi.getMin());
+        Assert.assertArrayEquals(max, roi.getMax());
+    }
+
+    @Test
+    public void testAddCellGrowsToBoundingBox() {
+        RoIGrid roIGrid = MiningSpaceFactory.newRoIGrid(grid);
+        RoIGridCell cell = roIGrid.getOrCreateCell(grid.to1dIdx(new int[]{3, 0, 2}));
+        cell.incrementTally(0);
+        cell.incrementTally(1);
+        BoxRoI roi = new BoxRoI(1, new int[]{1, 1, 0}, new int[]{2, 2, 0}, 4, grid);
+        roi.add(cell);
+        assertSameCells(roi, enumerate(new int[]{1, 0, 0}, new int[]{3, 2, 2}));
+        Assert.assertEquals(6, roi.getDensity(), 1e-10);
+        //a cell already in the box adds nothing
+        roi.add(cell);
+        Assert.assertEquals(6, roi.getDensity(), 1e-10);
+    }
+
+    @Test
+    public void testAddRoIGrowsToBoundingBox() {
+        BoxRoI roi = new BoxRoI(1, new int[]{1, 1, 0}, new int[]{1, 1, 0}, 1, grid);
+        roi.add(new BoxRoI(2, new int[]{2, 2, 1}, new int[]{3, 3, 1}, 5, grid));
+        assertSameCells(roi, enumerate(new int[]{1, 1, 0}, new int[]{3, 3, 1}));
+
+        roi.add(new RoI(3, new int[]{grid.to1dIdx(new int[]{0, 0, 2})}, 9));
+        assertSameCells(roi, enumerate(new int[]{0, 0, 0}, new int[]{3, 3, 2}));
+        Assert.assertEquals(9, roi.getDensity(), 1e-10);
+    }
+
+    @Test
+    public void testClear() {
+        BoxRoI roi = new BoxRoI(1, new int[]{1, 0, 1}, new int[]{3, 2, 2}, 10, grid);
+        roi.clear();
+        assertSameCells(roi, new HashSet<>());
+        Assert.assertEquals(0, roi.getDensity(), 1e-10);
+        Assert.assertNull(roi.getMin());
+
+        //an emptied box starts again from the next cell added
+        RoIGrid roIGrid = MiningSpaceFactory.newRoIGrid(grid);
+        int[] idx = new int[]{4, 3, 2};
+        RoIGridCell cell = roIGrid.getOrCreateCell(grid.to1dIdx(idx));
+        cell.incrementTally(0);
+        roi.add(cell);
+        assertSameCells(roi, enumerate(idx, idx));
+        Assert.assertEquals(1, roi.getDensity(), 1e-10);
+    }
+
+    @Test
+    public void testRectangularRoIOfBox() {
+        RoIGrid roIGrid = MiningSpaceFactory.newRoIGrid(grid);
+        int[] min = new int[]{1, 0, 1};
+        int[] max = new int[]{3, 2, 2};
+        Set<Integer> expected = enumerate(min, max);
+        RectangularRoI rectangularRoI = new RectangularRoI(roIGrid, new BoxRoI(1, min, max, 10, grid), null);
+        //the box cells are not in the map, so every map method agrees it is empty
+        Assert.assertTrue(rectangularRoI.isEmpty());
+        for (int idx = 0; idx < 5 * 4 * 3; idx++) {
+            Assert.assertFalse(rectangularRoI.containsKey(idx));
+            Assert.assertEquals(expected.contains(idx), rectangularRoI.contains(idx));
+        }
+
+        RoI roi = new RoI(2);
+        for (int idx : expected) {
+            roi.add(roIGrid.getOrCreateCell(idx));
+        }
+        RectangularRoI cellsRoI = new RectangularRoI(roIGrid, roi, null);
+        Assert.assertEquals(expected, cellsRoI.keySet());
+        for (int idx = 0; idx < 5 * 4 * 3; idx++) {
+            Assert.assertEquals(expected.contains(idx), cellsRoI.contains(idx));
+        }
+    }
+
+}
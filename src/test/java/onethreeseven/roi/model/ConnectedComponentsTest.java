@@ -0,0 +1,67 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.algorithm.TrajectoryDragonCurve;
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.algorithm.ExpansiveRoIs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Testing that labelling components finds the same rois as expanding them.
+ * @see ConnectedComponents
+ * @author Luke Bermingham
+ */
+public class ConnectedComponentsTest {
+
+    private static DenseRoIGrid makeGrid() {
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(new double[][]{new double[]{0, 100}, new double[]{0, 100}, new double[]{0, 100}});
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, 20);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{20, 15, 10}, 0);
+        Assert.assertTrue(grid instanceof DenseRoIGrid);
+        return (DenseRoIGrid) grid;
+    }
+
+    private static Map<Integer, Set<Integer>> cellsById(Collection<RoI> rois) {
+        Map<Integer, Set<Integer>> cellsById = new HashMap<>();
+        for (RoI roi : rois) {
+            cellsById.put(roi.getId(), roi.getCells());
+        }
+        return cellsById;
+    }
+
+    @Test
+    public void testSameRoIsAsExpansive() {
+        DenseRoIGrid grid = makeGrid();
+        for (int minDensity = 1; minDensity <= 3; minDensity++) {
+            Collection<RoI> expected = new ExpansiveRoIs().run(grid, minDensity);
+            Collection<RoI> actual = new ExpansiveRoIs(true).run(grid, minDensity);
+            Assert.assertFalse(actual.isEmpty());
+            Assert.assertEquals(cellsById(expected), cellsById(actual));
+        }
+    }
+
+    @Test
+    public void testComponentsCoverDenseCells() {
+        DenseRoIGrid grid = makeGrid();
+        ConnectedComponents components = new ConnectedComponents(grid, 2);
+        int[] sizes = new int[components.nComponents()];
+        for (int idx = 0; idx < grid.nCells(); idx++) {
+            int component = components.getComponent(idx);
+            Assert.assertEquals(grid.densityAt(idx) >= 2, component != ConnectedComponents.NO_COMPONENT);
+            if (component != ConnectedComponents.NO_COMPONENT) {
+                sizes[component]++;
+            }
+        }
+        for (int component = 0; component < sizes.length; component++) {
+            Assert.assertEquals(sizes[component], components.getComponentSize(component));
+        }
+    }
+
+}
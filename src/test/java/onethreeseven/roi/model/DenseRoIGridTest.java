@@ -0,0 +1,165 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing the densely stored grid against the grid that stores one object per cell.
+ * @see DenseRoIGrid
+ * @author Luke Bermingham
+ */
+public class DenseRoIGridTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    @Test
+    public void testFactoryPicksDenseStorage() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        Assert.assertTrue(grid instanceof DenseRoIGrid);
+    }
+
+    @Test
+    public void testSameDensitiesAsSparseStorage() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        double[][] bounds = new Grid(cellsPerDimension, new double[][]{
+                new double[]{0, 12},
+                new double[]{0, 3},
+                new double[]{0, 0}}).getBounds();
+
+        RoIGrid sparseGrid = new RoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(sparseGrid, trajectories, 1);
+        RoIGrid denseGrid = new DenseRoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(denseGrid, trajectories, 1);
+
+        RoITestUtil.assertSameDensities(sparseGrid, denseGrid, trajectories.keySet().toArray(new String[0]));
+        Assert.assertEquals(sparseGrid.getMaxPossibleDensity(), denseGrid.getMaxPossibleDensity());
+    }
+
+    @Test
+    public void testSameDensitiesAfterRemoval() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        double[][] bounds = new Grid(cellsPerDimension, new double[][]{
+                new double[]{0, 12},
+                new double[]{0, 3},
+                new double[]{0, 0}}).getBounds();
+
+        RoIGrid sparseGrid = new RoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(sparseGrid, trajectories, 1);
+        RoIGrid denseGrid = new DenseRoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(denseGrid, trajectories, 1);
+
+        //take one visit from every entity, and all visits from every third entity
+        int nCells = cellsPerDimension[0] * cellsPerDimension[1] * cellsPerDimension[2];
+        for (int i = 0; i < nCells; i++) {
+            for (int entity = 0; entity < trajectories.size(); entity++) {
+                int tally = (entity % 3 == 0) ? Integer.MAX_VALUE : 1;
+                sparseGrid.removeCellDensity(entity, i, tally);
+                denseGrid.removeCellDensity(entity, i, tally);
+            }
+        }
+        RoITestUtil.assertSameDensities(sparseGrid, denseGrid, trajectories.keySet().toArray(new String[0]));
+        Assert.assertEquals(sparseGrid.getMaxPossibleDensity(), denseGrid.getMaxPossibleDensity());
+    }
+
+    @Test
+    public void testSameNeighboursAsSparseStorage() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        double[][] bounds = new Grid(cellsPerDimension, new double[][]{
+                new double[]{0, 12},
+                new double[]{0, 3},
+                new double[]{0, 0}}).getBounds();
+
+        RoIGrid sparseGrid = new RoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(sparseGrid, trajectories, 1);
+        RoIGrid denseGrid = new DenseRoIGrid(new Grid(cellsPerDimension, bounds));
+        MiningSpaceFactory.populateGrid(denseGrid, trajectories, 1);
+
+        for (int idx = 0; idx < 13 * 4; idx++) {
+            List<Integer> sparseNeighbours = new ArrayList<>();
+            List<Integer> denseNeighbours = new ArrayList<>();
+            if (sparseGrid.getCell(idx) == null) {
+                Assert.assertNull(denseGrid.getCell(idx));
+                continue;
+            }
+            sparseGrid.forEachNeighbour(idx, sparseNeighbours::add);
+            denseGrid.forEachNeighbour(idx, denseNeighbours::add);
+            Assert.assertEquals(sparseNeighbours, denseNeighbours);
+            //the visited neighbours are the present cells one step away in one dimension
+            int[] ndIdx = sparseGrid.toNdIdx(idx);
+            int nExpected = 0;
+            for (int n = 0; n < ndIdx.length; n++) {
+                for (int offset = -1; offset <= 1; offset += 2) {
+                    int[] moved = ndIdx.clone();
+                    moved[n] += offset;
+                    if (moved[n] >= 0 && moved[n] < cellsPerDimension[n] && sparseGrid.getCell(moved) != null) {
+                        Assert.assertTrue(sparseNeighbours.contains(sparseGrid.to1dIdx(moved)));
+                        nExpected++;
+                    }
+                }
+            }
+            Assert.assertEquals(nExpected, sparseNeighbours.size());
+        }
+    }
+
+    @Test
+    public void testDenseCellsOrderAndProcessing() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+
+        List<MiningCell> denseCells = new ArrayList<>(grid.getDenseCells());
+        Assert.assertTrue(!denseCells.isEmpty());
+        int previousDensity = Integer.MAX_VALUE;
+        for (MiningCell cell : denseCells) {
+            Assert.assertTrue(cell.getDensity() <= previousDensity);
+            previousDensity = cell.getDensity();
+        }
+
+        //processing a cell is visible through any view of it and removes it from the dense cells
+        MiningCell densest = denseCells.get(0);
+        densest.markProcessed();
+        Assert.assertTrue(grid.getCell(densest.getIndex()).isProcessed());
+        Assert.assertEquals(denseCells.size() - 1, grid.getDenseCells().size());
+
+        grid.unprocessAll();
+        Assert.assertTrue(!grid.getCell(densest.getIndex()).isProcessed());
+    }
+
+    @Test
+    public void testReadsByIndexSameAsCell() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        MiningCell densest = grid.nextDenseCell();
+        densest.markProcessed();
+
+        //mining reads neighbours by index, so these must agree with the cell views
+        for (int idx = 0; idx < ((DenseRoIGrid) grid).nCells(); idx++) {
+            MiningCell cell = grid.getCell(idx);
+            if (cell == null) {
+                Assert.assertEquals(-1, grid.getDensity(idx));
+                Assert.assertFalse(grid.isProcessed(idx));
+            } else {
+                Assert.assertEquals(cell.getDensity(), grid.getDensity(idx));
+                Assert.assertEquals(cell.isProcessed(), grid.isProcessed(idx));
+            }
+        }
+        Assert.assertTrue(grid.isProcessed(densest.getIndex()));
+        grid.unprocessAll();
+    }
+
+}
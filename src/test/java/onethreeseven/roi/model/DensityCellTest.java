@@ -0,0 +1,99 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Testing cells tally entities by their interned ordinal, but are still queried by id.
+ * @see DensityCell
+ * @see EntityInterner
+ * @author Luke Bermingham
+ */
+public class DensityCellTest {
+
+    @Test
+    public void testLookupsById() {
+        EntityInterner interner = new EntityInterner();
+        DensityCell cell = new DensityCell(0, interner);
+        cell.incrementTally("a");
+        cell.incrementTally("a");
+        cell.incrementTally("b");
+
+        Assert.assertEquals(2, cell.getDensity());
+        Assert.assertEquals(3, cell.getTotalDensity());
+        Assert.assertEquals(2, cell.getDensityById("a"));
+        Assert.assertEquals(3, cell.getDensityById("a", "b"));
+        Assert.assertEquals(0, cell.getDensityById("c"));
+        Assert.assertTrue(cell.containsAll("a", "b"));
+        Assert.assertFalse(cell.containsAll("a", "c"));
+        Assert.assertEquals("b", cell.containsOne("c", "b"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a")), cell.getMatchingIds("a", "c"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), cell.getKeys());
+    }
+
+    @Test
+    public void testCellsShareOrdinals() {
+        EntityInterner interner = new EntityInterner();
+        DensityCell first = new DensityCell(0, interner);
+        DensityCell second = new DensityCell(1, interner);
+        first.incrementTally("a");
+        second.incrementTally("b");
+        second.incrementTally(interner.ordinalOf("a"));
+
+        Assert.assertEquals(2, interner.size());
+        Assert.assertEquals("a", interner.idOf(0));
+        Assert.assertEquals(-1, interner.ordinalOf("c"));
+        Assert.assertTrue(second.containsAll("a", "b"));
+    }
+
+    @Test
+    public void testTallyGrows() {
+        DensityCell cell = new DensityCell(0);
+        for (int i = 0; i < 1000; i++) {
+            cell.incrementTally(String.valueOf(i % 100));
+        }
+        Assert.assertEquals(100, cell.getDensity());
+        Assert.assertEquals(1000, cell.getTotalDensity());
+        Assert.assertEquals(10, cell.getDensityById("42"));
+    }
+
+    @Test
+    public void testRemoveTally() {
+        DensityCell cell = new DensityCell(0);
+        for (int i = 0; i < 1000; i++) {
+            cell.incrementTally(i % 100);
+        }
+        //take every entity back down to one visit, then remove every other entity
+        for (int entity = 0; entity < 100; entity++) {
+            cell.removeTally(entity, 9);
+        }
+        Assert.assertEquals(100, cell.getTotalDensity());
+        for (int entity = 0; entity < 100; entity += 2) {
+            cell.removeTally(entity, 5);
+        }
+        Assert.assertEquals(50, cell.getDensity());
+        Assert.assertEquals(50, cell.getTotalDensity());
+        for (int entity = 0; entity < 100; entity++) {
+            Assert.assertEquals(entity % 2, cell.getTallies().get(entity));
+        }
+    }
+
+    @Test
+    public void testGridInternsEachTrajectoryOnce() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateNTrajectoriesFrom(new double[][]{
+                new double[]{0, 0},
+                new double[]{6, 0},
+                new double[]{6, 3},
+        }, 5);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{7, 4}, 0);
+        Assert.assertEquals(trajectories.size(), grid.getEntityInterner().size());
+        Assert.assertEquals(trajectories.size(), grid.getMaxPossibleDensity());
+    }
+
+}
@@ -0,0 +1,101 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing seeds come out of the mining spaces in the same order as their dense cells.
+ * @see DensitySeedIndex
+ * @author Luke Bermingham
+ */
+public class DensitySeedIndexTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    private static void assertSeedsInDensityOrder(RoIMiningSpace space) {
+        List<Integer> expected = new ArrayList<>();
+        int previousDensity = Integer.MAX_VALUE;
+        for (MiningCell cell : space.getDenseCells()) {
+            Assert.assertTrue(cell.getDensity() <= previousDensity);
+            previousDensity = cell.getDensity();
+            expected.add(cell.getDensity());
+        }
+        List<Integer> actual = new ArrayList<>();
+        for (MiningCell seed = space.nextDenseCell(); seed != null; seed = space.nextDenseCell()) {
+            actual.add(seed.getDensity());
+            seed.markProcessed();
+        }
+        Assert.assertEquals(expected, actual);
+        space.unprocessAll();
+    }
+
+    @Test
+    public void testSeedOrder() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid denseGrid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        RoIGrid mapGrid = new RoIGrid(denseGrid);
+        MiningSpaceFactory.populateGrid(mapGrid, trajectories, 0);
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, cellsPerDimension, 0);
+
+        for (RoIMiningSpace space : new RoIMiningSpace[]{denseGrid, mapGrid, sparseGrid}) {
+            assertSeedsInDensityOrder(space);
+            //after reset the order starts again from the densest cell
+            assertSeedsInDensityOrder(space);
+        }
+    }
+
+    @Test
+    public void testUnprocessedCellsAreSeedsAgain() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+
+        MiningCell densest = grid.nextDenseCell();
+        List<MiningCell> seeds = new ArrayList<>();
+        for (MiningCell seed = grid.nextDenseCell(); seed != null; seed = grid.nextDenseCell()) {
+            seeds.add(seed);
+            seed.markProcessed();
+        }
+        Assert.assertNull(grid.nextDenseCell());
+
+        //refine two cells again, they come back densest first
+        MiningCell lessDense = seeds.get(seeds.size() - 1);
+        grid.markUnprocessed(lessDense.getIndex());
+        grid.markUnprocessed(densest.getIndex());
+        Assert.assertEquals(densest.getIndex(), grid.nextDenseCell().getIndex());
+        grid.getCell(densest.getIndex()).markProcessed();
+        Assert.assertEquals(lessDense.getIndex(), grid.nextDenseCell().getIndex());
+        grid.getCell(lessDense.getIndex()).markProcessed();
+        Assert.assertNull(grid.nextDenseCell());
+    }
+
+    @Test
+    public void testDensityChangeRebuildsOrder() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        int densestIdx = grid.nextDenseCell().getIndex();
+        int maxDensity = grid.nextDenseCell().getDensity();
+
+        //make an empty corner the densest cell
+        int cornerIdx = grid.to1dIdx(new int[]{0, 3, 0});
+        for (int i = 0; i <= maxDensity; i++) {
+            grid.incrementCellDensity("extra" + i, cornerIdx);
+        }
+        Assert.assertNotEquals(densestIdx, cornerIdx);
+        Assert.assertEquals(cornerIdx, grid.nextDenseCell().getIndex());
+    }
+
+}
@@ -0,0 +1,131 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.algorithm.TrajectoryRoIUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Testing the compressed entity sets against a plain {@link BitSet}.
+ * @see EntityBitmap
+ * @author Luke Bermingham
+ */
+public class EntityBitmapTest {
+
+    private static EntityBitmap randomBitmap(Random rand, BitSet expected, int nEntities, int maxOrdinal) {
+        EntityBitmap bitmap = new EntityBitmap();
+        for (int i = 0; i < nEntities; i++) {
+            int ordinal = rand.nextInt(maxOrdinal);
+            bitmap.add(ordinal);
+            expected.set(ordinal);
+        }
+        return bitmap;
+    }
+
+    private static void assertSame(BitSet expected, EntityBitmap actual) {
+        Assert.assertEquals(expected.cardinality(), actual.cardinality());
+        Assert.assertArrayEquals(expected.stream().toArray(), actual.toArray());
+    }
+
+    @Test
+    public void testRemove() {
+        Random rand = new Random(137);
+        //sparse and dense chunks
+        for (int nEntities : new int[]{50, 20000}) {
+            BitSet expected = new BitSet();
+            EntityBitmap bitmap = randomBitmap(rand, expected, nEntities, 70000);
+            for (int i = 0; i < nEntities; i++) {
+                int ordinal = rand.nextInt(70000);
+                bitmap.remove(ordinal);
+                expected.clear(ordinal);
+            }
+            assertSame(expected, bitmap);
+            for (int ordinal = expected.nextSetBit(0); ordinal >= 0; ordinal = expected.nextSetBit(ordinal + 1)) {
+                bitmap.remove(ordinal);
+            }
+            Assert.assertTrue(bitmap.isEmpty());
+        }
+    }
+
+    @Test
+    public void testSetAlgebra() {
+        Random rand = new Random(137);
+        //sparse and dense chunks, spread over several chunks
+        int[][] shapes = new int[][]{{50, 200000}, {20000, 70000}, {100000, 200000}};
+        for (int[] a : shapes) {
+            for (int[] b : shapes) {
+                BitSet expectedA = new BitSet();
+                BitSet expectedB = new BitSet();
+                EntityBitmap bitmapA = randomBitmap(rand, expectedA, a[0], a[1]);
+                EntityBitmap bitmapB = randomBitmap(rand, expectedB, b[0], b[1]);
+                assertSame(expectedA, bitmapA);
+
+                BitSet expectedAnd = (BitSet) expectedA.clone();
+                expectedAnd.and(expectedB);
+                assertSame(expectedAnd, bitmapA.and(bitmapB));
+
+                BitSet expectedOr = (BitSet) expectedA.clone();
+                expectedOr.or(expectedB);
+                assertSame(expectedOr, bitmapA.or(bitmapB));
+
+                bitmapA.addAll(bitmapB);
+                assertSame(expectedOr, bitmapA);
+                //the chunks of the other set are not shared
+                int notInB = expectedB.nextClearBit(0);
+                bitmapA.add(notInB);
+                assertSame(expectedB, bitmapB);
+            }
+        }
+    }
+
+    @Test
+    public void testContains() {
+        EntityBitmap bitmap = new EntityBitmap();
+        Assert.assertTrue(bitmap.isEmpty());
+        bitmap.add(3);
+        bitmap.add(70000);
+        bitmap.add(3);
+        Assert.assertEquals(2, bitmap.cardinality());
+        Assert.assertTrue(bitmap.contains(3));
+        Assert.assertTrue(bitmap.contains(70000));
+        Assert.assertFalse(bitmap.contains(4));
+        Assert.assertFalse(bitmap.contains(65536 + 3));
+    }
+
+    @Test
+    public void testRoIEntityQueries() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateNTrajectoriesFrom(new double[][]{
+                new double[]{0, 0},
+                new double[]{6, 0},
+                new double[]{6, 3},
+        }, 5);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, new int[]{7, 4}, 0);
+        int maxDensity = grid.getMaxPossibleDensity();
+        grid.enableEntityBitmaps();
+        Assert.assertEquals(maxDensity, grid.getMaxPossibleDensity());
+
+        //every trajectory passes through both corners
+        RoI roi = new RoI(0);
+        roi.add(grid.getCell(new int[]{0, 0}));
+        roi.add(grid.getCell(new int[]{6, 3}));
+        EntityBitmap throughAll = TrajectoryRoIUtil.getEntitiesThroughAllCells(roi, grid);
+        Assert.assertEquals(trajectories.keySet(), TrajectoryRoIUtil.toTrajectoryIds(throughAll, grid.getEntityInterner()));
+        Assert.assertEquals(throughAll.cardinality(),
+                TrajectoryRoIUtil.getEntitiesThroughAnyCell(roi, grid).cardinality());
+
+        //cells made after enabling keep their bitmaps too
+        grid.incrementCellDensity("new", grid.to1dIdx(new int[]{3, 3}));
+        Assert.assertTrue(grid.getCell(new int[]{3, 3}).containsAll("new"));
+        Assert.assertFalse(grid.getCell(new int[]{3, 3}).containsAll("new", "missing"));
+        Assert.assertEquals("new", grid.getCell(new int[]{3, 3}).containsOne("missing", "new"));
+        Assert.assertNull(grid.getCell(new int[]{0, 0}).containsOne("new", "missing"));
+        Assert.assertEquals(1, grid.getCell(new int[]{3, 3}).getEntityBitmap().cardinality());
+        Assert.assertEquals(maxDensity + 1, grid.getMaxPossibleDensity());
+    }
+
+}
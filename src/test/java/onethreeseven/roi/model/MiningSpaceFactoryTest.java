@@ -4,13 +4,18 @@ package onethreeseven.roi.model;
 import onethreeseven.datastructures.algorithm.TrajectoryDragonCurve;
 import onethreeseven.datastructures.model.Trajectory;
 import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Testing mining spaces and their cell density.
@@ -79,4 +84,56 @@ public class MiningSpaceFactoryTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParallelGridMatchesSequential() throws Exception {
+
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(new double[][]{new double[]{0, 100}, new double[]{0, 100}, new double[]{0, 100}});
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, 20);
+        int[] cellsPerDimension = new int[]{10, 10, 10};
+
+        RoIGrid sequential = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        RoIGrid parallel = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 1, pool);
+        pool.shutdown();
+
+        RoITestUtil.assertSameDensities(sequential, parallel);
+        Assert.assertEquals(sequential.getMaxPossibleDensity(), parallel.getMaxPossibleDensity());
+    }
+
+
+    @Test
+    public void testFedGridMatchesCreatedGrid() throws Exception {
+
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(new double[][]{new double[]{0, 100}, new double[]{0, 100}, new double[]{0, 100}});
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, 20);
+        int[] cellsPerDimension = new int[]{10, 10, 10};
+
+        RoIGrid created = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 1);
+        RoIGrid fed = MiningSpaceFactory.createEmptyGrid(created.getBounds(), cellsPerDimension, 1);
+
+        //the first half of each trajectory as a batch, then the rest one point at a time, interleaved between entities
+        Map<String, List<double[]>> points = new LinkedHashMap<>();
+        for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+            List<double[]> trajPoints = new ArrayList<>();
+            entry.getValue().coordinateIter().forEachRemaining(trajPoints::add);
+            points.put(entry.getKey(), trajPoints);
+            fed.addPoints(entry.getKey(), trajPoints.subList(0, trajPoints.size() / 2));
+        }
+        boolean added = true;
+        for (int i = 0; added; i++) {
+            added = false;
+            for (Map.Entry<String, List<double[]>> entry : points.entrySet()) {
+                int ptIdx = entry.getValue().size() / 2 + i;
+                if (ptIdx < entry.getValue().size()) {
+                    fed.addPoint(entry.getKey(), entry.getValue().get(ptIdx));
+                    added = true;
+                }
+            }
+        }
+
+        RoITestUtil.assertSameDensities(created, fed);
+    }
+
+}
@@ -0,0 +1,92 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.roi.algorithm.ExpansiveRoIs;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Testing the neighbourhoods cells can be expanded through.
+ * @see Neighbourhood
+ * @author Luke Bermingham
+ */
+public class NeighbourhoodTest {
+
+    private static final int[] cellsPerDimension = new int[]{10, 10};
+
+    /**
+     * A grid with a dense diagonal corridor, whose cells only touch at their corners.
+     */
+    private static RoIGrid diagonalGrid(RoIGrid grid) {
+        for (int i = 0; i < 10; i++) {
+            for (int entity = 0; entity < 5; entity++) {
+                grid.incrementCellDensity(String.valueOf(entity), grid.to1dIdx(new int[]{i, i}));
+            }
+        }
+        return grid;
+    }
+
+    private static Grid makeGrid() {
+        return new Grid(cellsPerDimension, new double[][]{new double[]{0, 10}, new double[]{0, 10}});
+    }
+
+    @Test
+    public void testNumberOfNeighbours() {
+        Assert.assertEquals(4, Neighbourhood.FACE.getOffsets(2).length);
+        Assert.assertEquals(6, Neighbourhood.FACE.getOffsets(3).length);
+        Assert.assertEquals(8, Neighbourhood.EDGE.getOffsets(2).length);
+        Assert.assertEquals(18, Neighbourhood.EDGE.getOffsets(3).length);
+        Assert.assertEquals(8, Neighbourhood.MOORE.getOffsets(2).length);
+        Assert.assertEquals(26, Neighbourhood.MOORE.getOffsets(3).length);
+        Assert.assertEquals(24, Neighbourhood.radius(2).getOffsets(2).length);
+        Assert.assertEquals(124, Neighbourhood.radius(2).getOffsets(3).length);
+    }
+
+    @Test
+    public void testFaceOrder() {
+        int[][] offsets = Neighbourhood.FACE.getOffsets(2);
+        Assert.assertArrayEquals(new int[]{1, 0}, offsets[0]);
+        Assert.assertArrayEquals(new int[]{-1, 0}, offsets[1]);
+        Assert.assertArrayEquals(new int[]{0, 1}, offsets[2]);
+        Assert.assertArrayEquals(new int[]{0, -1}, offsets[3]);
+    }
+
+    @Test
+    public void testVisitsNeighboursInsideGrid() {
+        RoIGrid grid = new DenseRoIGrid(makeGrid());
+        for (int idx = 0; idx < 100; idx++) {
+            grid.getOrCreateCell(idx);
+        }
+        grid.setNeighbourhood(Neighbourhood.radius(2));
+        List<Integer> neighbours = new ArrayList<>();
+        //a corner only has the quarter of its neighbourhood that is inside the grid
+        grid.forEachNeighbour(grid.to1dIdx(new int[]{0, 0}), neighbours::add);
+        Assert.assertEquals(8, neighbours.size());
+        neighbours.clear();
+        grid.forEachNeighbour(grid.to1dIdx(new int[]{5, 5}), neighbours::add);
+        Assert.assertEquals(24, neighbours.size());
+    }
+
+    @Test
+    public void testDiagonalCorridorIsOneRoI() {
+        for (RoIGrid grid : new RoIGrid[]{diagonalGrid(new RoIGrid(makeGrid())), diagonalGrid(new DenseRoIGrid(makeGrid()))}) {
+            //face neighbours split the corridor into single cells, which are not rois
+            Assert.assertTrue(new ExpansiveRoIs().run(grid, 5).isEmpty());
+
+            grid.setNeighbourhood(Neighbourhood.MOORE);
+            Collection<RoI> expansive = new ExpansiveRoIs().run(grid, 5);
+            Collection<RoI> labelled = new ExpansiveRoIs(true).run(grid, 5);
+            Collection<RoI> slope = new SlopeRoIs().run(grid, 5);
+            for (Collection<RoI> rois : Arrays.asList(expansive, labelled, slope)) {
+                Assert.assertEquals(1, rois.size());
+                Assert.assertEquals(10, rois.iterator().next().size());
+            }
+        }
+    }
+
+}
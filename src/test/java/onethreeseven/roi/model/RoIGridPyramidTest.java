@@ -0,0 +1,142 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Testing that coarser levels of a grid pyramid merge the cells of the level below.
+ * @see RoIGridPyramid
+ * @author Luke Bermingham
+ */
+public class RoIGridPyramidTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    private static RoIGrid makeFinest() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        return MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+    }
+
+    @Test
+    public void testLevelZeroIsFinest() {
+        RoIGrid finest = makeFinest();
+        RoIGridPyramid pyramid = new RoIGridPyramid(finest, 3);
+        Assert.assertSame(finest, pyramid.getLevel(0));
+        Assert.assertSame(pyramid.getLevel(2), pyramid.getLevel(2));
+    }
+
+    @Test
+    public void testMergesChildCells() {
+        RoIGrid finest = makeFinest();
+        RoIGridPyramid pyramid = new RoIGridPyramid(finest, 2);
+        RoIGrid coarse = pyramid.getLevel(1);
+        Assert.assertArrayEquals(new int[]{7, 2, 1}, coarse.getNCellsPerDimension());
+
+        for (int x = 0; x < 7; x++) {
+            for (int y = 0; y < 2; y++) {
+                //the union of the entities of the child cells, and the sum of their visits
+                Set<String> keys = new HashSet<>();
+                int totalDensity = 0;
+                for (int fx = x * 2; fx < Math.min(x * 2 + 2, 13); fx++) {
+                    for (int fy = y * 2; fy < y * 2 + 2; fy++) {
+                        RoIGridCell child = finest.getCell(new int[]{fx, fy, 0});
+                        if (child != null) {
+                            keys.addAll(child.getKeys());
+                            totalDensity += child.getTotalDensity();
+                        }
+                    }
+                }
+                RoIGridCell cell = coarse.getCell(new int[]{x, y, 0});
+                if (totalDensity == 0) {
+                    Assert.assertNull(cell);
+                } else {
+                    Assert.assertEquals(keys, cell.getKeys());
+                    Assert.assertEquals(keys.size(), cell.getDensity());
+                    Assert.assertEquals(totalDensity, cell.getTotalDensity());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCoarseBounds() {
+        RoIGrid finest = makeFinest();
+        RoIGridPyramid pyramid = new RoIGridPyramid(finest, 2);
+        RoIGrid coarse = pyramid.getLevel(1);
+        double[] fineSize = pyramid.getCellSize(0);
+        double[] coarseSize = pyramid.getCellSize(1);
+        Assert.assertEquals(fineSize[0] * 2, coarseSize[0], 1e-9);
+        Assert.assertEquals(fineSize[1] * 2, coarseSize[1], 1e-9);
+        //one cell in z so it is never merged
+        Assert.assertEquals(fineSize[2], coarseSize[2], 1e-9);
+        for (int n = 0; n < 3; n++) {
+            double width = (coarse.getMax(n) - coarse.getMin(n)) / coarse.getNCellsPerDimension()[n];
+            Assert.assertEquals(coarseSize[n], width, 1e-9);
+            Assert.assertEquals(finest.getMin(n), coarse.getMin(n), 1e-9);
+        }
+    }
+
+    @Test
+    public void testLevelsAreCapped() {
+        RoIGridPyramid pyramid = new RoIGridPyramid(makeFinest(), 100);
+        //13 -> 7 -> 4 -> 2 -> 1
+        Assert.assertEquals(5, pyramid.getNLevels());
+        RoIGrid coarsest = pyramid.getLevel(4);
+        Assert.assertArrayEquals(new int[]{1, 1, 1}, coarsest.getNCellsPerDimension());
+        //every entity passes through the one cell
+        Assert.assertEquals(10, coarsest.getCell(0).getDensity());
+        Assert.assertEquals(coarsest.getCell(0).getDensity(), coarsest.getMaxPossibleDensity());
+    }
+
+    @Test
+    public void testCellSizeOfEachLevel() {
+        RoIGridPyramid pyramid = new RoIGridPyramid(makeFinest(), 100);
+        double[] fineSize = pyramid.getCellSize(0);
+        //4 -> 2 -> 1 cells in y, so from level 2 on a cell is the whole 4 fine cells wide
+        Assert.assertEquals(fineSize[1] * 4, pyramid.getCellSize(2)[1], 1e-9);
+        Assert.assertEquals(fineSize[1] * 4, pyramid.getCellSize(3)[1], 1e-9);
+        Assert.assertEquals(fineSize[1] * 4, pyramid.getCellSize(4)[1], 1e-9);
+        Assert.assertEquals(fineSize[0] * 16, pyramid.getCellSize(4)[0], 1e-9);
+        for (int level = 0; level < pyramid.getNLevels(); level++) {
+            RoIGrid grid = pyramid.getLevel(level);
+            for (int n = 0; n < 3; n++) {
+                double width = (grid.getMax(n) - grid.getMin(n)) / grid.getNCellsPerDimension()[n];
+                Assert.assertEquals(width, pyramid.getCellSize(level)[n], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testLevelForCellSize() {
+        RoIGridPyramid pyramid = new RoIGridPyramid(makeFinest(), 100);
+        double fineWidth = Math.max(pyramid.getCellSize(0)[0], pyramid.getCellSize(0)[1]);
+        Assert.assertEquals(0, pyramid.getLevelForCellSize(fineWidth / 2));
+        Assert.assertEquals(0, pyramid.getLevelForCellSize(fineWidth));
+        Assert.assertEquals(1, pyramid.getLevelForCellSize(fineWidth * 2));
+        Assert.assertEquals(2, pyramid.getLevelForCellSize(fineWidth * 5));
+        //y stops widening at level 2, so it does not hold back level 3
+        double[] level3Size = pyramid.getCellSize(3);
+        Assert.assertEquals(3, pyramid.getLevelForCellSize(Math.max(level3Size[0], level3Size[1])));
+        Assert.assertEquals(4, pyramid.getLevelForCellSize(Double.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoLevels() {
+        new RoIGridPyramid(makeFinest(), 0);
+    }
+
+}
@@ -0,0 +1,122 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Testing that a grid opened from a snapshot is the same as the grid that was written.
+ * @see RoIGridSnapshot
+ * @author Luke Bermingham
+ */
+public class RoIGridSnapshotTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    private static RoIGrid makeGrid() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        return MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+    }
+
+    @Test
+    public void testSameDensitiesAndTallies() throws IOException {
+        RoIGrid grid = makeGrid();
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        RoIGridSnapshot.write(grid, file, true);
+        RoIGrid opened = RoIGridSnapshot.open(file);
+
+        Assert.assertArrayEquals(grid.getNCellsPerDimension(), opened.getNCellsPerDimension());
+        for (int n = 0; n < grid.nDimensions(); n++) {
+            Assert.assertArrayEquals(grid.getBounds()[n], opened.getBounds()[n], 1e-9);
+        }
+        Assert.assertEquals(grid.getMaxPossibleDensity(), opened.getMaxPossibleDensity());
+        int nCells = 13 * 4;
+        for (int idx = 0; idx < nCells; idx++) {
+            MiningCell cell = grid.getCell(idx);
+            MiningCell openedCell = opened.getCell(idx);
+            if (cell == null) {
+                Assert.assertNull(openedCell);
+                continue;
+            }
+            Assert.assertEquals(cell.getDensity(), openedCell.getDensity());
+            Assert.assertEquals(cell.getTotalDensity(), openedCell.getTotalDensity());
+            Assert.assertEquals(cell.getKeys(), openedCell.getKeys());
+            Assert.assertEquals(cell.getEntityBitmap().cardinality(), openedCell.getEntityBitmap().cardinality());
+            for (String id : cell.getKeys()) {
+                Assert.assertEquals(cell.getDensityById(id), openedCell.getDensityById(id));
+            }
+        }
+    }
+
+    @Test
+    public void testSameRoIs() throws IOException {
+        RoIGrid grid = makeGrid();
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        RoIGridSnapshot.write(grid, file, false);
+        RoIGrid opened = RoIGridSnapshot.open(file);
+        Collection<RoI> rois = new SlopeRoIs().run(grid, 3);
+        Assert.assertFalse(rois.isEmpty());
+        Assert.assertEquals(RoITestUtil.cellSets(rois), RoITestUtil.cellSets(new SlopeRoIs().run(opened, 3)));
+        //and again, now the processed flags have been reset
+        Assert.assertEquals(RoITestUtil.cellSets(rois), RoITestUtil.cellSets(new SlopeRoIs().run(opened, 3)));
+    }
+
+    @Test
+    public void testRemoveSparsityFillsCells() throws IOException {
+        RoIGrid grid = makeGrid();
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        RoIGridSnapshot.write(grid, file, false);
+        RoIGrid opened = RoIGridSnapshot.open(file);
+        RoI roi = new RoI(0);
+        roi.add(opened.getOrCreateCell(0));
+        roi.add(opened.getOrCreateCell(opened.to1dIdx(new int[]{2, 2, 0})));
+        RoI filled = opened.removeSparsity(roi);
+        Assert.assertEquals(grid.removeSparsity(roi).size(), filled.size());
+        for (Integer idx : filled) {
+            Assert.assertNotNull(opened.getCell(idx));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        RoIGridSnapshot.write(makeGrid(), file, true);
+        RoIGridSnapshot.open(file).incrementCellDensity("someone", 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoEntitiesWithoutTallies() throws IOException {
+        RoIGrid grid = makeGrid();
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        RoIGridSnapshot.write(grid, file, false);
+        RoIGrid opened = RoIGridSnapshot.open(file);
+        opened.getDenseCells().iterator().next().getKeys();
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        File file = RoITestUtil.tempFile("roi-grid", ".snapshot");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        RoIGridSnapshot.open(file);
+    }
+
+}
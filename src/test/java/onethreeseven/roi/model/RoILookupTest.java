@@ -0,0 +1,60 @@
+package onethreeseven.roi.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testing the cell to RoI lookup against asking each RoI in turn.
+ * @see RoILookup
+ * @author Luke Bermingham
+ */
+public class RoILookupTest {
+
+    private static final Grid grid = new Grid(new int[]{6, 5, 2},
+            new double[][]{
+                    new double[]{0, 6},
+                    new double[]{0, 5},
+                    new double[]{0, 2},
+            });
+
+    private static List<RoI> makeRoIs() {
+        List<RoI> rois = new ArrayList<>();
+        rois.add(new BoxRoI(7, new int[]{0, 0, 0}, new int[]{1, 1, 1}, 1, grid));
+        //overlaps the first roi, which should keep the shared cells
+        rois.add(new BoxRoI(3, new int[]{1, 1, 0}, new int[]{3, 2, 0}, 1, grid));
+        rois.add(null);
+        rois.add(new BoxRoI(12, new int[]{5, 4, 1}, new int[]{5, 4, 1}, 1, grid));
+        return rois;
+    }
+
+    private static int linearScan(List<RoI> rois, int cellIdx) {
+        for (RoI roi : rois) {
+            if (roi != null && roi.contains(cellIdx)) {
+                return roi.getId();
+            }
+        }
+        return RoILookup.NO_ROI;
+    }
+
+    private static void assertMatchesLinearScan(RoILookup lookup, List<RoI> rois) {
+        for (int cellIdx = -1; cellIdx <= 6 * 5 * 2; cellIdx++) {
+            Assert.assertEquals(linearScan(rois, cellIdx), lookup.getRoIId(cellIdx));
+        }
+    }
+
+    @Test
+    public void testDenseLookup() {
+        List<RoI> rois = makeRoIs();
+        assertMatchesLinearScan(new RoILookup(rois, new DenseRoIGrid(grid)), rois);
+    }
+
+    @Test
+    public void testSparseLookup() {
+        List<RoI> rois = makeRoIs();
+        assertMatchesLinearScan(new RoILookup(rois, new RoIGrid(grid)), rois);
+    }
+
+}
@@ -0,0 +1,172 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.common.util.NDUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Testing the rasterization of line segments into grid cells.
+ * @see SegmentRasterizer
+ * @author Luke Bermingham
+ */
+public class SegmentRasterizerTest {
+
+    private static Grid makeGrid(int[] extents, int max) {
+        double[][] bounds = new double[extents.length][];
+        for (int n = 0; n < extents.length; n++) {
+            bounds[n] = new double[]{0, max};
+        }
+        return new Grid(extents, bounds);
+    }
+
+    @Test
+    public void testStraightLine() {
+        int max = 10;
+        int[] extents = new int[]{max, max};
+        Grid grid = makeGrid(extents, max);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+
+        int nCells = rasterizer.rasterize(new double[]{0, 0}, new double[]{max, 0}, 0);
+        Assert.assertEquals(max, nCells);
+        for (int x = 0; x < max; x++) {
+            int idx1d = NDUtil.flattenIndices(new int[]{x, 0}, extents);
+            Assert.assertTrue(Arrays.binarySearch(rasterizer.getCells(), 0, nCells, idx1d) >= 0);
+        }
+    }
+
+    @Test
+    public void testDiagonalIsFaceConnected() {
+        int[] extents = new int[]{20, 20, 20};
+        Grid grid = makeGrid(extents, 100);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+
+        int nCells = rasterizer.rasterize(new double[]{1, 2, 3}, new double[]{97, 61, 33}, 0);
+        int[] start = grid.getIndices(new double[]{1, 2, 3});
+        int[] end = grid.getIndices(new double[]{97, 61, 33});
+        //a face connected walk visits one cell per step in each dimension, plus the first cell
+        int expectedCells = 1;
+        for (int n = 0; n < extents.length; n++) {
+            expectedCells += Math.abs(end[n] - start[n]);
+        }
+        Assert.assertEquals(expectedCells, nCells);
+
+        Set<Integer> cells = new HashSet<>();
+        for (int i = 0; i < nCells; i++) {
+            cells.add(rasterizer.getCells()[i]);
+        }
+        Assert.assertTrue(cells.contains(grid.to1dIdx(start)));
+        Assert.assertTrue(cells.contains(grid.to1dIdx(end)));
+    }
+
+    @Test
+    public void testRadiusClampedAtCorner() {
+        int[] extents = new int[]{3, 3, 3};
+        Grid grid = makeGrid(extents, 2);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+
+        int nCells = rasterizer.rasterizeAround(new double[]{0, 0, 0}, 1);
+        Assert.assertEquals(8, nCells);
+        for (int i = 0; i < nCells; i++) {
+            int[] ndIdx = NDUtil.inflateIndex(rasterizer.getCells()[i], extents);
+            for (int n = 0; n < ndIdx.length; n++) {
+                Assert.assertTrue(ndIdx[n] <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testCellsAreSortedAndDistinct() {
+        int[] extents = new int[]{10, 10};
+        Grid grid = makeGrid(extents, 10);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+
+        int nCells = rasterizer.rasterize(new double[]{1, 1}, new double[]{8, 6}, 2);
+        int[] cells = rasterizer.getCells();
+        for (int i = 1; i < nCells; i++) {
+            Assert.assertTrue(cells[i - 1] < cells[i]);
+        }
+    }
+
+    @Test
+    public void testAxisAlignedSameAsIndicesBetween() {
+        int[] extents = new int[]{10, 10};
+        Grid grid = makeGrid(extents, 10);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+        //away from the edges of the grid, as getIndicesAround does not clamp the far edge
+        double[][][] segments = new double[][][]{
+                {{2.5, 4.5}, {6.5, 4.5}},
+                {{4.5, 7.5}, {4.5, 2.5}},
+                {{2.5, 2.5}, {2.5, 2.5}}
+        };
+        for (double[][] segment : segments) {
+            for (int radius = 0; radius <= 2; radius++) {
+                int nCells = rasterizer.rasterize(segment[0], segment[1], radius);
+                Set<Integer> cells = new HashSet<>();
+                for (int i = 0; i < nCells; i++) {
+                    cells.add(rasterizer.getCells()[i]);
+                }
+                Assert.assertEquals(grid.getIndicesBetween(segment[0], segment[1], radius), cells);
+            }
+        }
+    }
+
+    @Test
+    public void testDiagonalDiffersFromIndicesBetween() {
+        //the walk is face connected, so it visits more cells than getIndicesBetween on a diagonal
+        int[] extents = new int[]{10, 10};
+        Grid grid = makeGrid(extents, 10);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+        double[] start = new double[]{0.5, 0.5};
+        double[] end = new double[]{7.5, 4.5};
+
+        Set<Integer> between = grid.getIndicesBetween(start, end, 0);
+        int nCells = rasterizer.rasterize(start, end, 0);
+        Assert.assertTrue(nCells > between.size());
+        int[] startCell = grid.getIndices(start);
+        int[] endCell = grid.getIndices(end);
+        Assert.assertEquals(1 + (endCell[0] - startCell[0]) + (endCell[1] - startCell[1]), nCells);
+        Set<Integer> cells = new HashSet<>();
+        for (int i = 0; i < nCells; i++) {
+            cells.add(rasterizer.getCells()[i]);
+        }
+        Assert.assertTrue(cells.contains(grid.getIndex(start)));
+        Assert.assertTrue(cells.contains(grid.getIndex(end)));
+
+        //each cell walked is one step from the last in exactly one dimension
+        List<int[]> walked = new ArrayList<>();
+        rasterizer.forEachCellOnSegment(start, end, cell -> walked.add(cell.clone()));
+        Assert.assertEquals(nCells, walked.size());
+        for (int i = 1; i < walked.size(); i++) {
+            int distance = 0;
+            for (int n = 0; n < extents.length; n++) {
+                distance += Math.abs(walked.get(i)[n] - walked.get(i - 1)[n]);
+            }
+            Assert.assertEquals(1, distance);
+        }
+    }
+
+    @Test
+    public void testWalkGridLargerThanIntIndex() {
+        int[] extents = new int[]{100000, 100000, 1000};
+        Grid grid = makeGrid(extents, 100000);
+        SegmentRasterizer rasterizer = new SegmentRasterizer(grid);
+        List<int[]> walked = new ArrayList<>();
+        rasterizer.forEachCellOnSegment(new double[]{10.5, 20.5, 0}, new double[]{13.5, 20.5, 0},
+                cell -> walked.add(cell.clone()));
+        Assert.assertEquals(4, walked.size());
+        Assert.assertArrayEquals(new int[]{13, 20, 0}, walked.get(3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoIntIndexForGridLargerThanInt() {
+        int[] extents = new int[]{100000, 100000, 1000};
+        new SegmentRasterizer(makeGrid(extents, 100000)).rasterize(new double[]{0, 0, 0}, new double[]{1, 1, 0}, 0);
+    }
+
+}
@@ -0,0 +1,91 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.algorithm.TrajectoryDragonCurve;
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Testing that a windowed grid only counts the visits in its window.
+ * @see SlidingWindowRoIGrid
+ * @author Luke Bermingham
+ */
+public class SlidingWindowRoIGridTest {
+
+    private static final double[][] bounds = new double[][]{
+            new double[]{0, 100}, new double[]{0, 100}, new double[]{0, 100}};
+    private static final int[] cellsPerDimension = new int[]{10, 10, 10};
+
+    /**
+     * Feeds each trajectory one point at a time, each point 10ms after the last.
+     */
+    private static long feed(SlidingWindowRoIGrid grid, Map<String, Trajectory> trajectories, String prefix, long startMillis) {
+        long time = startMillis;
+        for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+            Iterator<double[]> iter = entry.getValue().coordinateIter();
+            while (iter.hasNext()) {
+                Assert.assertTrue(grid.addPoint(prefix + entry.getKey(), iter.next(), time));
+                time += 10;
+            }
+        }
+        return time;
+    }
+
+    @Test
+    public void testExpiredVisitsNoLongerCount() {
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(bounds);
+        Map<String, Trajectory> old = DataGeneratorUtil.generateCurvyTrajectories(algo, 10);
+        Map<String, Trajectory> recent = DataGeneratorUtil.generateCurvyTrajectories(algo, 10);
+
+        long windowMillis = 1000000;
+        SlidingWindowRoIGrid windowed = MiningSpaceFactory.createSlidingWindowGrid(
+                bounds, cellsPerDimension, 1, windowMillis, 8);
+        long end = feed(windowed, old, "old", 0);
+        //the recent trajectories start once all the old ones are out of the window
+        feed(windowed, recent, "recent", end + windowMillis);
+
+        SlidingWindowRoIGrid expected = MiningSpaceFactory.createSlidingWindowGrid(
+                bounds, cellsPerDimension, 1, windowMillis, 8);
+        feed(expected, recent, "recent", end + windowMillis);
+
+        RoITestUtil.assertSameDensities(expected, windowed);
+        Assert.assertFalse(windowed.addPoint("late", new double[]{50, 50, 50}, 0));
+    }
+
+    @Test
+    public void testAllVisitsExpire() {
+        TrajectoryDragonCurve algo = new TrajectoryDragonCurve();
+        algo.setBounds(bounds);
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateCurvyTrajectories(algo, 10);
+
+        SlidingWindowRoIGrid windowed = MiningSpaceFactory.createSlidingWindowGrid(
+                bounds, cellsPerDimension, 1, 1000, 4);
+        long end = feed(windowed, trajectories, "", 0);
+        Assert.assertFalse(windowed.getDenseCells().isEmpty());
+        windowed.advanceTo(end + 1000);
+        Assert.assertTrue(windowed.getDenseCells().isEmpty());
+    }
+
+    @Test
+    public void testStationaryEntityOutlivesWindow() {
+        SlidingWindowRoIGrid windowed = MiningSpaceFactory.createSlidingWindowGrid(
+                bounds, cellsPerDimension, 1, 1000, 4);
+        double[] point = new double[]{55, 55, 55};
+        int idx = windowed.to1dIdx(windowed.getIndices(point));
+        Assert.assertTrue(windowed.addPoint("still", point, 0));
+        //the entity never moves, but keeps being seen long after its first visit left the window
+        for (long time = 100; time <= 5000; time += 100) {
+            Assert.assertTrue(windowed.addPoint("still", point, time));
+            MiningCell cell = windowed.getCell(idx);
+            Assert.assertNotNull("Dropped at " + time, cell);
+            Assert.assertEquals(1, cell.getDensity());
+        }
+    }
+
+}
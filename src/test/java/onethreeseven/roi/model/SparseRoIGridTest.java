@@ -0,0 +1,148 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Testing the sparse grid, which only stores occupied cells.
+ * @see SparseRoIGrid
+ * @author Luke Bermingham
+ */
+public class SparseRoIGridTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    @Test
+    public void testSameDensitiesAsRoIGrid() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        int[] cellsPerDimension = new int[]{13, 4, 1};
+
+        RoIGrid roIGrid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, cellsPerDimension, 0);
+
+        int nOccupied = 0;
+        for (int x = 0; x < cellsPerDimension[0]; x++) {
+            for (int y = 0; y < cellsPerDimension[1]; y++) {
+                int[] ndIdx = new int[]{x, y, 0};
+                RoIGridCell cell = roIGrid.getCell(ndIdx);
+                RoIGridCell sparseCell = sparseGrid.getCell(ndIdx);
+                if (cell == null) {
+                    Assert.assertNull(sparseCell);
+                } else {
+                    Assert.assertEquals(cell.getDensity(), sparseCell.getDensity());
+                    Assert.assertArrayEquals(ndIdx, sparseGrid.toNdIdx(sparseCell.getIndex()));
+                    nOccupied++;
+                }
+            }
+        }
+        Assert.assertEquals(nOccupied, sparseGrid.nOccupiedCells());
+    }
+
+    @Test
+    public void testGridLargerThanIntIndex() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        //far more cells than an int can index, but only a handful are occupied
+        int[] cellsPerDimension = new int[]{130000, 40000, 1000};
+
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, cellsPerDimension, 0);
+        Assert.assertTrue(sparseGrid.nOccupiedCells() > 0);
+
+        int previousDensity = Integer.MAX_VALUE;
+        for (MiningCell cell : sparseGrid.getDenseCells()) {
+            Assert.assertTrue(cell.getDensity() <= previousDensity);
+            previousDensity = cell.getDensity();
+        }
+
+        Collection<RoI> rois = new SlopeRoIs().run(sparseGrid, 3);
+        for (RoI roi : rois) {
+            Assert.assertTrue(roi.size() > 1);
+            for (Integer cellId : roi) {
+                Assert.assertTrue(sparseGrid.getCell(cellId).getDensity() >= 3);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveSparsity() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateNTrajectoriesFrom(new double[][]{
+                new double[]{0, 0, 0},
+                new double[]{6, 0, 0},
+                new double[]{6, 3, 0},
+        }, 5);
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, new int[]{7, 4, 1}, 0);
+
+        //an L-shaped roi becomes its full bounding rectangle
+        RoI roi = new RoI(0);
+        roi.add(sparseGrid.getCell(new int[]{0, 0, 0}));
+        roi.add(sparseGrid.getCell(new int[]{6, 3, 0}));
+        RoI denseRoI = sparseGrid.removeSparsity(roi);
+        Assert.assertEquals(7 * 4, denseRoI.size());
+        Assert.assertNotNull(sparseGrid.getCell(new int[]{0, 3, 0}));
+        Assert.assertEquals(0, sparseGrid.getCell(new int[]{0, 3, 0}).getDensity());
+    }
+
+    @Test
+    public void testIndicesBetweenAreOccupiedCellIds() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        int[] cellsPerDimension = new int[]{13, 4, 1};
+        RoIGrid roIGrid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, cellsPerDimension, 0);
+
+        double[] start = new double[]{0, 0, 0};
+        double[] end = new double[]{12, 3, 0};
+        //the cells are walked the same way as populating the grid
+        SegmentRasterizer rasterizer = new SegmentRasterizer(roIGrid);
+        int nCells = rasterizer.rasterize(start, end, 1);
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < nCells; i++) {
+            int idx = rasterizer.getCells()[i];
+            if (roIGrid.getCell(idx) != null) {
+                expected.add(sparseGrid.to1dIdx(roIGrid.toNdIdx(idx)));
+            }
+        }
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, sparseGrid.getIndicesBetween(start, end, 1));
+
+        Set<Integer> around = new HashSet<>();
+        for (int idx : sparseGrid.getIndicesAround(new int[]{6, 0, 0}, 1)) {
+            around.add(idx);
+            Assert.assertNotNull(sparseGrid.getCell(idx));
+        }
+        Assert.assertTrue(around.contains(sparseGrid.to1dIdx(new int[]{6, 0, 0})));
+        Assert.assertTrue(around.contains(sparseGrid.to1dIdx(new int[]{5, 0, 0})));
+    }
+
+    @Test
+    public void testNeighbourOrderSameAsRoIGrid() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        int[] cellsPerDimension = new int[]{13, 4, 1};
+        RoIGrid roIGrid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        SparseRoIGrid sparseGrid = MiningSpaceFactory.createSparseGrid(trajectories, cellsPerDimension, 0);
+
+        for (int id = 0; id < sparseGrid.nOccupiedCells(); id++) {
+            List<Integer> expected = new ArrayList<>();
+            roIGrid.forEachNeighbour(roIGrid.to1dIdx(sparseGrid.toNdIdx(id)),
+                    idx -> expected.add(sparseGrid.to1dIdx(roIGrid.toNdIdx(idx))));
+            List<Integer> neighbours = new ArrayList<>();
+            sparseGrid.forEachNeighbour(id, neighbours::add);
+            Assert.assertEquals(expected, neighbours);
+        }
+    }
+
+}
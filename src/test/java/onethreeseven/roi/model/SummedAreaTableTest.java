@@ -0,0 +1,85 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Testing box densities from the summed-area table against summing each cell.
+ * @see SummedAreaTable
+ * @author Luke Bermingham
+ */
+public class SummedAreaTableTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 2};
+
+    private static long sumEachCell(RoIGrid grid, int[] min, int[] max) {
+        long total = 0;
+        for (int x = min[0]; x <= max[0]; x++) {
+            for (int y = min[1]; y <= max[1]; y++) {
+                for (int z = min[2]; z <= max[2]; z++) {
+                    MiningCell cell = grid.getCell(grid.to1dIdx(new int[]{x, y, z}));
+                    total += (cell == null) ? 0 : cell.getDensity();
+                }
+            }
+        }
+        return total;
+    }
+
+    @Test
+    public void testBoxDensity() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid denseGrid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 1);
+        RoIGrid mapGrid = new RoIGrid(denseGrid);
+        MiningSpaceFactory.populateGrid(mapGrid, trajectories, 1);
+
+        SummedAreaTable table = denseGrid.createSummedAreaTable();
+        Random rand = new Random(137);
+        for (int i = 0; i < 200; i++) {
+            int[] min = new int[3];
+            int[] max = new int[3];
+            for (int n = 0; n < 3; n++) {
+                int a = rand.nextInt(cellsPerDimension[n]);
+                int b = rand.nextInt(cellsPerDimension[n]);
+                min[n] = Math.min(a, b);
+                max[n] = Math.max(a, b);
+            }
+            long expected = sumEachCell(denseGrid, min, max);
+            Assert.assertEquals(expected, denseGrid.getBoxDensity(min, max));
+            Assert.assertEquals(expected, mapGrid.getBoxDensity(min, max));
+            Assert.assertEquals(expected, table.sum(min, max));
+        }
+    }
+
+    @Test
+    public void testTableIsNotKeptByGrid() {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid grid = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        int[] min = new int[]{0, 0, 0};
+        int[] max = new int[]{12, 3, 1};
+        SummedAreaTable before = grid.createSummedAreaTable();
+        grid.incrementCellDensity("extra", grid.to1dIdx(new int[]{0, 3, 1}));
+        //the table made before the change is stale, the grid and a new table are not
+        Assert.assertEquals(before.sum(min, max) + 1, grid.getBoxDensity(min, max));
+        Assert.assertEquals(grid.getBoxDensity(min, max), grid.createSummedAreaTable().sum(min, max));
+    }
+
+    @Test
+    public void testNoTableForHugeGrid() {
+        RoIGrid grid = new RoIGrid(new Grid(new int[]{1 << 13, 1 << 13}, new double[][]{{0, 1}, {0, 1}}));
+        Assert.assertNull(grid.createSummedAreaTable());
+    }
+
+}
@@ -0,0 +1,138 @@
+package onethreeseven.roi.model;
+
+import onethreeseven.datastructures.model.Trajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.roi.RoITestUtil;
+import onethreeseven.roi.algorithm.AbstractRoIMining;
+import onethreeseven.roi.algorithm.ExpansiveRoIs;
+import onethreeseven.roi.algorithm.SlopeRoIs;
+import onethreeseven.roi.algorithm.UniformRoIs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing that a grid spilling its tiles to disk mines the same as one kept in memory.
+ * @see TiledRoIGrid
+ * @author Luke Bermingham
+ */
+public class TiledRoIGridTest {
+
+    private static final double[][] ptPool = new double[][]{
+            new double[]{0, 0, 0},
+            new double[]{3, 0, 0},
+            new double[]{6, 0, 0},
+            new double[]{6, 3, 0},
+            new double[]{12, 3, 0}
+    };
+
+    private static final int[] cellsPerDimension = new int[]{13, 4, 1};
+
+    private static TiledRoIGrid makeTiledGrid(Map<String, Trajectory> trajectories, RoIGrid like, File spillDirectory) {
+        //tiles of 4x2 cells, only two of which fit in memory
+        TiledRoIGrid grid = MiningSpaceFactory.createTiledGrid(like.getBounds(), cellsPerDimension, 0,
+                new int[]{4, 2, 1}, 2, spillDirectory);
+        for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+            List<double[]> points = new ArrayList<>();
+            entry.getValue().coordinateIter().forEachRemaining(points::add);
+            grid.addPoints(entry.getKey(), points);
+        }
+        return grid;
+    }
+
+    @Test
+    public void testSameDensitiesAsInMemory() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        File spillDirectory = Files.createTempDirectory("tiles").toFile();
+        try (TiledRoIGrid tiled = makeTiledGrid(trajectories, expected, spillDirectory)) {
+            for (int idx = 0; idx < 13 * 4; idx++) {
+                MiningCell cell = expected.getCell(idx);
+                MiningCell tiledCell = tiled.getCell(idx);
+                Assert.assertEquals(cell == null, tiledCell == null);
+                if (cell != null) {
+                    Assert.assertEquals(cell.getDensity(), tiledCell.getDensity());
+                    Assert.assertEquals(cell.getTotalDensity(), tiledCell.getTotalDensity());
+                    Assert.assertEquals(cell.getKeys(), tiledCell.getKeys());
+                }
+            }
+            Assert.assertEquals(expected.getMaxPossibleDensity(), tiled.getMaxPossibleDensity());
+            Assert.assertTrue(tiled.getSpills() > 0);
+            Assert.assertTrue(tiled.getCacheMisses() > 0);
+            Assert.assertTrue(tiled.getCacheHits() > 0);
+            Assert.assertTrue(tiled.getCachedTileCount() <= 2);
+            //boxes are summed by visiting their cells, never from a table of every cell
+            Assert.assertNull(tiled.createSummedAreaTable());
+            int[] max = new int[]{12, 3, 0};
+            Assert.assertEquals(expected.getBoxDensity(new int[3], max), tiled.getBoxDensity(new int[3], max));
+        }
+        Assert.assertEquals(0, spillDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testSameRoIsAsInMemory() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        File spillDirectory = Files.createTempDirectory("tiles").toFile();
+        try (TiledRoIGrid tiled = makeTiledGrid(trajectories, expected, spillDirectory)) {
+            for (AbstractRoIMining algorithm : new AbstractRoIMining[]{new SlopeRoIs(), new ExpansiveRoIs(), new UniformRoIs()}) {
+                Collection<RoI> rois = algorithm.run(expected, 3);
+                Assert.assertFalse(rois.isEmpty());
+                Assert.assertEquals(algorithm.toString(), RoITestUtil.cellSets(rois), RoITestUtil.cellSets(algorithm.run(tiled, 3)));
+                //mined again, now every cell (spilled or not) has been unprocessed
+                Assert.assertEquals(algorithm.toString(), RoITestUtil.cellSets(rois), RoITestUtil.cellSets(algorithm.run(tiled, 3)));
+            }
+        }
+    }
+
+    @Test
+    public void testSeedsInSameOrderAsInMemory() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        File spillDirectory = Files.createTempDirectory("tiles").toFile();
+        try (TiledRoIGrid tiled = makeTiledGrid(trajectories, expected, spillDirectory)) {
+            List<Integer> seeds = new ArrayList<>();
+            for (MiningCell seed = expected.nextDenseCell(); seed != null; seed = expected.nextDenseCell()) {
+                MiningCell tiledSeed = tiled.nextDenseCell();
+                Assert.assertNotNull(tiledSeed);
+                Assert.assertEquals(seed.getIndex(), tiledSeed.getIndex());
+                seed.markProcessed();
+                tiledSeed.markProcessed();
+                seeds.add(seed.getIndex());
+                //every third seed is given back once, like a refined roi does, so it comes out again
+                if (seeds.size() % 3 == 0) {
+                    int idx = seeds.get(seeds.size() / 3 - 1);
+                    expected.markUnprocessed(idx);
+                    tiled.markUnprocessed(idx);
+                }
+            }
+            Assert.assertNull(tiled.nextDenseCell());
+            Assert.assertTrue(tiled.getSpills() > 0);
+        }
+    }
+
+    @Test
+    public void testRemoveSparsityFaultsTilesIn() throws IOException {
+        Map<String, Trajectory> trajectories = DataGeneratorUtil.generateDensitySlopingTrajectoriesFrom(ptPool, 10);
+        RoIGrid expected = MiningSpaceFactory.createGrid(trajectories, cellsPerDimension, 0);
+        File spillDirectory = Files.createTempDirectory("tiles").toFile();
+        try (TiledRoIGrid tiled = makeTiledGrid(trajectories, expected, spillDirectory)) {
+            RoI roi = new RoI(0);
+            roi.add(tiled.getOrCreateCell(0));
+            roi.add(tiled.getOrCreateCell(tiled.to1dIdx(new int[]{12, 3, 0})));
+            RoI filled = tiled.removeSparsity(roi);
+            Assert.assertEquals(13 * 4, filled.size());
+            for (Integer idx : filled) {
+                Assert.assertNotNull(tiled.getCell(idx));
+            }
+        }
+    }
+
+}